@@ -0,0 +1,130 @@
+package cn.com.qjun.dmsoft.benchmarks;
+
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import cn.com.qjun.dmsoft.vision.BgraImage;
+import cn.com.qjun.dmsoft.vision.ColorSearch;
+import cn.com.qjun.dmsoft.vision.ColorSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 纯Java找色的基准测试
+ * <p>
+ * 在1920x1080的随机图像上统计和查找颜色, 要找的颜色不在图像中, 每次调用都扫描整个图像. ranges为颜色范围的数量.
+ * naiveGetColorNum按分量逐个比较, 作为对照.
+ * <p>
+ * 参考结果(单核Intel Xeon, JDK 17.0.9, {@code java -jar benchmarks.jar ColorSearchBenchmark}), 单位us/op, 误差为99.9%置信区间:
+ * <pre>
+ * Benchmark          (ranges)      Score      Error
+ * findColor                 1    756.074 ±   40.698
+ * findColor                 3   2272.832 ±  292.237
+ * findColorEx               1    746.764 ±   75.374
+ * findColorEx               3   2202.939 ±  337.437
+ * getColorNum               1    803.472 ±   48.572
+ * getColorNum               3   2379.564 ±  185.588
+ * naiveGetColorNum          1  19047.801 ± 3484.446
+ * naiveGetColorNum          3  47604.879 ± 6293.834
+ * </pre>
+ * 三个颜色范围互不相交时逐个范围扫描, 耗时约为单个范围的三倍.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColorSearchBenchmark {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    /**
+     * 要找的颜色, B分量都大于0x80
+     */
+    private static final int[] COLORS = {0x20C0E0, 0x80C0E0, 0xE0C0E0};
+
+    @Param({"1", "3"})
+    public int ranges;
+
+    private BgraImage frame;
+    private ColorSpec spec;
+    private int[] lows;
+    private int[] highs;
+    private final long[] points = new long[1800];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42L);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            // 像素的B分量不超过0x7f, 要找的颜色B分量都大于0x80
+            pixels[i] = random.nextInt(0x1000000) & 0xFFFF7F;
+        }
+        frame = BgraImage.wrap(WIDTH, HEIGHT, pixels);
+        StringBuilder color = new StringBuilder();
+        lows = new int[ranges];
+        highs = new int[ranges];
+        for (int i = 0; i < ranges; i++) {
+            int rgb = COLORS[i];
+            color.append(i == 0 ? "" : "|").append(String.format("%06x-202020", rgb));
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int value = (rgb >> shift) & 0xFF;
+                lows[i] |= Math.max(0, value - 0x20) << shift;
+                highs[i] |= Math.min(0xFF, value + 0x20) << shift;
+            }
+        }
+        spec = ColorSpec.compile(color.toString(), 1.0);
+    }
+
+    @Benchmark
+    public int getColorNum() {
+        return ColorSearch.getColorNum(frame, null, spec);
+    }
+
+    @Benchmark
+    public long findColor() {
+        return ColorSearch.findColor(frame, null, spec, FindDirection.L_TO_R_AND_T_TO_B);
+    }
+
+    @Benchmark
+    public int findColorEx() {
+        return ColorSearch.findColorEx(frame, null, spec, FindDirection.L_TO_R_AND_T_TO_B, points);
+    }
+
+    @Benchmark
+    public int naiveGetColorNum() {
+        int count = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = frame.getRgb(x, y);
+                for (int i = 0; i < lows.length; i++) {
+                    if (channel(rgb, 16) >= channel(lows[i], 16) && channel(rgb, 16) <= channel(highs[i], 16)
+                            && channel(rgb, 8) >= channel(lows[i], 8) && channel(rgb, 8) <= channel(highs[i], 8)
+                            && channel(rgb, 0) >= channel(lows[i], 0) && channel(rgb, 0) <= channel(highs[i], 0)) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int channel(int rgb, int shift) {
+        return (rgb >> shift) & 0xFF;
+    }
+}
@@ -0,0 +1,123 @@
+package cn.com.qjun.dmsoft.benchmarks;
+
+import cn.com.qjun.dmsoft.backend.SimulatedDmBackend;
+import cn.com.qjun.dmsoft.domain.AiFindResult;
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.domain.FindResultBuffer;
+import cn.com.qjun.dmsoft.domain.OcrResult;
+import cn.com.qjun.dmsoft.domain.OcrResultEach;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import cn.com.qjun.dmsoft.operations.DmOptions;
+import cn.com.qjun.dmsoft.operations.DmSoft;
+import cn.com.qjun.dmsoft.utils.InfoParseUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大漠结果字符串解析的基准测试
+ * <p>
+ * 通过模拟后端让大漠接口返回固定的大结果串, 经由公开的operations接口调用, 测量的是调用辅助方法和解析的Java侧开销.
+ * hits为结果条数, 5000对应一次FindPicEx命中5000个位置, OCR类接口按2/5的条数生成, 即2000个词.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultParsingBenchmark {
+    private static final Rect SCREEN = Rect.of(0, 0, 1920, 1080);
+    private static final List<String> PIC_NAMES = Collections.singletonList("a.bmp");
+
+    @Param({"100", "5000"})
+    public int hits;
+
+    private DmSoft dmSoft;
+    private String fileNames;
+    private final FindResultBuffer buffer = new FindResultBuffer();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int words = Math.max(1, hits * 2 / 5);
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("FindPicEx", ResultStrings.findEx(hits, 1L))
+                .respond("FindPicSimEx", ResultStrings.findSimEx(hits, 2L))
+                .respond("FindStrEx", ResultStrings.findEx(hits, 3L))
+                .respond("OcrEx", ResultStrings.ocrEx(words, 4L))
+                .respond("OcrExOne", ResultStrings.ocrExOne(words, 5L))
+                .respond("AiYoloDetectObjects", ResultStrings.aiDetect(hits, 6L))
+                .respond("EnumWindow", ResultStrings.handles(hits, 7L))
+                .build();
+        dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build());
+        fileNames = ResultStrings.names(hits, 8L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dmSoft.close();
+    }
+
+    @Benchmark
+    public List<FindResult> findPicEx() {
+        return dmSoft.opsForColour().findPicEx(SCREEN, PIC_NAMES, "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+    }
+
+    @Benchmark
+    public int findPicExToBuffer() {
+        return dmSoft.opsForColour().findPicEx(SCREEN, "a.bmp", "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B, buffer);
+    }
+
+    @Benchmark
+    public List<FindResult> findPicSimEx() {
+        return dmSoft.opsForColour().findPicSimEx(SCREEN, PIC_NAMES, "000000", 90, FindDirection.L_TO_R_AND_T_TO_B);
+    }
+
+    @Benchmark
+    public List<FindResult> findStrEx() {
+        return dmSoft.opsForOcr().findStrEx(SCREEN, Collections.singletonList("主页"), "ffffff-000000", 0.9);
+    }
+
+    @Benchmark
+    public List<OcrResult> ocrEx() {
+        return dmSoft.opsForOcr().ocrEx(SCREEN, "ffffff-000000", 0.9);
+    }
+
+    @Benchmark
+    public OcrResultEach ocrExOne() {
+        return dmSoft.opsForOcr().ocrExOne(SCREEN, "ffffff-000000", 0.9);
+    }
+
+    @Benchmark
+    public List<AiFindResult> aiYoloDetectObjects() {
+        return dmSoft.opsForAi().aiYoloDetectObjects(SCREEN, 0.5F, 0.45F);
+    }
+
+    @Benchmark
+    public List<Long> enumWindow() {
+        return dmSoft.opsForWindow().enumWindow(0L, "", "");
+    }
+
+    @Benchmark
+    public List<String> splitString() {
+        return InfoParseUtils.splitString(fileNames, "\\|");
+    }
+}
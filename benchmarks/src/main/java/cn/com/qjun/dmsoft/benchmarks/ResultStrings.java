@@ -0,0 +1,134 @@
+package cn.com.qjun.dmsoft.benchmarks;
+
+import java.util.Random;
+
+/**
+ * 生成与大漠返回格式一致的结果字符串, 固定随机种子保证每次运行的输入相同
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+final class ResultStrings {
+    private static final String WORDS = "主页封妖任务背包确定取消商城活动挂机战斗";
+
+    private ResultStrings() {
+    }
+
+    /**
+     * FindPicEx/FindStrEx格式: "id,x,y|id,x,y..."
+     */
+    static String findEx(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(count * 14);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append(random.nextInt(16)).append(',')
+                    .append(random.nextInt(1920)).append(',')
+                    .append(random.nextInt(1080));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * FindPicSimEx格式: "id,sim,x,y|id,sim,x,y..."
+     */
+    static String findSimEx(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(count * 17);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append(random.nextInt(16)).append(',')
+                    .append(60 + random.nextInt(41)).append(',')
+                    .append(random.nextInt(1920)).append(',')
+                    .append(random.nextInt(1080));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * OcrEx格式: "字符串$x$y|字符串$x$y..."
+     */
+    static String ocrEx(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(count * 16);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            int length = 1 + random.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                sb.append(WORDS.charAt(random.nextInt(WORDS.length())));
+            }
+            sb.append('$').append(random.nextInt(1920)).append('$').append(random.nextInt(1080));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * OcrExOne格式: "字符串|x,y|x,y...", 每个字符一个坐标
+     */
+    static String ocrExOne(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(count);
+        StringBuilder points = new StringBuilder(count * 10);
+        for (int i = 0; i < count; i++) {
+            text.append(WORDS.charAt(random.nextInt(WORDS.length())));
+            points.append('|').append(random.nextInt(1920)).append(',').append(random.nextInt(1080));
+        }
+        return text.append(points).toString();
+    }
+
+    /**
+     * AiYoloDetectObjects格式: "类名,置信度,x,y,w,h|..."
+     */
+    static String aiDetect(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(count * 30);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append("class").append(random.nextInt(20)).append(',')
+                    .append(random.nextInt(100) / 100F).append(',')
+                    .append(random.nextInt(1920)).append(',')
+                    .append(random.nextInt(1080)).append(',')
+                    .append(16 + random.nextInt(200)).append(',')
+                    .append(16 + random.nextInt(200));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * EnumWindow格式: "hwnd1,hwnd2,..."
+     */
+    static String handles(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(count * 8);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(0x10000 + random.nextInt(0x7FFFFF));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * EnumIniSection等格式: "名称1|名称2|..."
+     */
+    static String names(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(count * 12);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append("section_").append(random.nextInt(100000));
+        }
+        return sb.toString();
+    }
+}
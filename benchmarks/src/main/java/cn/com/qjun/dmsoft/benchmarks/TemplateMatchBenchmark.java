@@ -0,0 +1,93 @@
+package cn.com.qjun.dmsoft.benchmarks;
+
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import cn.com.qjun.dmsoft.vision.BgraImage;
+import cn.com.qjun.dmsoft.vision.Template;
+import cn.com.qjun.dmsoft.vision.TemplateMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 纯Java找图的基准测试
+ * <p>
+ * 在1920x1080、由纯色矩形拼成的图像右下角放一个40x30的图标, 在整个图像中查找, 模拟在整个窗口中找图.
+ * findPicPyramid包括创建金字塔的时间.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateMatchBenchmark {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int ICON_WIDTH = 40;
+    private static final int ICON_HEIGHT = 30;
+
+    @Param({"0.9", "1.0"})
+    public double sim;
+
+    private BgraImage frame;
+    private TemplateMatcher matcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(7L);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int n = 0; n < 400; n++) {
+            int left = random.nextInt(WIDTH);
+            int top = random.nextInt(HEIGHT);
+            int right = Math.min(WIDTH, left + 10 + random.nextInt(300));
+            int bottom = Math.min(HEIGHT, top + 10 + random.nextInt(200));
+            int color = random.nextInt(0x1000000) & 0xF8F8F8;
+            for (int y = top; y < bottom; y++) {
+                Arrays.fill(pixels, y * WIDTH + left, y * WIDTH + right, color);
+            }
+        }
+        // 图标: 左边一个圆, 右边是横线
+        int[] icon = new int[ICON_WIDTH * ICON_HEIGHT];
+        for (int y = 0; y < ICON_HEIGHT; y++) {
+            for (int x = 0; x < ICON_WIDTH; x++) {
+                int dx = x - ICON_WIDTH / 3;
+                int dy = y - ICON_HEIGHT / 2;
+                boolean circle = dx * dx + dy * dy < ICON_HEIGHT * ICON_HEIGHT / 9;
+                icon[y * ICON_WIDTH + x] = circle ? 0xE0C020 : x > ICON_WIDTH / 2 && y % 6 < 3 ? 0x303030 : 0x6080C0;
+                pixels[(HEIGHT - 180 + y) * WIDTH + WIDTH - 220 + x] = icon[y * ICON_WIDTH + x];
+            }
+        }
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] += random.nextInt(4) * 0x010101;
+        }
+        frame = BgraImage.wrap(WIDTH, HEIGHT, pixels);
+        matcher = TemplateMatcher.of(Template.of("icon", BgraImage.wrap(ICON_WIDTH, ICON_HEIGHT, icon)));
+    }
+
+    @Benchmark
+    public FindResult findPic() {
+        return matcher.findPic(frame, null, "101010", sim, FindDirection.L_TO_R_AND_T_TO_B);
+    }
+
+    @Benchmark
+    public FindResult findPicPyramid() {
+        return matcher.findPicPyramid(frame, null, "101010", sim, FindDirection.L_TO_R_AND_T_TO_B);
+    }
+}
@@ -0,0 +1,326 @@
+package cn.com.qjun.dmsoft.backend;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 有界的组件对象池, 管理{@link JacobDmBackend}的大漠对象
+ * <p>
+ * 对象在需要时由factory在COM套间线程上创建, 创建后在调用方线程上执行初始化逻辑; 所有创建成功的对象都登记在册,
+ * {@link #close()}时在COM套间线程上统一释放. 初始化失败的对象不放回池中, 立即释放并归还名额, 之后可以重新创建.
+ *
+ * @param <C> 对象类型
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+final class ComponentPool<C> {
+    private final int size;
+    private final Callable<C> factory;
+    private final Consumer<C> releaser;
+    private final ExecutorService apartment;
+    private final List<C> registry = new CopyOnWriteArrayList<>();
+    /**
+     * 保护空闲对象队列和已创建数量, 对象归还或对象池关闭时通知等待的线程
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    private final ArrayDeque<C> idle;
+    private int created;
+    private final ThreadLocal<C> pinned = new ThreadLocal<>();
+    private volatile Runnable initializer;
+    private volatile boolean closed;
+
+    /**
+     * 创建对象池
+     *
+     * @param size      池大小
+     * @param factory   创建对象, 在apartment上执行
+     * @param releaser  释放对象, 在apartment上执行
+     * @param apartment COM套间线程, 由调用方负责关闭
+     */
+    ComponentPool(int size, Callable<C> factory, Consumer<C> releaser, ExecutorService apartment) {
+        if (size < 1) {
+            throw new IllegalArgumentException("poolSize must be positive: " + size);
+        }
+        this.size = size;
+        this.factory = factory;
+        this.releaser = releaser;
+        this.apartment = apartment;
+        this.idle = new ArrayDeque<>(size);
+    }
+
+    void setInitializer(Runnable initializer) {
+        this.initializer = initializer;
+    }
+
+    /**
+     * 当前线程独占的对象
+     *
+     * @return 对象, 没有独占时返回null
+     */
+    C current() {
+        return pinned.get();
+    }
+
+    int getCreatedCount() {
+        lock.lock();
+        try {
+            return created;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 独占一个对象执行action, 已经独占对象时直接执行
+     *
+     * @param action 要执行的操作
+     * @param <T>    返回值类型
+     * @return action的返回值
+     */
+    <T> T withComponent(Supplier<T> action) {
+        if (pinned.get() != null) {
+            return action.get();
+        }
+        C component = lease();
+        pinned.set(component);
+        try {
+            return action.get();
+        } finally {
+            pinned.remove();
+            giveBack(component);
+        }
+    }
+
+    /**
+     * 依次等待每个已创建的对象空闲后独占执行action, 同一时间只占用一个对象.
+     * 不能在{@link #withComponent(Supplier)}中调用, 否则两个线程会互相等待对方独占的对象
+     *
+     * @param action 要执行的操作
+     */
+    void forEachComponent(Runnable action) {
+        if (pinned.get() != null) {
+            throw new IllegalStateException("不能在withComponent中调用forEachComponent");
+        }
+        for (C component : registry) {
+            take(component);
+            pinned.set(component);
+            try {
+                action.run();
+            } finally {
+                pinned.remove();
+                giveBack(component);
+            }
+        }
+    }
+
+    /**
+     * 在调用方线程中依次创建所有尚未创建的对象并执行初始化逻辑, 创建后放回空闲队列
+     */
+    void prestartAll() {
+        while (true) {
+            lock.lock();
+            try {
+                checkOpen();
+                if (created >= size) {
+                    return;
+                }
+                created++;
+            } finally {
+                lock.unlock();
+            }
+            giveBack(create());
+        }
+    }
+
+    /**
+     * 租用一个对象, 没有空闲对象且未达到池大小时创建新对象, 否则等待其它调用归还
+     *
+     * @return 对象
+     */
+    C lease() {
+        lock.lock();
+        try {
+            while (true) {
+                checkOpen();
+                C component = idle.poll();
+                if (component != null) {
+                    return component;
+                }
+                if (created < size) {
+                    created++;
+                    break;
+                }
+                returned.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for dm component.", e);
+        } finally {
+            lock.unlock();
+        }
+        return create();
+    }
+
+    /**
+     * 归还对象并通知等待的线程
+     *
+     * @param component 对象
+     */
+    void giveBack(C component) {
+        lock.lock();
+        try {
+            idle.offer(component);
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待租出的对象全部归还后, 在COM套间线程上释放所有创建过的对象.
+     * 正在等待空闲对象的调用会抛出{@link IllegalStateException}. 等待期间被中断时不再等待, 直接释放
+     */
+    void close() {
+        if (pinned.get() != null) {
+            throw new IllegalStateException("不能在withComponent中关闭");
+        }
+        lock.lock();
+        try {
+            closed = true;
+            returned.signalAll();
+            while (idle.size() < created) {
+                returned.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            apartment.submit(() -> {
+                for (C component : registry) {
+                    releaser.accept(component);
+                }
+                registry.clear();
+                lock.lock();
+                try {
+                    idle.clear();
+                } finally {
+                    lock.unlock();
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Release dm components failed.", e.getCause());
+        }
+    }
+
+    /**
+     * 等待指定的对象空闲后独占
+     *
+     * @param component 对象
+     */
+    private void take(C component) {
+        lock.lock();
+        try {
+            while (!idle.remove(component)) {
+                checkOpen();
+                returned.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for dm component.", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("DmSoft backend closed.");
+        }
+    }
+
+    /**
+     * 创建对象并执行初始化逻辑, 调用前已经占用了一个名额. 创建或初始化失败时归还名额
+     *
+     * @return 已被当前线程租用的对象
+     */
+    private C create() {
+        C component;
+        try {
+            component = apartment.submit(factory).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelCreate();
+            throw new RuntimeException("Interrupted while creating dm component.", e);
+        } catch (ExecutionException e) {
+            cancelCreate();
+            throw new RuntimeException("Create dm component failed.", e.getCause());
+        }
+        registry.add(component);
+        Runnable init = initializer;
+        if (init != null) {
+            pinned.set(component);
+            try {
+                init.run();
+            } catch (RuntimeException e) {
+                // 没有注册或设置工作目录的对象不能再被租用
+                discard(component, e);
+                throw e;
+            } finally {
+                pinned.remove();
+            }
+        }
+        return component;
+    }
+
+    /**
+     * 从登记册中移除初始化失败的对象, 在COM套间线程上释放并归还名额
+     *
+     * @param component 对象
+     * @param cause     初始化失败的原因, 释放失败时附加到其中
+     */
+    private void discard(C component, RuntimeException cause) {
+        registry.remove(component);
+        try {
+            apartment.submit(() -> releaser.accept(component)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cause.addSuppressed(e);
+        } catch (ExecutionException e) {
+            cause.addSuppressed(e.getCause());
+        } finally {
+            cancelCreate();
+        }
+    }
+
+    private void cancelCreate() {
+        lock.lock();
+        try {
+            created--;
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package cn.com.qjun.dmsoft.backend;
+
+import java.util.function.Supplier;
+
+/**
+ * 大漠接口调用后端
+ * <p>
+ * DmSoft的所有调用最终都委托给后端执行. 默认后端为{@link JacobDmBackend}, 通过JACOB调用dm.dmsoft组件;
+ * {@link SimulatedDmBackend}为纯Java实现, 用于在没有Windows环境时压测和分析脚本自身的开销.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public interface DmBackend extends AutoCloseable {
+    /**
+     * 输出参数占位符. args中的占位符按出现顺序对应outputs数组中的元素, 以引用方式传给大漠接口.
+     * 调用前outputs中对应元素的值不会传给大漠
+     */
+    OutParam OUT = OutParam.OUT;
+    /**
+     * 输入输出参数占位符. 与{@link #OUT}相同, 但调用前outputs中对应元素的值会作为参数的初始值传给大漠
+     */
+    OutParam IN_OUT = OutParam.IN_OUT;
+
+    /**
+     * 调用大漠接口，返回字符串
+     *
+     * @param method 方法名
+     * @param args   参数
+     * @return 返回的字符串
+     */
+    String callForString(String method, Object... args);
+
+    /**
+     * 调用大漠接口，返回整型数
+     *
+     * @param method 方法名
+     * @param args   参数
+     * @return 返回的整型数
+     */
+    long callForLong(String method, Object... args);
+
+    /**
+     * 调用带输出参数的大漠接口，返回整型数
+     *
+     * @param method  方法名
+     * @param outputs 输出参数, 调用后写入大漠返回的值
+     * @param args    参数, 输出参数所在位置用{@link #OUT}或{@link #IN_OUT}占位
+     * @return 返回的整型数
+     */
+    long callWithOutputs(String method, int[] outputs, Object... args);
+
+    /**
+     * 调用大漠接口，返回双精度浮点数
+     *
+     * @param method 方法名
+     * @param args   参数
+     * @return 返回的双精度浮点数
+     */
+    double callForDouble(String method, Object... args);
+
+    /**
+     * 调用大漠接口，返回单精度浮点数
+     *
+     * @param method 方法名
+     * @param args   参数
+     * @return 返回的单精度浮点数
+     */
+    float callForFloat(String method, Object... args);
+
+    /**
+     * 独占同一个大漠对象连续执行多个调用, action中的所有调用都使用该对象
+     *
+     * @param action 要执行的调用
+     * @param <T>    返回值类型
+     * @return action的返回值
+     */
+    default <T> T withComponent(Supplier<T> action) {
+        return action.get();
+    }
+
+    /**
+     * 当前线程正在使用的大漠对象的标识, 用于按对象记录状态(例如已加载的图片).
+     * 在{@link #withComponent(Supplier)}或{@link #forEachComponent(Runnable)}中调用时有效. 没有对象池的后端返回后端本身
+     *
+     * @return 大漠对象的标识, 当前线程没有独占大漠对象时返回null
+     */
+    default Object currentComponent() {
+        return this;
+    }
+
+    /**
+     * 设置大漠对象的初始化逻辑(注册、设置工作目录等), 后端每创建一个大漠对象都会在该对象上执行一次.
+     * 没有对象池的后端立即执行一次
+     *
+     * @param initializer 初始化逻辑
+     */
+    default void setComponentInitializer(Runnable initializer) {
+        initializer.run();
+    }
+
+    /**
+     * 在每个已创建的大漠对象上执行一次action, 用于设置绑定窗口等对象级别的状态.
+     * 有对象池的后端不允许在{@link #withComponent(Supplier)}中调用
+     *
+     * @param action 要执行的调用
+     */
+    default void forEachComponent(Runnable action) {
+        action.run();
+    }
+
+    /**
+     * 创建对象池中所有尚未创建的大漠对象, 之后{@link #forEachComponent(Runnable)}可以覆盖池中的每个对象.
+     * 用于预先加载图片等需要在所有对象上执行的准备工作, 没有对象池的后端什么都不做
+     */
+    default void prestartAllComponents() {
+    }
+
+    /**
+     * 释放后端持有的资源
+     */
+    @Override
+    void close();
+
+    /**
+     * 输出参数占位符类型
+     */
+    enum OutParam {
+        OUT,
+        IN_OUT;
+
+        @Override
+        public String toString() {
+            return "<" + name().toLowerCase() + ">";
+        }
+    }
+}
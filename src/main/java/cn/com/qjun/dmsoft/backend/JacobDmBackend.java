@@ -0,0 +1,416 @@
+package cn.com.qjun.dmsoft.backend;
+
+import cn.com.qjun.dmsoft.utils.RuntimeUtils;
+import com.jacob.activeX.ActiveXComponent;
+import com.jacob.com.ComThread;
+import com.jacob.com.Dispatch;
+import com.jacob.com.LibraryLoader;
+import com.jacob.com.Variant;
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * 通过JACOB调用dm.dmsoft组件的后端
+ * <p>
+ * 默认按方法名缓存每个组件的DISPID, 首次调用时解析一次, 之后按DISPID调用, 省去每次调用时的GetIDsOfNames.
+ * 可以通过{@link #setDispIdCacheEnabled(boolean)}或系统属性-Ddmsoft.dispIdCache=false关闭, 用于对比每次调用的耗时.
+ * <p>
+ * 大漠对象由有界对象池管理, 每次调用从池中租用一个对象, 调用结束后归还, 与调用方线程无关. 所有创建过的对象都登记在册,
+ * {@link #close()}时统一释放. 对象在专用的COM套间线程上创建和释放, 该线程同时维持进程的MTA, 调用方线程无需各自初始化COM.
+ * 池中每个大漠对象的状态(绑定窗口等)相互独立, 需要所有对象一致的状态应放在初始化逻辑中或通过{@link #forEachComponent(Runnable)}设置.
+ * <p>
+ * 注意: 以前每个调用方线程各自创建大漠对象, 现在默认的池大小为1, 所有线程共用同一个大漠对象和它的绑定窗口, 调用按顺序执行.
+ * 多个线程各自绑定不同窗口时, 应为每个窗口创建单独的DmSoft, 或者在{@link #withComponent(Supplier)}中完成绑定和后续调用.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class JacobDmBackend implements DmBackend {
+    private final ComponentPool<Binding> pool;
+    private final ExecutorService apartment;
+    private volatile boolean dispIdCacheEnabled = !"false".equalsIgnoreCase(System.getProperty("dmsoft.dispIdCache"));
+
+    static {
+        // 参数Variant由本后端显式释放, 不放入JACOB按线程管理的ROT, 避免调用方线程被隐式初始化COM后无法释放
+        if (System.getProperty("com.jacob.includeAllClassesInROT") == null) {
+            System.setProperty("com.jacob.includeAllClassesInROT", "false");
+        }
+        if (System.getProperty(Variant.class.getName() + ".PutInROT") == null) {
+            System.setProperty(Variant.class.getName() + ".PutInROT", "false");
+        }
+        try {
+            //TODO 判断系统环境
+            String systemPath = "win64-x64";
+            Path jacobDll = Files.createTempFile("jacob-1.20-x86", ".dll");
+//            Path jacobDll = Files.createTempFile("jacob-1.21-x64", ".dll");
+            RuntimeUtils.copyResourceFile("/win32-x86/jacob-1.20-x86.dll", jacobDll);
+//            RuntimeUtils.copyResourceFile("/win64-x64/jacob-1.21-x64.dll", jacobDll);
+            System.setProperty(LibraryLoader.JACOB_DLL_PATH, jacobDll.toAbsolutePath().toString());
+            LibraryLoader.loadJacobLibrary();
+
+            Path dmDll = Files.createTempFile("dm", ".dll");
+            RuntimeUtils.copyResourceFile("/win32-x86/dm.dll", dmDll);
+//            RuntimeUtils.copyResourceFile("/win64-x64/dm.dll", dmDll);
+            long dmReg = DmReg.INSTANCE.SetDllPathA(dmDll.toAbsolutePath().toString(), 1);
+            DmReg.INSTANCE.SetDllPathA(dmDll.toAbsolutePath().toString(), 0);
+            if (dmReg != 1L) {
+                throw new RuntimeException("Load dm.dll failed.");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Library release fail.", e);
+        }
+    }
+
+    public JacobDmBackend() {
+        this(1);
+    }
+
+    /**
+     * 创建后端
+     *
+     * @param poolSize 大漠对象池大小, 即可同时执行的调用数量
+     */
+    public JacobDmBackend(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+        }
+        this.apartment = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(() -> {
+                ComThread.InitMTA();
+                try {
+                    runnable.run();
+                } finally {
+                    ComThread.Release();
+                }
+            }, "dm-com-apartment");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pool = new ComponentPool<>(poolSize, () -> {
+            ActiveXComponent dmSoft = new ActiveXComponent("dm.dmsoft");
+            System.out.println("Init DmSoft success.");
+            return new Binding(dmSoft);
+        }, Binding::release, apartment);
+    }
+
+    /**
+     * 是否按DISPID调用
+     *
+     * @return 是否开启DISPID缓存
+     */
+    public boolean isDispIdCacheEnabled() {
+        return dispIdCacheEnabled;
+    }
+
+    /**
+     * 开启或关闭DISPID缓存, 关闭后每次调用都按方法名解析
+     *
+     * @param enabled 是否开启
+     */
+    public void setDispIdCacheEnabled(boolean enabled) {
+        this.dispIdCacheEnabled = enabled;
+    }
+
+    /**
+     * 已创建的大漠对象数量
+     *
+     * @return 对象数量
+     */
+    public int getComponentCount() {
+        return pool.getCreatedCount();
+    }
+
+    /**
+     * 空闲的大漠对象数量
+     *
+     * @return 对象数量
+     */
+    public int getIdleComponentCount() {
+        return pool.getIdleCount();
+    }
+
+    @Override
+    public String callForString(String method, Object... args) {
+        Variant result = invoke(method, args, null);
+        try {
+            return result.getString();
+        } finally {
+            result.safeRelease();
+        }
+    }
+
+    @Override
+    public long callForLong(String method, Object... args) {
+        return callWithOutputs(method, null, args);
+    }
+
+    @Override
+    public long callWithOutputs(String method, int[] outputs, Object... args) {
+        Variant result = invoke(method, args, outputs);
+        try {
+            return result.getInt();
+        } finally {
+            result.safeRelease();
+        }
+    }
+
+    @Override
+    public double callForDouble(String method, Object... args) {
+        Variant result = invoke(method, args, null);
+        try {
+            return result.getDouble();
+        } finally {
+            result.safeRelease();
+        }
+    }
+
+    @Override
+    public float callForFloat(String method, Object... args) {
+        Variant result = invoke(method, args, null);
+        try {
+            return result.getFloat();
+        } finally {
+            result.safeRelease();
+        }
+    }
+
+    @Override
+    public <T> T withComponent(Supplier<T> action) {
+        return pool.withComponent(action);
+    }
+
+    @Override
+    public Object currentComponent() {
+        return pool.current();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 初始化逻辑抛出异常时, 该对象不会放入池中, 而是立即释放, 之后租用时重新创建
+     */
+    @Override
+    public void setComponentInitializer(Runnable initializer) {
+        pool.setInitializer(initializer);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 依次等待每个对象空闲后独占执行, 同一时间只占用一个对象. 不能在{@link #withComponent(Supplier)}中调用,
+     * 否则两个线程会互相等待对方独占的对象
+     */
+    @Override
+    public void forEachComponent(Runnable action) {
+        pool.forEachComponent(action);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 对象在调用方线程中依次创建并执行初始化逻辑, 创建后放回空闲队列
+     */
+    @Override
+    public void prestartAllComponents() {
+        pool.prestartAll();
+    }
+
+    /**
+     * 租用一个大漠插件ActiveX对象调用接口
+     * <p>
+     * 参数通过当前线程复用的Variant槽位传入, 不再为每次调用创建Variant数组和引用参数.
+     *
+     * @param method  方法名
+     * @param args    参数
+     * @param outputs 输出参数, 没有输出参数时为null
+     * @return 返回值
+     */
+    private Variant invoke(String method, Object[] args, int[] outputs) {
+        Binding binding = pool.current();
+        if (binding != null) {
+            return invoke(binding, method, args, outputs);
+        }
+        binding = pool.lease();
+        try {
+            return invoke(binding, method, args, outputs);
+        } finally {
+            pool.giveBack(binding);
+        }
+    }
+
+    private Variant invoke(Binding binding, String method, Object[] args, int[] outputs) {
+        Variant[] slots = binding.slots(args.length);
+        int outputIndex = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == OUT) {
+                // 纯输出参数不需要初始值, 直接复用上次的引用参数
+                if (!binding.isByRef(args.length, i)) {
+                    binding.replace(args.length, i, new Variant(0, true), true);
+                }
+                outputIndex++;
+            } else if (args[i] == IN_OUT) {
+                // putIntRef会重新分配引用内存而不释放旧的, 所以换成新的引用参数
+                binding.replace(args.length, i, new Variant(outputs[outputIndex++], true), true);
+            } else {
+                if (binding.isByRef(args.length, i)) {
+                    binding.replace(args.length, i, new Variant(), false);
+                }
+                assign(slots[i], args[i]);
+            }
+        }
+        int[] argErrors = binding.argErrors[args.length];
+        Variant result = dispIdCacheEnabled
+                ? Dispatch.invokev(binding.component, binding.dispId(method), Dispatch.Method | Dispatch.Get, slots, argErrors)
+                : Dispatch.invokev(binding.component, method, Dispatch.Method | Dispatch.Get, slots, argErrors);
+        if (outputs != null) {
+            outputIndex = 0;
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] instanceof OutParam) {
+                    outputs[outputIndex++] = slots[i].getIntRef();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把参数写入复用的Variant槽位, 类型转换规则与{@link Variant#Variant(Object)}一致
+     *
+     * @param slot 槽位
+     * @param arg  参数
+     */
+    private static void assign(Variant slot, Object arg) {
+        if (arg instanceof Integer) {
+            slot.putInt((Integer) arg);
+        } else if (arg instanceof String) {
+            slot.putString((String) arg);
+        } else if (arg instanceof Double) {
+            slot.putDouble((Double) arg);
+        } else if (arg instanceof Float) {
+            slot.putFloat((Float) arg);
+        } else if (arg instanceof Long) {
+            slot.putLong((Long) arg);
+        } else if (arg instanceof Boolean) {
+            slot.putBoolean((Boolean) arg);
+        } else if (arg instanceof Short) {
+            slot.putShort((Short) arg);
+        } else if (arg instanceof Byte) {
+            slot.putByte((Byte) arg);
+        } else if (arg == null) {
+            slot.putNull();
+        } else {
+            throw new IllegalArgumentException("Unsupported dm argument type: " + arg.getClass().getName());
+        }
+    }
+
+    /**
+     * 等待租出的大漠对象全部归还后, 在COM套间线程上释放所有创建过的大漠对象.
+     * 正在等待空闲对象的调用会抛出{@link IllegalStateException}. 等待期间被中断时不再等待, 直接释放
+     */
+    @Override
+    public void close() {
+        if (pool.current() != null) {
+            throw new IllegalStateException("不能在withComponent中关闭");
+        }
+        try {
+            pool.close();
+        } finally {
+            apartment.shutdown();
+        }
+    }
+
+    /**
+     * 大漠插件ActiveX对象及其DISPID缓存、参数槽位
+     */
+    private static class Binding {
+        private static final int MAX_ARGS = 16;
+
+        private final ActiveXComponent component;
+        private final Map<String, Integer> dispIds = new HashMap<>(256);
+        /**
+         * 按参数个数复用的Variant数组
+         */
+        private final Variant[][] slots = new Variant[MAX_ARGS + 1][];
+        /**
+         * 槽位当前是否为引用参数
+         */
+        private final boolean[][] byRefs = new boolean[MAX_ARGS + 1][];
+        /**
+         * 按参数个数复用的参数错误位置数组
+         */
+        private final int[][] argErrors = new int[MAX_ARGS + 1][];
+
+        private Binding(ActiveXComponent component) {
+            this.component = component;
+        }
+
+        private int dispId(String method) {
+            Integer dispId = dispIds.get(method);
+            if (dispId == null) {
+                dispId = Dispatch.getIDOfName(component, method);
+                dispIds.put(method, dispId);
+            }
+            return dispId;
+        }
+
+        private Variant[] slots(int count) {
+            if (count > MAX_ARGS) {
+                throw new IllegalArgumentException("Too many dm arguments: " + count);
+            }
+            Variant[] variants = slots[count];
+            if (variants == null) {
+                variants = new Variant[count];
+                for (int i = 0; i < count; i++) {
+                    variants[i] = new Variant();
+                }
+                slots[count] = variants;
+                byRefs[count] = new boolean[count];
+                argErrors[count] = new int[count];
+            }
+            return variants;
+        }
+
+        private boolean isByRef(int count, int index) {
+            return byRefs[count][index];
+        }
+
+        private void release() {
+            for (Variant[] variants : slots) {
+                if (variants != null) {
+                    for (Variant variant : variants) {
+                        variant.safeRelease();
+                    }
+                }
+            }
+            component.safeRelease();
+        }
+
+        private void replace(int count, int index, Variant variant, boolean byRef) {
+            slots[count][index].safeRelease();
+            slots[count][index] = variant;
+            byRefs[count][index] = byRef;
+        }
+    }
+
+    private interface DmReg extends Library {
+        DmReg INSTANCE = Native.load("DmReg", DmReg.class);
+
+        /**
+         * 加载大漠插件
+         *
+         * @param dllPath dm.dll路径
+         * @param mode    0表示STA，1表示MTA
+         * @return 0表示成功
+         */
+        int SetDllPathA(String dllPath, int mode);
+    }
+}
@@ -0,0 +1,185 @@
+package cn.com.qjun.dmsoft.backend;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 纯Java模拟后端，不依赖Windows和dm.dll
+ * <p>
+ * 按方法名返回预先设定的结果, 并可模拟每次调用的耗时, 用于在Linux上压测和分析脚本Java侧的开销.
+ * 未设定结果的方法: 整型接口返回1(即调用成功), 字符串接口返回空串, 浮点接口返回0.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class SimulatedDmBackend implements DmBackend {
+    private final Map<String, Script> scripts;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final Map<String, LongAdder> callCounts = new ConcurrentHashMap<>();
+
+    private SimulatedDmBackend(Builder builder) {
+        this.scripts = new HashMap<>(builder.scripts);
+        this.latencyNanos = builder.latencyNanos;
+        this.jitterNanos = builder.jitterNanos;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public String callForString(String method, Object... args) {
+        Object result = invoke(method, args, null);
+        return result == null ? "" : result.toString();
+    }
+
+    @Override
+    public long callForLong(String method, Object... args) {
+        Object result = invoke(method, args, null);
+        return result == null ? 1L : ((Number) result).longValue();
+    }
+
+    @Override
+    public long callWithOutputs(String method, int[] outputs, Object... args) {
+        Object result = invoke(method, args, outputs);
+        return result == null ? 1L : ((Number) result).longValue();
+    }
+
+    @Override
+    public double callForDouble(String method, Object... args) {
+        Object result = invoke(method, args, null);
+        return result == null ? 0D : ((Number) result).doubleValue();
+    }
+
+    @Override
+    public float callForFloat(String method, Object... args) {
+        Object result = invoke(method, args, null);
+        return result == null ? 0F : ((Number) result).floatValue();
+    }
+
+    /**
+     * 获取指定方法的累计调用次数
+     *
+     * @param method 方法名
+     * @return 调用次数
+     */
+    public long getCallCount(String method) {
+        LongAdder counter = callCounts.get(method);
+        return counter == null ? 0L : counter.sum();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Object invoke(String method, Object[] args, int[] outputs) {
+        callCounts.computeIfAbsent(method, key -> new LongAdder()).increment();
+        if (latencyNanos > 0 || jitterNanos > 0) {
+            long delay = jitterNanos > 0 ? latencyNanos + ThreadLocalRandom.current().nextLong(jitterNanos + 1) : latencyNanos;
+            LockSupport.parkNanos(delay);
+        }
+        Script script = scripts.get(method);
+        return script == null ? null : script.respond(args, outputs);
+    }
+
+    /**
+     * 模拟的接口实现
+     */
+    @FunctionalInterface
+    public interface Script {
+        /**
+         * 响应一次调用
+         *
+         * @param args    调用参数
+         * @param outputs 输出参数, 没有输出参数时为null
+         * @return 接口返回值, 字符串或数值. 返回null时使用默认值
+         */
+        Object respond(Object[] args, int[] outputs);
+    }
+
+    public static class Builder {
+        private final Map<String, Script> scripts = new HashMap<>();
+        private long latencyNanos;
+        private long jitterNanos;
+
+        private Builder() {
+            scripts.put("Ver", (args, outputs) -> "simulated");
+        }
+
+        /**
+         * 设置每次调用的模拟耗时
+         *
+         * @param latency 耗时
+         * @param unit    时间单位
+         * @return
+         */
+        public Builder latency(long latency, TimeUnit unit) {
+            this.latencyNanos = unit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * 设置每次调用在模拟耗时基础上随机增加的最大耗时
+         *
+         * @param jitter 最大随机耗时
+         * @param unit   时间单位
+         * @return
+         */
+        public Builder jitter(long jitter, TimeUnit unit) {
+            this.jitterNanos = unit.toNanos(jitter);
+            return this;
+        }
+
+        /**
+         * 指定方法固定返回某个值
+         *
+         * @param method 方法名
+         * @param result 返回值
+         * @return
+         */
+        public Builder respond(String method, Object result) {
+            scripts.put(method, (args, outputs) -> result);
+            return this;
+        }
+
+        /**
+         * 指定带输出参数的方法固定返回某个值, 并写入输出参数
+         *
+         * @param method      方法名
+         * @param result      返回值
+         * @param outputValues 输出参数的值
+         * @return
+         */
+        public Builder respond(String method, long result, int... outputValues) {
+            scripts.put(method, (args, outputs) -> {
+                if (outputs != null) {
+                    System.arraycopy(outputValues, 0, outputs, 0, Math.min(outputs.length, outputValues.length));
+                }
+                return result;
+            });
+            return this;
+        }
+
+        /**
+         * 指定方法的模拟实现
+         *
+         * @param method 方法名
+         * @param script 模拟实现
+         * @return
+         */
+        public Builder script(String method, Script script) {
+            scripts.put(method, script);
+            return this;
+        }
+
+        public SimulatedDmBackend build() {
+            return new SimulatedDmBackend(this);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package cn.com.qjun.dmsoft.domain;
+
+import cn.com.qjun.dmsoft.utils.ResultScanner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按列存放的批量查找结果
+ * <p>
+ * 序号、X坐标、Y坐标、相似度分别存放在int数组中, 数组只在容量不足时扩容, 同一个缓冲区可以在每帧的查找中反复使用,
+ * 排序、过滤、找最近点都在数组上原地完成, 不创建{@link FindResult}和{@link Point}对象. 非线程安全.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FindResultBuffer {
+    /**
+     * 排序键的低位存放行号, 最多支持2^20条结果
+     */
+    private static final int ROW_BITS = 20;
+    private static final long ROW_MASK = (1L << ROW_BITS) - 1;
+    /**
+     * 没有相似度时{@link #getSimilarity(int)}的返回值
+     */
+    public static final int NO_SIMILARITY = -1;
+
+    private int[] indexes;
+    private int[] xs;
+    private int[] ys;
+    private int[] sims;
+    private int size;
+    private long[] sortKeys;
+    private int[] scratch;
+
+    public FindResultBuffer() {
+        this(16);
+    }
+
+    /**
+     * 创建缓冲区
+     *
+     * @param capacity 初始容量
+     */
+    public FindResultBuffer(int capacity) {
+        int initial = Math.max(1, capacity);
+        indexes = new int[initial];
+        xs = new int[initial];
+        ys = new int[initial];
+        sims = new int[initial];
+    }
+
+    /**
+     * 清空缓冲区并解析大漠返回的结果字符串
+     *
+     * @param resultStr FindPicEx等接口返回的字符串
+     * @param withSim   结果中是否包含相似度
+     * @return 结果条数
+     */
+    public int parse(String resultStr, boolean withSim) {
+        size = 0;
+        int count = ResultScanner.countItems(resultStr, ResultScanner.ITEM_SEPARATOR);
+        if (count == 0) {
+            return 0;
+        }
+        ensureCapacity(count);
+        size = ResultScanner.parseFindResults(resultStr, withSim, indexes, xs, ys, sims);
+        if (!withSim) {
+            Arrays.fill(sims, 0, size, NO_SIMILARITY);
+        }
+        return size;
+    }
+
+    /**
+     * 追加一条结果
+     *
+     * @param index      序号
+     * @param x          X坐标
+     * @param y          Y坐标
+     * @param similarity 相似度, 没有时传{@link #NO_SIMILARITY}
+     */
+    public void add(int index, int x, int y, int similarity) {
+        ensureCapacity(size + 1);
+        indexes[size] = index;
+        xs[size] = x;
+        ys[size] = y;
+        sims[size] = similarity;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getIndex(int row) {
+        checkRow(row);
+        return indexes[row];
+    }
+
+    public int getX(int row) {
+        checkRow(row);
+        return xs[row];
+    }
+
+    public int getY(int row) {
+        checkRow(row);
+        return ys[row];
+    }
+
+    /**
+     * 获取相似度
+     *
+     * @param row 行号
+     * @return 相似度, 没有时返回{@link #NO_SIMILARITY}
+     */
+    public int getSimilarity(int row) {
+        checkRow(row);
+        return sims[row];
+    }
+
+    public Point getPoint(int row) {
+        checkRow(row);
+        return Point.of(xs[row], ys[row]);
+    }
+
+    public FindResult get(int row) {
+        checkRow(row);
+        return new FindResult(indexes[row], Point.of(xs[row], ys[row]), sims[row] == NO_SIMILARITY ? null : sims[row]);
+    }
+
+    /**
+     * 复制成{@link FindResult}列表, 之后缓冲区的变化不影响返回的列表
+     *
+     * @return 结果列表
+     */
+    public List<FindResult> toList() {
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        boolean withSim = false;
+        for (int i = 0; i < size; i++) {
+            if (sims[i] != NO_SIMILARITY) {
+                withSim = true;
+                break;
+            }
+        }
+        return new FindResultList(size, Arrays.copyOf(indexes, size), Arrays.copyOf(xs, size), Arrays.copyOf(ys, size),
+                withSim ? Arrays.copyOf(sims, size) : null);
+    }
+
+    /**
+     * 找离(x,y)最近的结果
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 行号, 缓冲区为空时返回-1
+     */
+    public int nearest(int x, int y) {
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            long distance = distanceSquared(i, x, y);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 找相似度最高的结果, 相似度相同时取靠前的
+     *
+     * @return 行号, 缓冲区为空时返回-1
+     */
+    public int best() {
+        int best = -1;
+        for (int i = 0; i < size; i++) {
+            if (best < 0 || sims[i] > sims[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 只保留满足条件的结果, 保持原有顺序
+     *
+     * @param filter 过滤条件
+     * @return 保留的结果条数
+     */
+    public int retainIf(RowFilter filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(indexes[i], xs[i], ys[i], sims[i])) {
+                if (kept != i) {
+                    indexes[kept] = indexes[i];
+                    xs[kept] = xs[i];
+                    ys[kept] = ys[i];
+                    sims[kept] = sims[i];
+                }
+                kept++;
+            }
+        }
+        size = kept;
+        return kept;
+    }
+
+    /**
+     * 只保留坐标在区域内的结果, 区域包含左上边界, 不包含右下边界
+     *
+     * @param rect 区域
+     * @return 保留的结果条数
+     */
+    public int retainWithin(Rect rect) {
+        int x1 = rect.getX1();
+        int y1 = rect.getY1();
+        int x2 = rect.getX2();
+        int y2 = rect.getY2();
+        return retainIf((index, x, y, sim) -> x >= x1 && x < x2 && y >= y1 && y < y2);
+    }
+
+    /**
+     * 只保留指定序号的结果, 例如多图查找时只要某一张图的命中
+     *
+     * @param index 图片或字符串序号
+     * @return 保留的结果条数
+     */
+    public int retainIndex(int index) {
+        return retainIf((i, x, y, sim) -> i == index);
+    }
+
+    /**
+     * 只保留相似度不低于minSimilarity的结果
+     *
+     * @param minSimilarity 最低相似度
+     * @return 保留的结果条数
+     */
+    public int retainMinSimilarity(int minSimilarity) {
+        return retainIf((index, x, y, sim) -> sim >= minSimilarity);
+    }
+
+    /**
+     * 按从上到下、从左到右排序
+     */
+    public void sortByPosition() {
+        long[] keys = keys();
+        for (int i = 0; i < size; i++) {
+            long key = ((long) (clampCoordinate(ys[i]) + 0x8000) << 16) | (clampCoordinate(xs[i]) + 0x8000);
+            keys[i] = (key << ROW_BITS) | i;
+        }
+        applyOrder(keys);
+    }
+
+    /**
+     * 按离(x,y)的距离从近到远排序
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     */
+    public void sortByDistance(int x, int y) {
+        long[] keys = keys();
+        for (int i = 0; i < size; i++) {
+            long dx = clampCoordinate(xs[i]) - (long) clampCoordinate(x);
+            long dy = clampCoordinate(ys[i]) - (long) clampCoordinate(y);
+            keys[i] = ((dx * dx + dy * dy) << ROW_BITS) | i;
+        }
+        applyOrder(keys);
+    }
+
+    /**
+     * 按相似度从高到低排序, 相似度相同时保持原有顺序
+     */
+    public void sortBySimilarity() {
+        long[] keys = keys();
+        for (int i = 0; i < size; i++) {
+            keys[i] = (((long) Integer.MAX_VALUE - Math.max(sims[i], NO_SIMILARITY)) << ROW_BITS) | i;
+        }
+        applyOrder(keys);
+    }
+
+    private long[] keys() {
+        if (size > ROW_MASK + 1) {
+            throw new IllegalStateException("结果过多, 无法排序: " + size);
+        }
+        if (sortKeys == null || sortKeys.length < size) {
+            sortKeys = new long[indexes.length];
+        }
+        return sortKeys;
+    }
+
+    private void applyOrder(long[] keys) {
+        Arrays.sort(keys, 0, size);
+        if (scratch == null || scratch.length < size) {
+            scratch = new int[indexes.length];
+        }
+        permute(indexes, keys);
+        permute(xs, keys);
+        permute(ys, keys);
+        permute(sims, keys);
+    }
+
+    private void permute(int[] column, long[] keys) {
+        for (int i = 0; i < size; i++) {
+            scratch[i] = column[(int) (keys[i] & ROW_MASK)];
+        }
+        System.arraycopy(scratch, 0, column, 0, size);
+    }
+
+    private long distanceSquared(int row, int x, int y) {
+        long dx = xs[row] - (long) x;
+        long dy = ys[row] - (long) y;
+        return dx * dx + dy * dy;
+    }
+
+    private static int clampCoordinate(int value) {
+        return Math.max(-0x8000, Math.min(0x7FFF, value));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= indexes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, indexes.length + (indexes.length >> 1));
+        indexes = Arrays.copyOf(indexes, newCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        sims = Arrays.copyOf(sims, newCapacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+    }
+
+    /**
+     * 按行过滤的条件
+     */
+    @FunctionalInterface
+    public interface RowFilter {
+        /**
+         * 是否保留该行
+         *
+         * @param index      序号
+         * @param x          X坐标
+         * @param y          Y坐标
+         * @param similarity 相似度, 没有时为{@link #NO_SIMILARITY}
+         * @return 是否保留
+         */
+        boolean test(int index, int x, int y, int similarity);
+    }
+}
@@ -0,0 +1,81 @@
+package cn.com.qjun.dmsoft.domain;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * 基于基本类型数组的只读查找结果列表
+ * <p>
+ * 结果按列存放在int数组中, {@link #get(int)}时才创建{@link FindResult}对象, 只需要坐标时可以直接用
+ * {@link #getIndex(int)}、{@link #getX(int)}、{@link #getY(int)}读取, 不产生任何对象.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FindResultList extends AbstractList<FindResult> implements RandomAccess {
+    private final int size;
+    private final int[] indexes;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] sims;
+
+    /**
+     * 创建结果列表, 数组由列表持有, 调用方不应再修改
+     *
+     * @param size    结果条数
+     * @param indexes 找到的序号
+     * @param xs      X坐标
+     * @param ys      Y坐标
+     * @param sims    相似度, 没有相似度时为null
+     */
+    public FindResultList(int size, int[] indexes, int[] xs, int[] ys, int[] sims) {
+        this.size = size;
+        this.indexes = indexes;
+        this.xs = xs;
+        this.ys = ys;
+        this.sims = sims;
+    }
+
+    @Override
+    public FindResult get(int i) {
+        checkIndex(i);
+        return new FindResult(indexes[i], Point.of(xs[i], ys[i]), sims == null ? null : sims[i]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int getIndex(int i) {
+        checkIndex(i);
+        return indexes[i];
+    }
+
+    public int getX(int i) {
+        checkIndex(i);
+        return xs[i];
+    }
+
+    public int getY(int i) {
+        checkIndex(i);
+        return ys[i];
+    }
+
+    /**
+     * 获取相似度
+     *
+     * @param i 结果序号
+     * @return 相似度, 没有相似度时返回-1
+     */
+    public int getSimilarity(int i) {
+        checkIndex(i);
+        return sims == null ? -1 : sims[i];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package cn.com.qjun.dmsoft.domain;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * 基于基本类型数组的只读OCR结果列表
+ * <p>
+ * 文字只记录在大漠返回的原始字符串中的起止位置, {@link #get(int)}或{@link #getText(int)}时才截取,
+ * 只需要坐标时可以直接用{@link #getX(int)}、{@link #getY(int)}读取.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class OcrResultList extends AbstractList<OcrResult> implements RandomAccess {
+    private final String source;
+    private final int size;
+    private final int[] textStarts;
+    private final int[] textEnds;
+    private final int[] xs;
+    private final int[] ys;
+
+    /**
+     * 创建结果列表, 数组由列表持有, 调用方不应再修改
+     *
+     * @param source     大漠返回的原始字符串
+     * @param size       结果条数
+     * @param textStarts 文字在原始字符串中的起始位置(包含)
+     * @param textEnds   文字在原始字符串中的结束位置(不包含)
+     * @param xs         X坐标
+     * @param ys         Y坐标
+     */
+    public OcrResultList(String source, int size, int[] textStarts, int[] textEnds, int[] xs, int[] ys) {
+        this.source = source;
+        this.size = size;
+        this.textStarts = textStarts;
+        this.textEnds = textEnds;
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    @Override
+    public OcrResult get(int i) {
+        return new OcrResult(getText(i), Point.of(xs[i], ys[i]));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public String getText(int i) {
+        checkIndex(i);
+        return source.substring(textStarts[i], textEnds[i]);
+    }
+
+    /**
+     * 比较第i个结果的文字是否等于text, 不截取字符串
+     *
+     * @param i    结果序号
+     * @param text 要比较的文字
+     * @return 是否相等
+     */
+    public boolean textEquals(int i, String text) {
+        checkIndex(i);
+        int length = textEnds[i] - textStarts[i];
+        return text.length() == length && source.regionMatches(textStarts[i], text, 0, length);
+    }
+
+    public int getX(int i) {
+        checkIndex(i);
+        return xs[i];
+    }
+
+    public int getY(int i) {
+        checkIndex(i);
+        return ys[i];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package cn.com.qjun.dmsoft.domain;
+
+/**
+ * 用一个long表示的点
+ * <p>
+ * 高32位为X坐标, 低32位为Y坐标. 在循环中处理大量坐标时用来代替{@link Point}, 不产生对象.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class Points {
+    /**
+     * 表示没有找到的点, 即(Integer.MIN_VALUE, 0)
+     */
+    public static final long NOT_FOUND = Long.MIN_VALUE;
+    /**
+     * 原点(0,0)
+     */
+    public static final long ORIGIN = 0L;
+
+    private Points() {
+    }
+
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static long pack(Point point) {
+        return pack(point.getX(), point.getY());
+    }
+
+    public static int x(long point) {
+        return (int) (point >> 32);
+    }
+
+    public static int y(long point) {
+        return (int) point;
+    }
+
+    public static Point toPoint(long point) {
+        return Point.of(x(point), y(point));
+    }
+
+    public static boolean isFound(long point) {
+        return point != NOT_FOUND;
+    }
+
+    public static long translate(long point, int dx, int dy) {
+        return pack(x(point) + dx, y(point) + dy);
+    }
+
+    /**
+     * 两点坐标分别取最小值
+     */
+    public static long min(long a, long b) {
+        return pack(Math.min(x(a), x(b)), Math.min(y(a), y(b)));
+    }
+
+    /**
+     * 两点坐标分别取最大值
+     */
+    public static long max(long a, long b) {
+        return pack(Math.max(x(a), x(b)), Math.max(y(a), y(b)));
+    }
+
+    /**
+     * 两点距离的平方
+     */
+    public static long distanceSquared(long a, long b) {
+        long dx = (long) x(a) - x(b);
+        long dy = (long) y(a) - y(b);
+        return dx * dx + dy * dy;
+    }
+
+    public static String toString(long point) {
+        return String.format("(%d,%d)", x(point), y(point));
+    }
+}
@@ -0,0 +1,104 @@
+package cn.com.qjun.dmsoft.domain;
+
+/**
+ * 用两个long表示的矩形区域
+ * <p>
+ * 矩形由左上角min=(x1,y1)和右下角max=(x2,y2)两个{@link Points}表示, 与{@link Rect#getX1()}等一致, 右下角不包含在区域内.
+ * 结果是一个矩形的运算写入调用方提供的长度至少为2的数组, out[0]为min, out[1]为max, 数组可以反复使用.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class Rects {
+    private Rects() {
+    }
+
+    public static long min(Rect rect) {
+        return Points.pack(rect.getX1(), rect.getY1());
+    }
+
+    public static long max(Rect rect) {
+        return Points.pack(rect.getX2(), rect.getY2());
+    }
+
+    public static Rect toRect(long min, long max) {
+        return Rect.of(Points.x(min), Points.y(min), Points.x(max), Points.y(max));
+    }
+
+    public static int width(long min, long max) {
+        return Points.x(max) - Points.x(min);
+    }
+
+    public static int height(long min, long max) {
+        return Points.y(max) - Points.y(min);
+    }
+
+    public static boolean isEmpty(long min, long max) {
+        return Points.x(max) <= Points.x(min) || Points.y(max) <= Points.y(min);
+    }
+
+    public static long center(long min, long max) {
+        return Points.pack((Points.x(min) + Points.x(max)) >> 1, (Points.y(min) + Points.y(max)) >> 1);
+    }
+
+    /**
+     * 点是否在区域内
+     */
+    public static boolean contains(long min, long max, long point) {
+        int x = Points.x(point);
+        int y = Points.y(point);
+        return x >= Points.x(min) && x < Points.x(max) && y >= Points.y(min) && y < Points.y(max);
+    }
+
+    /**
+     * 两个区域是否相交
+     */
+    public static boolean intersects(long min1, long max1, long min2, long max2) {
+        return Points.x(min1) < Points.x(max2) && Points.x(min2) < Points.x(max1)
+                && Points.y(min1) < Points.y(max2) && Points.y(min2) < Points.y(max1);
+    }
+
+    /**
+     * 求两个区域的交集
+     *
+     * @return 是否相交, 不相交时out中为空区域
+     */
+    public static boolean intersect(long min1, long max1, long min2, long max2, long[] out) {
+        out[0] = Points.max(min1, min2);
+        out[1] = Points.min(max1, max2);
+        return !isEmpty(out[0], out[1]);
+    }
+
+    /**
+     * 求包含两个区域的最小区域
+     */
+    public static void union(long min1, long max1, long min2, long max2, long[] out) {
+        out[0] = Points.min(min1, min2);
+        out[1] = Points.max(max1, max2);
+    }
+
+    /**
+     * 把点限制在区域内, 右下边界取x2-1和y2-1
+     */
+    public static long clamp(long min, long max, long point) {
+        int x = Math.max(Points.x(min), Math.min(Points.x(max) - 1, Points.x(point)));
+        int y = Math.max(Points.y(min), Math.min(Points.y(max) - 1, Points.y(point)));
+        return Points.pack(x, y);
+    }
+
+    /**
+     * 向四周扩大区域, margin为负数时缩小
+     */
+    public static void expand(long min, long max, int margin, long[] out) {
+        out[0] = Points.translate(min, -margin, -margin);
+        out[1] = Points.translate(max, margin, margin);
+    }
+
+    /**
+     * 平移区域
+     */
+    public static void translate(long min, long max, int dx, int dy, long[] out) {
+        out[0] = Points.translate(min, dx, dy);
+        out[1] = Points.translate(max, dx, dy);
+    }
+}
@@ -0,0 +1,41 @@
+package cn.com.qjun.dmsoft.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次大漠接口调用的JFR事件, 事件的开始时间、耗时和调用线程由JFR自动记录
+ * <p>
+ * 只能通过{@link DmCallTracing}使用, 以免在没有JFR的Java 8运行时上加载本类.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+@Name("cn.com.qjun.dmsoft.Call")
+@Label("DmSoft Call")
+@Description("一次大漠插件接口调用")
+@Category("DmSoft")
+@StackTrace(false)
+class DmCallEvent extends Event {
+    @Label("Method")
+    String method;
+
+    @Label("Arguments")
+    String arguments;
+
+    @Label("Return Code")
+    @Description("整型接口的返回值, 其他接口为0")
+    long returnCode;
+
+    @Label("Result")
+    @Description("字符串和浮点接口的返回值摘要")
+    String result;
+
+    @Label("Success")
+    @Description("调用是否正常返回, 抛出异常时为false")
+    boolean success;
+}
@@ -0,0 +1,121 @@
+package cn.com.qjun.dmsoft.metrics;
+
+import jdk.jfr.EventType;
+
+import java.util.Arrays;
+
+/**
+ * 把大漠接口调用记录为JFR事件{@code cn.com.qjun.dmsoft.Call}
+ * <p>
+ * 事件是否记录、阈值和是否带调用栈都通过标准的JFR配置控制, 例如
+ * {@code -XX:StartFlightRecording:cn.com.qjun.dmsoft.Call#threshold=5ms}. 未开启录制时每次调用只有一次开关判断, 不创建事件对象,
+ * 参数摘要只在事件确定要提交时才生成. 运行时没有JFR(早期Java 8)时所有方法都不做任何事.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class DmCallTracing {
+    private static final boolean AVAILABLE = detect();
+    private static final int MAX_SUMMARY_LENGTH = 256;
+
+    private DmCallTracing() {
+    }
+
+    /**
+     * 调用开始时调用
+     *
+     * @return 事件, 不需要记录时返回null
+     */
+    public static Object begin() {
+        return AVAILABLE ? Jfr.begin() : null;
+    }
+
+    /**
+     * 整型接口调用结束时调用
+     *
+     * @param event      {@link #begin()}的返回值
+     * @param method     方法名
+     * @param args       参数
+     * @param success    调用是否正常返回
+     * @param returnCode 返回值
+     */
+    public static void end(Object event, String method, Object[] args, boolean success, long returnCode) {
+        if (event != null) {
+            Jfr.end(event, method, args, success, returnCode, null);
+        }
+    }
+
+    /**
+     * 浮点接口调用结束时调用
+     *
+     * @param event   {@link #begin()}的返回值
+     * @param method  方法名
+     * @param args    参数
+     * @param success 调用是否正常返回
+     * @param result  返回值
+     */
+    public static void end(Object event, String method, Object[] args, boolean success, double result) {
+        if (event != null) {
+            Jfr.end(event, method, args, success, 0L, success ? result : null);
+        }
+    }
+
+    /**
+     * 字符串接口调用结束时调用
+     *
+     * @param event   {@link #begin()}的返回值
+     * @param method  方法名
+     * @param args    参数
+     * @param success 调用是否正常返回
+     * @param result  返回值
+     */
+    public static void end(Object event, String method, Object[] args, boolean success, String result) {
+        if (event != null) {
+            Jfr.end(event, method, args, success, 0L, result);
+        }
+    }
+
+    private static boolean detect() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static String summarize(Object value) {
+        String summary = value instanceof Object[] ? Arrays.toString((Object[]) value) : String.valueOf(value);
+        return summary.length() <= MAX_SUMMARY_LENGTH ? summary : summary.substring(0, MAX_SUMMARY_LENGTH) + "...";
+    }
+
+    /**
+     * 隔离对JFR类的引用, 只在JFR可用时加载
+     */
+    private static final class Jfr {
+        private static final EventType EVENT_TYPE = EventType.getEventType(DmCallEvent.class);
+
+        private static Object begin() {
+            // 先判断事件类型是否开启, 未开启时不创建事件对象
+            if (!EVENT_TYPE.isEnabled()) {
+                return null;
+            }
+            DmCallEvent event = new DmCallEvent();
+            event.begin();
+            return event;
+        }
+
+        private static void end(Object value, String method, Object[] args, boolean success, long returnCode, Object result) {
+            DmCallEvent event = (DmCallEvent) value;
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = method;
+                event.arguments = summarize(args);
+                event.success = success;
+                event.returnCode = returnCode;
+                event.result = result == null ? null : summarize(result);
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package cn.com.qjun.dmsoft.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 大漠接口调用统计
+ * <p>
+ * 按方法名记录调用次数、失败次数和耗时直方图. 除每个方法第一次调用外, 记录过程不加锁也不分配对象, 可以在生产环境常开.
+ * 通过{@link #snapshot()}获取统计快照, 或通过{@link #registerMBean(String)}注册到JMX后用jconsole等工具查看.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class DmMetrics implements DmMetricsMXBean {
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private volatile ObjectName objectName;
+
+    /**
+     * 记录一次调用
+     *
+     * @param method     方法名
+     * @param startNanos 调用开始时{@link System#nanoTime()}的值
+     */
+    public void record(String method, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        MethodMetrics metrics = metricsOf(method);
+        metrics.calls.increment();
+        metrics.totalNanos.add(elapsed);
+        metrics.histogram.record(elapsed);
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @param method 方法名
+     */
+    public void recordError(String method) {
+        metricsOf(method).errors.increment();
+    }
+
+    /**
+     * 记录一次命中结果缓存, 命中时没有调用大漠接口, 不计入调用次数
+     *
+     * @param method 方法名
+     */
+    public void recordCacheHit(String method) {
+        metricsOf(method).cacheHits.increment();
+    }
+
+    /**
+     * 记录一次未命中结果缓存
+     *
+     * @param method 方法名
+     */
+    public void recordCacheMiss(String method) {
+        metricsOf(method).cacheMisses.increment();
+    }
+
+    /**
+     * 获取指定方法的统计快照
+     *
+     * @param method 方法名
+     * @return 统计快照, 该方法没有调用过时返回null
+     */
+    public MethodStats snapshot(String method) {
+        MethodMetrics metrics = methods.get(method);
+        return metrics == null ? null : metrics.snapshot(method);
+    }
+
+    /**
+     * 获取所有方法的统计快照, 按累计耗时从高到低排列
+     *
+     * @return 统计快照
+     */
+    public List<MethodStats> snapshot() {
+        List<MethodStats> stats = new ArrayList<>(methods.size());
+        methods.forEach((method, metrics) -> stats.add(metrics.snapshot(method)));
+        stats.sort(Comparator.comparingLong(MethodStats::getTotalNanos).reversed());
+        return stats;
+    }
+
+    @Override
+    public List<MethodStats> getMethodStats() {
+        return snapshot();
+    }
+
+    @Override
+    public long getTotalCalls() {
+        long total = 0;
+        for (MethodMetrics metrics : methods.values()) {
+            total += metrics.calls.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalErrors() {
+        long total = 0;
+        for (MethodMetrics metrics : methods.values()) {
+            total += metrics.errors.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalCacheHits() {
+        long total = 0;
+        for (MethodMetrics metrics : methods.values()) {
+            total += metrics.cacheHits.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalCacheMisses() {
+        long total = 0;
+        for (MethodMetrics metrics : methods.values()) {
+            total += metrics.cacheMisses.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public void reset() {
+        methods.values().forEach(MethodMetrics::reset);
+    }
+
+    /**
+     * 注册到平台MBeanServer, ObjectName为cn.com.qjun.dmsoft:type=DmMetrics,name=#{name}
+     *
+     * @param name 名称, 同一进程内多个DmSoft需使用不同的名称
+     */
+    public synchronized void registerMBean(String name) {
+        unregisterMBean();
+        try {
+            ObjectName objectName = ObjectName.getInstance("cn.com.qjun.dmsoft:type=DmMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            throw new RuntimeException("注册DmMetrics失败: " + name, e);
+        }
+    }
+
+    /**
+     * 从平台MBeanServer注销, 未注册时什么也不做
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new RuntimeException("注销DmMetrics失败: " + objectName, e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    private MethodMetrics metricsOf(String method) {
+        MethodMetrics metrics = methods.get(method);
+        return metrics != null ? metrics : methods.computeIfAbsent(method, key -> new MethodMetrics());
+    }
+
+    private static final class MethodMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder cacheMisses = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private MethodStats snapshot(String method) {
+            long[] counts = histogram.copyCounts();
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            long max = histogram.getMax();
+            return new MethodStats(method, calls.sum(), errors.sum(), totalNanos.sum(),
+                    Math.min(max, LatencyHistogram.valueAtPercentile(counts, total, 50D)),
+                    Math.min(max, LatencyHistogram.valueAtPercentile(counts, total, 99D)),
+                    Math.min(max, LatencyHistogram.valueAtPercentile(counts, total, 99.9D)),
+                    max, cacheHits.sum(), cacheMisses.sum());
+        }
+
+        private void reset() {
+            calls.reset();
+            errors.reset();
+            totalNanos.reset();
+            cacheHits.reset();
+            cacheMisses.reset();
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package cn.com.qjun.dmsoft.metrics;
+
+import java.util.List;
+
+/**
+ * 大漠接口调用统计的JMX接口
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public interface DmMetricsMXBean {
+    /**
+     * 所有接口的调用统计, 按累计耗时从高到低排列
+     *
+     * @return 调用统计
+     */
+    List<MethodStats> getMethodStats();
+
+    /**
+     * 所有接口的调用总次数
+     *
+     * @return 调用次数
+     */
+    long getTotalCalls();
+
+    /**
+     * 所有接口的失败总次数
+     *
+     * @return 失败次数
+     */
+    long getTotalErrors();
+
+    /**
+     * 所有接口命中结果缓存的总次数
+     *
+     * @return 命中次数
+     */
+    long getTotalCacheHits();
+
+    /**
+     * 所有接口未命中结果缓存的总次数
+     *
+     * @return 未命中次数
+     */
+    long getTotalCacheMisses();
+
+    /**
+     * 清空统计
+     */
+    void reset();
+}
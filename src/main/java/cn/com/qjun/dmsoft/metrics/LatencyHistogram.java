@@ -0,0 +1,114 @@
+package cn.com.qjun.dmsoft.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的耗时直方图
+ * <p>
+ * 按对数-线性分桶记录纳秒耗时: 小于128ns的值每纳秒一个桶, 更大的值每个2的幂区间再均分为64个桶, 相对误差不超过1/64.
+ * 超过{@link #MAX_TRACKABLE_NANOS}(约36分钟)的值记入最后一个桶. 记录时只做一次原子自增, 不分配对象.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class LatencyHistogram {
+    /**
+     * 每个2的幂区间内的桶数量的位数
+     */
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * 可以准确记录的最大耗时
+     */
+    public static final long MAX_TRACKABLE_NANOS = (1L << 41) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时纳秒数, 负数按0记录
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_TRACKABLE_NANOS);
+        counts.incrementAndGet(indexOf(value));
+        long current;
+        while (nanos > (current = max.get())) {
+            if (max.compareAndSet(current, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 最大耗时纳秒数
+     *
+     * @return 最大耗时
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 当前各个桶的计数副本, 用于计算百分位
+     *
+     * @return 各个桶的计数
+     */
+    public long[] copyCounts() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * 清空直方图
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        max.set(0L);
+    }
+
+    /**
+     * 根据桶计数计算百分位耗时, 返回所在桶的上界
+     *
+     * @param counts     {@link #copyCounts()}的结果
+     * @param total      计数总和
+     * @param percentile 百分位, 取值范围0-100
+     * @return 耗时纳秒数, 没有记录时返回0
+     */
+    public static long valueAtPercentile(long[] counts, long total, double percentile) {
+        if (total <= 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(total * Math.min(100D, Math.max(0D, percentile)) / 100D));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(counts.length - 1);
+    }
+
+    static int indexOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestValueOf(int index) {
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        if (shift <= 0) {
+            return index;
+        }
+        long top = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((top + 1) << shift) - 1;
+    }
+}
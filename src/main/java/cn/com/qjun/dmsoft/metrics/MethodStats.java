@@ -0,0 +1,57 @@
+package cn.com.qjun.dmsoft.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个大漠接口的调用统计快照, 耗时单位为纳秒
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MethodStats {
+    /**
+     * 方法名
+     */
+    private String method;
+    /**
+     * 调用次数
+     */
+    private long calls;
+    /**
+     * 失败次数, 包括抛出异常和返回值检查不通过
+     */
+    private long errors;
+    /**
+     * 累计耗时
+     */
+    private long totalNanos;
+    /**
+     * 耗时中位数
+     */
+    private long p50Nanos;
+    /**
+     * 99%的调用耗时不超过该值
+     */
+    private long p99Nanos;
+    /**
+     * 99.9%的调用耗时不超过该值
+     */
+    private long p999Nanos;
+    /**
+     * 最大耗时
+     */
+    private long maxNanos;
+    /**
+     * 命中结果缓存的次数
+     */
+    private long cacheHits;
+    /**
+     * 未命中结果缓存的次数
+     */
+    private long cacheMisses;
+}
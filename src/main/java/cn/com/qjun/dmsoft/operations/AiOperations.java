@@ -1,7 +1,7 @@
 package cn.com.qjun.dmsoft.operations;
 
+import cn.com.qjun.dmsoft.backend.DmBackend;
 import cn.com.qjun.dmsoft.domain.*;
-import com.jacob.com.Variant;
 import lombok.RequiredArgsConstructor;
 
 import java.util.Arrays;
@@ -69,13 +69,13 @@ public class AiOperations {
      * @return 图片在内存中的信息
      */
     public MemoryInfo aiYoloDetectObjectsToDataBmp(Rect rect, float prob, float iou, boolean drawProb) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(prob), new Variant(iou), new Variant(0, true), new Variant(0, true), new Variant(drawProb ? 0 : 1)};
-        long result = dmSoft.callForLong("AiYoloDetectObjectsToDataBmp", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("AiYoloDetectObjectsToDataBmp", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                prob, iou, DmBackend.OUT, DmBackend.OUT, drawProb ? 0 : 1);
         if (result == 0L) {
             return null;
         }
-        return new MemoryInfo(variants[6].getLong(), variants[7].getLong());
+        return new MemoryInfo(outputs[0], outputs[1]);
     }
 
     /**
@@ -0,0 +1,147 @@
+package cn.com.qjun.dmsoft.operations;
+
+import cn.com.qjun.dmsoft.backend.DmBackend;
+import cn.com.qjun.dmsoft.domain.Rect;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 查找结果缓存, 由{@link DmSoft}在调用大漠接口前后使用, 对各个Operations透明
+ * <p>
+ * 只缓存前4个参数是查找区域的接口. 设置字库、图片密码、绑定窗口等改变查找条件的调用会清空缓存.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+abstract class CallCache {
+    private static final String[] STATE_CHANGE_PREFIXES = {
+            "Set", "Load", "Free", "Bind", "UnBind", "ForceUnBind", "UseDict", "AddDict", "ClearDict", "Enable"};
+
+    /**
+     * 调用前检查: 改变查找条件的调用清空缓存, 可以缓存的调用查找缓存的结果
+     *
+     * @param method 方法名
+     * @param args   参数
+     * @return 本次调用的缓存状态, 不能缓存时返回null
+     */
+    abstract Lookup lookup(String method, Object[] args);
+
+    /**
+     * 清空缓存
+     */
+    abstract void clear();
+
+    /**
+     * 是否改变查找条件的调用
+     *
+     * @param method 方法名
+     * @return 是否清空缓存
+     */
+    static boolean isStateChange(String method) {
+        for (String prefix : STATE_CHANGE_PREFIXES) {
+            if (method.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从参数中取出查找区域
+     *
+     * @param args 参数
+     * @return 查找区域, 前4个参数不是数值或者包含输入输出参数时返回null
+     */
+    static Rect searchRect(Object[] args) {
+        if (args == null || args.length < 4) {
+            return null;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (!(args[i] instanceof Number)) {
+                return null;
+            }
+        }
+        for (Object arg : args) {
+            if (arg == DmBackend.IN_OUT) {
+                return null;
+            }
+        }
+        return Rect.of(((Number) args[0]).intValue(), ((Number) args[1]).intValue(),
+                ((Number) args[2]).intValue(), ((Number) args[3]).intValue());
+    }
+
+    /**
+     * 缓存键: 方法名、参数和附加的值
+     *
+     * @param method 方法名
+     * @param args   参数
+     * @param extras 附加的值, 例如区域内像素的哈希
+     * @return 缓存键
+     */
+    static List<Object> key(String method, Object[] args, Object... extras) {
+        Object[] key = new Object[1 + args.length + extras.length];
+        key[0] = method;
+        System.arraycopy(args, 0, key, 1, args.length);
+        System.arraycopy(extras, 0, key, 1 + args.length, extras.length);
+        return Arrays.asList(key);
+    }
+
+    /**
+     * 一次可以缓存的调用
+     */
+    abstract static class Lookup {
+        private final Entry cached;
+
+        Lookup(Entry cached) {
+            this.cached = cached;
+        }
+
+        /**
+         * 缓存的结果
+         *
+         * @return 命中时返回缓存的结果, 否则返回null
+         */
+        Entry getCached() {
+            return cached;
+        }
+
+        /**
+         * 未命中时保存调用结果
+         *
+         * @param result  返回值, 字符串或整型数
+         * @param outputs 输出参数, 没有时为null
+         */
+        abstract void store(Object result, int[] outputs);
+    }
+
+    /**
+     * 缓存的结果
+     */
+    static final class Entry {
+        private final Object result;
+        private final int[] outputs;
+
+        Entry(Object result, int[] outputs) {
+            this.result = result;
+            this.outputs = outputs == null ? null : outputs.clone();
+        }
+
+        String getText() {
+            return (String) result;
+        }
+
+        long getValue() {
+            return (Long) result;
+        }
+
+        /**
+         * 把缓存的输出参数复制到调用方的数组
+         */
+        void copyOutputs(int[] target) {
+            if (outputs != null && target != null) {
+                System.arraycopy(outputs, 0, target, 0, Math.min(outputs.length, target.length));
+            }
+        }
+    }
+}
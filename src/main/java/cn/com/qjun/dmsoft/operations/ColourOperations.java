@@ -1,13 +1,24 @@
 package cn.com.qjun.dmsoft.operations;
 
+import cn.com.qjun.dmsoft.backend.DmBackend;
 import cn.com.qjun.dmsoft.domain.*;
 import cn.com.qjun.dmsoft.enums.FindDirection;
-import com.jacob.com.Variant;
+import cn.com.qjun.dmsoft.utils.ResultScanner;
+import cn.com.qjun.dmsoft.vision.CaptureGuard;
+import cn.com.qjun.dmsoft.vision.FeatureSet;
+import cn.com.qjun.dmsoft.vision.Frame;
+import cn.com.qjun.dmsoft.vision.FrameBuffer;
+import cn.com.qjun.dmsoft.vision.FrameBufferPool;
+import com.sun.jna.Pointer;
 import lombok.RequiredArgsConstructor;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -19,6 +30,10 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ColourOperations {
     private final DmSoft dmSoft;
+    /**
+     * 每个大漠对象的截图内存代次. 截图内存属于截图的大漠对象, 只有同一个对象再次截图才会使它失效
+     */
+    private final Map<Object, CaptureGuard> screenDataGuards = new IdentityHashMap<>();
 
     /**
      * 对指定的数据地址和长度，组合成新的参数. FindPicMem FindPicMemE 以及FindPicMemEx专用
@@ -158,13 +173,44 @@ public class ColourOperations {
      * @return 找到的坐标，如果没有找到返回null
      */
     public Point findColor(Rect rect, String color, double sim, FindDirection dir) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(color), new Variant(sim), new Variant(dir.getValue()), new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindColor", (Object[]) variants);
-        if (result == 0L) {
+        int[] point = new int[2];
+        if (!findColor(rect, color, sim, dir, point)) {
             return null;
         }
-        return Point.of(variants[7].getInt(), variants[8].getInt());
+        return Point.of(point[0], point[1]);
+    }
+
+    /**
+     * 查找指定区域内的颜色,找到的坐标写入调用方提供的数组,适合高频调用
+     *
+     * @param rect  查找的区域
+     * @param color 颜色 格式为"RRGGBB-DRDGDB",比如"123456-000000|aabbcc-202020". 也可以支持反色模式. 前面加@即可.
+     * @param sim   相似度,取值范围0.1-1.0
+     * @param dir   查找方向
+     * @param point 接收坐标的数组,point[0]为X坐标,point[1]为Y坐标
+     * @return 是否找到
+     */
+    public boolean findColor(Rect rect, String color, double sim, FindDirection dir, int[] point) {
+        long result = dmSoft.callWithOutputs("FindColor", point, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                color, sim, dir.getValue(), DmBackend.OUT, DmBackend.OUT);
+        return result != 0L;
+    }
+
+    /**
+     * 查找指定区域内的颜色,区域和坐标都用{@link Points}表示
+     *
+     * @param min   查找区域左上角
+     * @param max   查找区域右下角
+     * @param color 颜色 格式为"RRGGBB-DRDGDB",比如"123456-000000|aabbcc-202020".也可以支持反色模式.
+     * @param sim   相似度,取值范围0.1-1.0
+     * @param dir   查找方向
+     * @return 找到的坐标, 没有找到返回{@link Points#NOT_FOUND}
+     */
+    public long findColor(long min, long max, String color, double sim, FindDirection dir) {
+        int[] point = dmSoft.scratchOutputs();
+        long result = dmSoft.callWithOutputs("FindColor", point, Points.x(min), Points.y(min), Points.x(max), Points.y(max),
+                color, sim, dir.getValue(), DmBackend.OUT, DmBackend.OUT);
+        return result == 0L ? Points.NOT_FOUND : Points.pack(point[0], point[1]);
     }
 
     /**
@@ -180,14 +226,13 @@ public class ColourOperations {
      * @return 找到的坐标，如果没有找到返回null
      */
     public Point findColorBlock(Rect rect, String color, double sim, int count, Size size) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(color), new Variant(sim), new Variant(count), new Variant(size.getWidth()), new Variant(size.getHeight()),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindColorBlock", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindColorBlock", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                color, sim, count, size.getWidth(), size.getHeight(), DmBackend.OUT, DmBackend.OUT);
         if (result == 0L) {
             return null;
         }
-        return Point.of(variants[9].getInt(), variants[10].getInt());
+        return Point.of(outputs[0], outputs[1]);
     }
 
     /**
@@ -203,10 +248,8 @@ public class ColourOperations {
      * @return 返回所有颜色块信息的坐标值, 然后通过GetResultCount等接口来解析 (由于内存限制,返回的颜色数量最多为1800个左右)
      */
     public String findColorBlockEx(Rect rect, String color, double sim, int count, Size size) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(color), new Variant(sim), new Variant(count), new Variant(size.getWidth()), new Variant(size.getHeight()),
-                new Variant(0, true), new Variant(0, true)};
-        return dmSoft.callForString("FindColorBlockEx", (Object[]) variants);
+        return dmSoft.callForString("FindColorBlockEx", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                color, sim, count, size.getWidth(), size.getHeight());
     }
 
     /**
@@ -234,13 +277,13 @@ public class ColourOperations {
      * @return 找到的坐标，如果没有找到或部分颜色没有找到，返回null
      */
     public Point findMulColor(Rect rect, String color, double sim) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(color), new Variant(sim), new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindMulColor", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindMulColor", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                color, sim, DmBackend.OUT, DmBackend.OUT);
         if (result == 0L) {
             return null;
         }
-        return Point.of(variants[6].getInt(), variants[7].getInt());
+        return Point.of(outputs[0], outputs[1]);
     }
 
     /**
@@ -259,14 +302,28 @@ public class ColourOperations {
      * @return 找到的坐标(坐标为first_color所在坐标)，没有找到返回null
      */
     public Point findMultiColor(Rect rect, String firstColor, String offsetColor, double sim, FindDirection dir) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(firstColor), new Variant(offsetColor), new Variant(sim), new Variant(dir.getValue()),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindMultiColor", (Object[]) variants);
-        if (result == 0L) {
+        int[] point = new int[2];
+        if (!findMultiColor(rect, firstColor, offsetColor, sim, dir, point)) {
             return null;
         }
-        return Point.of(variants[8].getInt(), variants[9].getInt());
+        return Point.of(point[0], point[1]);
+    }
+
+    /**
+     * 根据指定的多点查找颜色坐标,找到的坐标写入调用方提供的数组,适合高频调用
+     *
+     * @param rect        查找区域
+     * @param firstColor  颜色格式为"RRGGBB-DRDGDB|RRGGBB-DRDGDB|…………",比如"123456-000000"
+     * @param offsetColor 偏移颜色,格式为"x1|y1|RRGGBB-DRDGDB|RRGGBB-DRDGDB……,……xn|yn|RRGGBB-DRDGDB|RRGGBB-DRDGDB……"
+     * @param sim         相似度,取值范围0.1-1.0
+     * @param dir         查找方向
+     * @param point       接收坐标的数组(坐标为first_color所在坐标),point[0]为X坐标,point[1]为Y坐标
+     * @return 是否找到
+     */
+    public boolean findMultiColor(Rect rect, String firstColor, String offsetColor, double sim, FindDirection dir, int[] point) {
+        long result = dmSoft.callWithOutputs("FindMultiColor", point, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                firstColor, offsetColor, sim, dir.getValue(), DmBackend.OUT, DmBackend.OUT);
+        return result != 0L;
     }
 
     /**
@@ -301,14 +358,28 @@ public class ColourOperations {
      * @return 找到的图片序号(从0开始索引)和对应坐标(图片左上角坐标)，没有找到返回null
      */
     public FindResult findPic(Rect rect, List<String> picNames, String deltaColor, double sim, FindDirection dir) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(String.join("|", picNames)), new Variant(deltaColor), new Variant(sim), new Variant(dir.getValue()),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindPic", (Object[]) variants);
-        if (result == -1) {
+        int[] point = new int[2];
+        int index = findPic(rect, String.join("|", picNames), deltaColor, sim, dir, point);
+        if (index == -1) {
             return null;
         }
-        return new FindResult((int) result, Point.of(variants[8].getInt(), variants[9].getInt()), null);
+        return new FindResult(index, Point.of(point[0], point[1]), null);
+    }
+
+    /**
+     * 查找指定区域内的图片,找到的坐标写入调用方提供的数组,适合高频调用
+     *
+     * @param rect       查找区域
+     * @param picNames   图片名,可以是多个图片,比如"test.bmp|test2.bmp|test3.bmp"
+     * @param deltaColor 颜色色偏比如"203040" 表示RGB的色偏分别是20 30 40 (这里是16进制表示). 如果这里的色偏是2位，表示使用灰度找图. 比如"20"
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @param point      接收图片左上角坐标的数组,point[0]为X坐标,point[1]为Y坐标
+     * @return 找到的图片序号(从0开始索引)，没有找到返回-1
+     */
+    public int findPic(Rect rect, String picNames, String deltaColor, double sim, FindDirection dir, int[] point) {
+        return (int) dmSoft.callWithOutputs("FindPic", point, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                picNames, deltaColor, sim, dir.getValue(), DmBackend.OUT, DmBackend.OUT);
     }
 
     /**
@@ -328,6 +399,23 @@ public class ColourOperations {
         return convertFindResultList(result, false);
     }
 
+    /**
+     * 同{@link #findPicEx(Rect, List, String, double, FindDirection)}, 结果写入可重复使用的缓冲区
+     *
+     * @param rect       查找区域
+     * @param picNames   图片名,可以是多个图片,比如"test.bmp|test2.bmp|test3.bmp"
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @param buffer     接收结果的缓冲区, 调用前的内容会被清空
+     * @return 找到的结果数量
+     */
+    public int findPicEx(Rect rect, String picNames, String deltaColor, double sim, FindDirection dir, FindResultBuffer buffer) {
+        String result = dmSoft.callForString("FindPicEx", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                picNames, deltaColor, sim, dir.getValue());
+        return buffer.parse(result, false);
+    }
+
     /**
      * 查找指定区域内的图片,位图必须是24位色格式,支持透明色,当图像上下左右4个顶点的颜色一样时,则这个颜色将作为透明色处理.
      * 这个函数可以查找多个图片,只返回第一个找到的X Y坐标. 这个函数要求图片是数据地址.
@@ -343,14 +431,13 @@ public class ColourOperations {
      * @return 找到的图片序号(从0开始索引)和对应坐标(图片左上角坐标)，没有找到返回null
      */
     public FindResult findPicMem(Rect rect, List<MemoryInfo> picInfos, String deltaColor, double sim, FindDirection dir) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(convertMemoryInfoList(picInfos)), new Variant(deltaColor), new Variant(sim), new Variant(dir.getValue()),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindPicMem", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindPicMem", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                convertMemoryInfoList(picInfos), deltaColor, sim, dir.getValue(), DmBackend.OUT, DmBackend.OUT);
         if (result == -1) {
             return null;
         }
-        return new FindResult((int) result, Point.of(variants[8].getInt(), variants[9].getInt()), null);
+        return new FindResult((int) result, Point.of(outputs[0], outputs[1]), null);
     }
 
     /**
@@ -374,6 +461,23 @@ public class ColourOperations {
         return convertFindResultList(result, false);
     }
 
+    /**
+     * 同{@link #findPicMemEx(Rect, List, String, double, FindDirection)}, 结果写入可重复使用的缓冲区
+     *
+     * @param rect       查找区域
+     * @param picInfos   图片数据地址集合
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @param buffer     接收结果的缓冲区, 调用前的内容会被清空
+     * @return 找到的结果数量
+     */
+    public int findPicMemEx(Rect rect, List<MemoryInfo> picInfos, String deltaColor, double sim, FindDirection dir, FindResultBuffer buffer) {
+        String result = dmSoft.callForString("FindPicMemEx", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                convertMemoryInfoList(picInfos), deltaColor, sim, dir.getValue());
+        return buffer.parse(result, false);
+    }
+
     /**
      * 查找指定区域内的图片,位图必须是24位色格式,支持透明色,当图像上下左右4个顶点的颜色一样时,则这个颜色将作为透明色处理.
      * 这个函数可以查找多个图片,只返回第一个匹配的X Y坐标.
@@ -390,14 +494,13 @@ public class ColourOperations {
      * @return 找到的图片序号(从0开始索引)和对应坐标(图片左上角坐标)，没有找到返回null
      */
     public FindResult findPicSim(Rect rect, List<String> picNames, String deltaColor, int sim, FindDirection dir) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(String.join("|", picNames)), new Variant(deltaColor), new Variant(sim), new Variant(dir.getValue()),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindPicSim", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindPicSim", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                String.join("|", picNames), deltaColor, sim, dir.getValue(), DmBackend.OUT, DmBackend.OUT);
         if (result == -1) {
             return null;
         }
-        return new FindResult((int) result, Point.of(variants[8].getInt(), variants[9].getInt()), null);
+        return new FindResult((int) result, Point.of(outputs[0], outputs[1]), null);
     }
 
     /**
@@ -421,6 +524,23 @@ public class ColourOperations {
         return convertFindResultList(result, true);
     }
 
+    /**
+     * 同{@link #findPicSimEx(Rect, List, String, int, FindDirection)}, 结果写入可重复使用的缓冲区
+     *
+     * @param rect       查找区域
+     * @param picNames   图片名,可以是多个图片,比如"test.bmp|test2.bmp|test3.bmp"
+     * @param deltaColor 颜色色偏
+     * @param sim        最小百分比相似率,取值为0到100
+     * @param dir        查找方向
+     * @param buffer     接收结果的缓冲区, 调用前的内容会被清空
+     * @return 找到的结果数量
+     */
+    public int findPicSimEx(Rect rect, String picNames, String deltaColor, int sim, FindDirection dir, FindResultBuffer buffer) {
+        String result = dmSoft.callForString("FindPicSimEx", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                picNames, deltaColor, sim, dir.getValue());
+        return buffer.parse(result, true);
+    }
+
     /**
      * 查找指定区域内的图片,位图必须是24位色格式,支持透明色,当图像上下左右4个顶点的颜色一样时,则这个颜色将作为透明色处理.
      * 这个函数可以查找多个图片, 只返回第一个匹配的X Y坐标. 这个函数要求图片是数据地址.
@@ -440,14 +560,13 @@ public class ColourOperations {
      * @return 找到的图片序号(从0开始索引)和对应坐标(图片左上角坐标)，没有找到返回null
      */
     public FindResult findPicSimMem(Rect rect, List<MemoryInfo> picInfos, String deltaColor, int sim, FindDirection dir) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(convertMemoryInfoList(picInfos)), new Variant(deltaColor), new Variant(sim), new Variant(dir.getValue()),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindPicSimMem", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindPicSimMem", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                convertMemoryInfoList(picInfos), deltaColor, sim, dir.getValue(), DmBackend.OUT, DmBackend.OUT);
         if (result == -1) {
             return null;
         }
-        return new FindResult((int) result, Point.of(variants[8].getInt(), variants[9].getInt()), null);
+        return new FindResult((int) result, Point.of(outputs[0], outputs[1]), null);
     }
 
     /**
@@ -474,6 +593,23 @@ public class ColourOperations {
         return convertFindResultList(result, true);
     }
 
+    /**
+     * 同{@link #findPicSimMemEx(Rect, List, String, int, FindDirection)}, 结果写入可重复使用的缓冲区
+     *
+     * @param rect       查找区域
+     * @param picInfos   图片数据地址集合
+     * @param deltaColor 颜色色偏
+     * @param sim        最小百分比相似率,取值为0到100
+     * @param dir        查找方向
+     * @param buffer     接收结果的缓冲区, 调用前的内容会被清空
+     * @return 找到的结果数量
+     */
+    public int findPicSimMemEx(Rect rect, List<MemoryInfo> picInfos, String deltaColor, int sim, FindDirection dir, FindResultBuffer buffer) {
+        String result = dmSoft.callForString("FindPicSimMemEx", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                convertMemoryInfoList(picInfos), deltaColor, sim, dir.getValue());
+        return buffer.parse(result, true);
+    }
+
     /**
      * 查找指定的形状. 形状的描述同按键的抓抓. 具体可以参考按键的抓抓.
      * 和按键的语法不同，需要用大漠综合工具的颜色转换.
@@ -487,14 +623,13 @@ public class ColourOperations {
      * @return 找到的形状所在坐标，没有找到返回null
      */
     public Point findShape(Rect rect, String offsetColor, double sim, FindDirection dir) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(offsetColor), new Variant(sim), new Variant(dir.getValue()),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindPicSimMem", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindPicSimMem", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                offsetColor, sim, dir.getValue(), DmBackend.OUT, DmBackend.OUT);
         if (result == 0) {
             return null;
         }
-        return Point.of(variants[7].getInt(), variants[8].getInt());
+        return Point.of(outputs[0], outputs[1]);
     }
 
     public List<Point> findShapeEx(Rect rect, String offsetColor, double sim, FindDirection dir) {
@@ -584,10 +719,79 @@ public class ColourOperations {
      * 获取指定区域的图像,用二进制数据的方式返回,（不适合按键使用）方便二次开发.
      *
      * @param rect 区域
-     * @return 返回的是指定区域的二进制颜色数据地址, 每个颜色是4个字节, 表示方式为(00RRGGBB)
+     * @return 返回的是指定区域的二进制颜色数据地址, 每个颜色是4个字节, 表示方式为(00RRGGBB). 下次调用时失效, 可以用{@link #withFrame(Rect, Function)}安全地读取
      */
     public long getScreenData(Rect rect) {
-        return dmSoft.callForLong("GetScreenData", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2());
+        return dmSoft.withComponent(dm -> {
+            screenDataGuard().invalidate();
+            return dmSoft.callForLong("GetScreenData", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2());
+        });
+    }
+
+    /**
+     * 截取指定区域的图像, 直接读取大漠的截图内存, 不复制.
+     * 截图的大漠对象下次调用GetScreenData(包括本接口)后, 之前返回的帧失效, 读取时抛出{@link IllegalStateException}.
+     * <p>
+     * 帧只能在截图的大漠对象被独占期间读取, 即在{@link DmSoft#withComponent(Function)}中截图和读取, 或使用{@link #withFrame(Rect, Function)}.
+     * 在独占范围外读取时, 其他线程可能正在同一个大漠对象上截图并释放这块内存, 读取时会读到已释放的内存甚至使JVM崩溃
+     *
+     * @param rect 区域
+     * @return 截取的帧, 失败返回null
+     */
+    public Frame captureFrame(Rect rect) {
+        return dmSoft.withComponent(dm -> {
+            CaptureGuard guard = screenDataGuard();
+            long generation = guard.invalidate();
+            long address = dmSoft.callForLong("GetScreenData", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2());
+            return address == 0L ? null : Frame.wrap(new Pointer(address), rect, guard, generation);
+        });
+    }
+
+    /**
+     * 独占一个大漠对象截取指定区域的图像并处理, 处理期间其他线程不能在该对象上截图, 帧一直有效.
+     * 处理过程中可以在多个线程中并行读取帧, 但不能在action返回后继续使用帧
+     *
+     * @param rect   区域
+     * @param action 处理截取的帧, 截图失败时参数为null
+     * @param <T>    返回值类型
+     * @return action的返回值
+     */
+    public <T> T withFrame(Rect rect, Function<Frame, T> action) {
+        return dmSoft.withComponent(dm -> action.apply(captureFrame(rect)));
+    }
+
+    /**
+     * 截取指定区域的图像并复制到从缓冲池租用的堆外缓冲区, 不受下次截图影响, 可以交给其他线程处理
+     *
+     * @param rect 区域
+     * @param pool 缓冲池
+     * @return 存放帧的缓冲区, 通过{@link FrameBuffer#getFrame()}读取, 用完后需要归还; 截图失败返回null
+     */
+    public FrameBuffer captureFrame(Rect rect, FrameBufferPool pool) {
+        return withFrame(rect, frame -> frame == null ? null : frame.copyTo(pool));
+    }
+
+    /**
+     * 截取特征集合的区域一次, 在这一帧上并行判断所有特征
+     *
+     * @param featureSet 特征集合
+     * @return 判断结果, 截图失败返回null
+     */
+    public FeatureSet.Result evaluate(FeatureSet featureSet) {
+        Rect region = featureSet.getRegion();
+        return evaluate(featureSet, new int[region.getWidth() * region.getHeight()]);
+    }
+
+    /**
+     * 截取特征集合的区域一次, 在这一帧上并行判断所有特征, 帧复制到调用方提供的数组中.
+     * 每帧判断时重复使用同一个数组, 不再每次分配; 同一个数组不能在多个线程中同时使用
+     *
+     * @param featureSet 特征集合
+     * @param pixels     接收像素的数组, 长度不能小于特征集合区域的宽乘高
+     * @return 判断结果, 截图失败返回null
+     */
+    public FeatureSet.Result evaluate(FeatureSet featureSet, int[] pixels) {
+        return withFrame(featureSet.getRegion(), frame -> frame == null ? null : featureSet.evaluateParallel(frame, pixels));
     }
 
     /**
@@ -600,13 +804,13 @@ public class ColourOperations {
      * @return 内存信息
      */
     public MemoryInfo getScreenDataBmp(Rect rect) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindPicSimMem", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindPicSimMem", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                DmBackend.OUT, DmBackend.OUT);
         if (result == 0) {
             return null;
         }
-        return new MemoryInfo(variants[4].getInt(), variants[5].getInt());
+        return new MemoryInfo(outputs[0], outputs[1]);
     }
 
     /**
@@ -732,18 +936,26 @@ public class ColourOperations {
     }
 
     private List<FindResult> convertFindResultList(String resultStr, boolean withSim) {
-        if (resultStr == null || resultStr.isEmpty()) {
+        int count = ResultScanner.countItems(resultStr, ResultScanner.ITEM_SEPARATOR);
+        if (count == 0) {
             return Collections.emptyList();
         }
-        return Arrays.stream(resultStr.split("\\|"))
-                .map(item -> {
-                    String[] parts = item.split(",");
-                    if (withSim) {
-                        return new FindResult(Integer.parseInt(parts[0]), Point.of(Integer.parseInt(parts[2]), Integer.parseInt(parts[3])), Integer.parseInt(parts[1]));
-                    } else {
-                        return new FindResult(Integer.parseInt(parts[0]), Point.of(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])), null);
-                    }
-                })
-                .collect(Collectors.toList());
+        int[] indexes = new int[count];
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        int[] sims = withSim ? new int[count] : null;
+        int size = ResultScanner.parseFindResults(resultStr, withSim, indexes, xs, ys, sims);
+        // 返回可修改的列表, 与原来Collectors.toList()的结果一致, 调用方可以排序、删除
+        return new ArrayList<>(new FindResultList(size, indexes, xs, ys, sims));
+    }
+
+    /**
+     * 当前独占的大漠对象的截图内存代次, 需要在{@link DmSoft#withComponent(Function)}中调用
+     */
+    private CaptureGuard screenDataGuard() {
+        Object component = dmSoft.backend().currentComponent();
+        synchronized (screenDataGuards) {
+            return screenDataGuards.computeIfAbsent(component, key -> new CaptureGuard());
+        }
     }
 }
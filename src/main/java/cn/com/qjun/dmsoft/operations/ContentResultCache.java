@@ -0,0 +1,111 @@
+package cn.com.qjun.dmsoft.operations;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按查找区域的画面内容缓存找图、找字和文字识别的结果
+ * <p>
+ * 开启{@link DmOptions.PluginOptionsBuilder#withResultCache}后使用. 每次查找前截取查找区域并计算像素的哈希,
+ * 方法、参数和哈希都相同时直接返回缓存的结果, 不再调用大漠. 适合每帧轮询多个内容很少变化的界面元素:
+ * 元素在几种状态之间切换时, 每种状态第一次出现后都能命中.
+ * <p>
+ * 截图、查找和保存结果在同一个大漠对象上依次进行(见{@link DmSoft}), 但截图和查找之间窗口本身变化时结果可能对应变化后的画面,
+ * 过期时间用于限制这种情况的影响.
+ * 截图会让之前通过{@link ColourOperations#captureFrame(Rect)}得到的帧失效.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+final class ContentResultCache extends CallCache {
+    private static final Set<String> CACHEABLE_METHODS = new HashSet<>(Arrays.asList(
+            "FindPic", "FindPicEx", "FindPicSim", "FindPicSimEx",
+            "FindStr", "FindStrEx", "FindStrFast", "FindStrFastEx", "FindStrWithFont", "FindStrWithFontEx",
+            "Ocr", "OcrEx", "OcrExOne"));
+
+    private final DmSoft dmSoft;
+    private final long ttlNanos;
+    private final Map<List<Object>, TimedEntry> entries;
+
+    ContentResultCache(DmSoft dmSoft, DmOptions.ResultCaching caching) {
+        this.dmSoft = dmSoft;
+        this.ttlNanos = caching.getTtlMillis() * 1_000_000L;
+        int maxEntries = caching.getMaxEntries();
+        this.entries = new LinkedHashMap<List<Object>, TimedEntry>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, TimedEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    Lookup lookup(String method, Object[] args) {
+        if (!CACHEABLE_METHODS.contains(method)) {
+            if (isStateChange(method)) {
+                clear();
+            }
+            return null;
+        }
+        Rect rect = searchRect(args);
+        if (rect == null || rect.getWidth() <= 0 || rect.getHeight() <= 0) {
+            return null;
+        }
+        // 由DmSoft在同一次租用中调用大漠, 截图和查找使用同一个大漠对象
+        Long hash = dmSoft.opsForColour().withFrame(rect, frame -> frame == null ? null : frame.contentHash());
+        if (hash == null) {
+            return null;
+        }
+        List<Object> key = key(method, args, hash);
+        long now = System.nanoTime();
+        synchronized (this) {
+            TimedEntry entry = entries.get(key);
+            if (entry != null && now - entry.createdAt < ttlNanos) {
+                return new ContentLookup(entry.entry, key);
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        return new ContentLookup(null, key);
+    }
+
+    @Override
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private synchronized void store(List<Object> key, Object result, int[] outputs) {
+        entries.put(key, new TimedEntry(System.nanoTime(), new Entry(result, outputs)));
+    }
+
+    private final class ContentLookup extends Lookup {
+        private final List<Object> key;
+
+        private ContentLookup(Entry cached, List<Object> key) {
+            super(cached);
+            this.key = key;
+        }
+
+        @Override
+        void store(Object result, int[] outputs) {
+            ContentResultCache.this.store(key, result, outputs);
+        }
+    }
+
+    private static final class TimedEntry {
+        private final long createdAt;
+        private final Entry entry;
+
+        private TimedEntry(long createdAt, Entry entry) {
+            this.createdAt = createdAt;
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cn.com.qjun.dmsoft.operations;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 大漠插件异步调用
+ * <p>
+ * 所有调用都在固定数量的工作线程上执行, 每次提交的调用从DmSoft的大漠对象池中租用一个对象并独占到调用结束,
+ * 调用方线程(包括大量短生命周期的线程)不再各自创建大漠对象. 对象池大小({@link DmOptions#getPoolSize()})应不小于工作线程数量,
+ * 否则多出的工作线程会等待空闲对象. 所有工作线程共用一个任务队列, 某个调用耗时较长时其它调用由空闲的工作线程执行.
+ * 大漠对象在后端的COM套间线程上创建, 该线程维持进程的MTA, 工作线程与其它调用方线程一样不需要各自初始化COM.
+ * 注意: 绑定窗口等大漠对象级别的状态属于池中的各个大漠对象, 需要通过{@link #broadcast(Consumer)}在所有对象上设置,
+ * 或者为每个绑定的窗口单独创建对象池大小为1的DmSoft.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class DmAsync implements AutoCloseable {
+    private final DmSoft dmSoft;
+    private final ExecutorService workers;
+
+    /**
+     * 创建异步调用
+     *
+     * @param dmSoft      大漠插件
+     * @param workerCount 工作线程数量
+     */
+    public DmAsync(DmSoft dmSoft, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be positive: " + workerCount);
+        }
+        this.dmSoft = dmSoft;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "dm-com-worker-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 在空闲的工作线程上执行调用, 调用中的所有大漠接口使用同一个租用的大漠对象
+     *
+     * @param call 调用
+     * @param <T>  返回值类型
+     * @return 调用结果
+     */
+    public <T> CompletableFuture<T> submit(Function<DmSoft, T> call) {
+        return CompletableFuture.supplyAsync(() -> dmSoft.withComponent(call), workers);
+    }
+
+    /**
+     * 把批量调用整批提交到空闲的工作线程执行, 整批只有一次线程切换
+     *
+     * @param batch 批量调用
+     * @return 执行结果
+     */
+    public CompletableFuture<DmBatch.Result> submit(DmBatch batch) {
+        return submit(batch::execute);
+    }
+
+    /**
+     * 在池中的每个大漠对象上执行调用, 用于设置绑定窗口等大漠对象级别的状态.
+     * 对象池中还没有创建的大漠对象会先创建出来, 之后租用到的每个对象都已执行过调用
+     *
+     * @param call 调用
+     * @return 池中所有大漠对象(包括为此创建的对象)执行完成
+     */
+    public CompletableFuture<Void> broadcast(Consumer<DmSoft> call) {
+        return CompletableFuture.runAsync(() -> {
+            dmSoft.backend().prestartAllComponents();
+            dmSoft.forEachComponent(call);
+        }, workers);
+    }
+
+    public <T> CompletableFuture<T> opsForAi(Function<AiOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForAi()));
+    }
+
+    public <T> CompletableFuture<T> opsForBackground(Function<BackgroundOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForBackground()));
+    }
+
+    public <T> CompletableFuture<T> opsForBasic(Function<BasicOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForBasic()));
+    }
+
+    public <T> CompletableFuture<T> opsForColour(Function<ColourOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForColour()));
+    }
+
+    public <T> CompletableFuture<T> opsForFile(Function<FileOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForFile()));
+    }
+
+    public <T> CompletableFuture<T> opsForInput(Function<InputOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForInput()));
+    }
+
+    public <T> CompletableFuture<T> opsForMemory(Function<MemoryOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForMemory()));
+    }
+
+    public <T> CompletableFuture<T> opsForOcr(Function<OcrOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForOcr()));
+    }
+
+    public <T> CompletableFuture<T> opsForOthers(Function<OtherOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForOthers()));
+    }
+
+    public <T> CompletableFuture<T> opsForSystem(Function<SystemOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForSystem()));
+    }
+
+    public <T> CompletableFuture<T> opsForWindow(Function<WindowOperations, T> call) {
+        return submit(dm -> call.apply(dm.opsForWindow()));
+    }
+
+    /**
+     * 停止工作线程, 最多等待1分钟让已提交的调用执行完成. 大漠对象随DmSoft关闭释放
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
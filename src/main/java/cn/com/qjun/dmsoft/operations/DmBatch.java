@@ -0,0 +1,349 @@
+package cn.com.qjun.dmsoft.operations;
+
+import cn.com.qjun.dmsoft.backend.DmBackend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * 大漠批量调用
+ * <p>
+ * 先记录一组返回整型数的大漠调用, 再通过{@link #execute(DmSoft)}独占同一个大漠对象依次执行,
+ * 或通过{@link DmAsync#submit(DmBatch)}整批提交到工作线程, 整批调用只有一次线程切换.
+ * 后面的调用可以用{@link Step#result()}、{@link Step#output(int)}引用前面调用的返回值和输出参数作为参数, 执行时再取值.
+ * 调用可以设置期望的返回值, 不满足时停止执行后续调用, 例如找字失败时不再移动鼠标和点击.
+ * <pre>
+ * DmBatch batch = new DmBatch();
+ * DmBatch.Step rect = batch.call("GetWindowRect", hwnd, DmBackend.OUT, DmBackend.OUT, DmBackend.OUT, DmBackend.OUT).expectEq1();
+ * DmBatch.Step find = batch.call("FindStr", rect.output(0), rect.output(1), rect.output(2), rect.output(3),
+ *         "主页", "0ef0e9-202020", 0.5, DmBackend.OUT, DmBackend.OUT).expectFound();
+ * batch.call("MoveTo", find.output(0), find.output(1)).expectEq1();
+ * batch.call("LeftClick").expectEq1();
+ * DmBatch.Result result = batch.execute(dmSoft);
+ * </pre>
+ * 记录完成后可以重复执行, 也可以在多个线程中同时执行, 但执行期间不能继续记录.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class DmBatch {
+    private final List<Step> steps = new ArrayList<>();
+    private int outputCount;
+    private int maxStepOutputCount;
+
+    /**
+     * 记录一个调用
+     *
+     * @param method 方法名
+     * @param args   参数, 可以包含前面调用的{@link Ref}; 输出参数用{@link DmBackend#OUT}或{@link #inOut(Object)}占位
+     * @return 调用步骤
+     */
+    public Step call(String method, Object... args) {
+        Object[] copied = args == null ? new Object[0] : args.clone();
+        int stepOutputCount = 0;
+        for (Object arg : copied) {
+            if (arg instanceof Ref) {
+                checkRef((Ref) arg);
+            } else if (arg instanceof InOut) {
+                if (((InOut) arg).value instanceof Ref) {
+                    checkRef((Ref) ((InOut) arg).value);
+                }
+                stepOutputCount++;
+            } else if (arg instanceof DmBackend.OutParam) {
+                stepOutputCount++;
+            }
+        }
+        Step step = new Step(steps.size(), method, copied, outputCount, stepOutputCount);
+        steps.add(step);
+        outputCount += stepOutputCount;
+        maxStepOutputCount = Math.max(maxStepOutputCount, stepOutputCount);
+        return step;
+    }
+
+    /**
+     * 输入输出参数占位符, 调用前以value作为参数的初始值
+     *
+     * @param value 初始值, 整型数或前面调用的{@link Ref}
+     * @return 占位符
+     */
+    public static Object inOut(Object value) {
+        return new InOut(value);
+    }
+
+    /**
+     * 已记录的调用数量
+     *
+     * @return 调用数量
+     */
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * 独占同一个大漠对象依次执行所有调用
+     *
+     * @param dmSoft 大漠插件
+     * @return 执行结果
+     */
+    public Result execute(DmSoft dmSoft) {
+        return dmSoft.backend().withComponent(() -> run(dmSoft));
+    }
+
+    private Result run(DmSoft dmSoft) {
+        Result result = new Result(steps.size(), outputCount);
+        int[] stepOutputs = new int[maxStepOutputCount];
+        for (Step step : steps) {
+            Object[] args = new Object[step.args.length];
+            int[] outputs = step.outputCount == stepOutputs.length ? stepOutputs : new int[step.outputCount];
+            int outputIndex = 0;
+            for (int i = 0; i < args.length; i++) {
+                Object arg = step.args[i];
+                if (arg instanceof Ref) {
+                    args[i] = result.resolve((Ref) arg);
+                } else if (arg instanceof InOut) {
+                    Object value = ((InOut) arg).value;
+                    outputs[outputIndex++] = value instanceof Ref ? result.resolve((Ref) value) : ((Number) value).intValue();
+                    args[i] = DmBackend.IN_OUT;
+                } else {
+                    if (arg instanceof DmBackend.OutParam) {
+                        outputs[outputIndex++] = 0;
+                    }
+                    args[i] = arg;
+                }
+            }
+            long value = step.outputCount == 0
+                    ? dmSoft.callForLong(step.method, args)
+                    : dmSoft.callWithOutputs(step.method, outputs, args);
+            result.results[step.index] = value;
+            System.arraycopy(outputs, 0, result.outputs, step.outputOffset, step.outputCount);
+            result.executedCount++;
+            if (step.expectation != null && !step.expectation.test(value)) {
+                return result;
+            }
+        }
+        result.completed = true;
+        return result;
+    }
+
+    private void checkRef(Ref ref) {
+        if (ref.step.batch() != this || ref.step.index >= steps.size()) {
+            throw new IllegalArgumentException("只能引用本批次中前面的调用: " + ref);
+        }
+    }
+
+    /**
+     * 调用步骤
+     */
+    public final class Step {
+        private final int index;
+        private final String method;
+        private final Object[] args;
+        private final int outputOffset;
+        private final int outputCount;
+        private LongPredicate expectation;
+
+        private Step(int index, String method, Object[] args, int outputOffset, int outputCount) {
+            this.index = index;
+            this.method = method;
+            this.args = args;
+            this.outputOffset = outputOffset;
+            this.outputCount = outputCount;
+        }
+
+        /**
+         * 设置期望的返回值, 不满足时停止执行后续调用
+         *
+         * @param expectation 期望
+         * @return 当前步骤
+         */
+        public Step expect(LongPredicate expectation) {
+            this.expectation = expectation;
+            return this;
+        }
+
+        /**
+         * 期望返回1, 用于返回0/1表示失败/成功的接口
+         *
+         * @return 当前步骤
+         */
+        public Step expectEq1() {
+            return expect(value -> value == 1L);
+        }
+
+        /**
+         * 期望返回非负数, 用于FindPic、FindStr等没找到时返回-1的接口
+         *
+         * @return 当前步骤
+         */
+        public Step expectFound() {
+            return expect(value -> value >= 0L);
+        }
+
+        /**
+         * 引用本调用的返回值
+         *
+         * @return 引用
+         */
+        public Ref result() {
+            return new Ref(this, -1, 0);
+        }
+
+        /**
+         * 引用本调用的第index个输出参数
+         *
+         * @param index 输出参数序号, 从0开始
+         * @return 引用
+         */
+        public Ref output(int index) {
+            if (index < 0 || index >= outputCount) {
+                throw new IndexOutOfBoundsException("output index " + index + " of " + method + ", output count " + outputCount);
+            }
+            return new Ref(this, index, 0);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        private DmBatch batch() {
+            return DmBatch.this;
+        }
+    }
+
+    /**
+     * 对前面调用的返回值或输出参数的引用, 执行时取值并作为整型参数传入
+     */
+    public static final class Ref {
+        private final Step step;
+        private final int output;
+        private final int delta;
+
+        private Ref(Step step, int output, int delta) {
+            this.step = step;
+            this.output = output;
+            this.delta = delta;
+        }
+
+        /**
+         * 在引用的值上加上偏移量, 例如点击找到的图片中心而不是左上角
+         *
+         * @param delta 偏移量
+         * @return 新的引用
+         */
+        public Ref plus(int delta) {
+            return new Ref(step, output, this.delta + delta);
+        }
+
+        @Override
+        public String toString() {
+            return step.method + "#" + step.index + (output < 0 ? ".result" : ".output[" + output + "]")
+                    + (delta == 0 ? "" : (delta > 0 ? "+" : "") + delta);
+        }
+    }
+
+    private static final class InOut {
+        private final Object value;
+
+        private InOut(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return DmBackend.IN_OUT.toString() + value;
+        }
+    }
+
+    /**
+     * 批量调用的执行结果, 所有调用的返回值和输出参数分别连续存放
+     */
+    public static final class Result {
+        private final long[] results;
+        private final int[] outputs;
+        private int executedCount;
+        private boolean completed;
+
+        private Result(int stepCount, int outputCount) {
+            this.results = new long[stepCount];
+            this.outputs = new int[outputCount];
+        }
+
+        /**
+         * 是否所有调用都已执行且满足期望
+         *
+         * @return 是否完成
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * 已执行的调用数量, 包括不满足期望而停止的那个调用
+         *
+         * @return 调用数量
+         */
+        public int getExecutedCount() {
+            return executedCount;
+        }
+
+        /**
+         * 获取调用的返回值
+         *
+         * @param step 调用步骤
+         * @return 返回值
+         */
+        public long getResult(Step step) {
+            checkExecuted(step);
+            return results[step.index];
+        }
+
+        /**
+         * 获取调用的输出参数
+         *
+         * @param step  调用步骤
+         * @param index 输出参数序号, 从0开始
+         * @return 输出参数的值
+         */
+        public int getOutput(Step step, int index) {
+            checkExecuted(step);
+            if (index < 0 || index >= step.outputCount) {
+                throw new IndexOutOfBoundsException("output index " + index + " of " + step.method + ", output count " + step.outputCount);
+            }
+            return outputs[step.outputOffset + index];
+        }
+
+        /**
+         * 所有调用的返回值, 按记录顺序存放, 未执行的调用为0
+         *
+         * @return 返回值数组
+         */
+        public long[] getResults() {
+            return results.clone();
+        }
+
+        /**
+         * 所有调用的输出参数, 按记录顺序连续存放, 未执行的调用为0
+         *
+         * @return 输出参数数组
+         */
+        public int[] getOutputs() {
+            return outputs.clone();
+        }
+
+        private int resolve(Ref ref) {
+            int value = ref.output < 0 ? (int) results[ref.step.index] : outputs[ref.step.outputOffset + ref.output];
+            return value + ref.delta;
+        }
+
+        private void checkExecuted(Step step) {
+            if (step.index >= executedCount) {
+                throw new IllegalStateException("调用未执行: " + step.method + "#" + step.index);
+            }
+        }
+    }
+}
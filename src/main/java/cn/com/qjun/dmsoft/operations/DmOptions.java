@@ -1,5 +1,7 @@
 package cn.com.qjun.dmsoft.operations;
 
+import cn.com.qjun.dmsoft.backend.DmBackend;
+import cn.com.qjun.dmsoft.domain.Rect;
 import lombok.*;
 
 import java.util.HashMap;
@@ -52,6 +54,30 @@ public class DmOptions {
      */
     @Setter(AccessLevel.PRIVATE)
     private Map<Integer, String> dicts;
+    /**
+     * 调用后端，为空时使用JACOB调用dm.dmsoft组件
+     */
+    @Setter(AccessLevel.PRIVATE)
+    private DmBackend backend;
+    /**
+     * 大漠对象池大小，即可同时执行的调用数量，默认为1
+     * <p>
+     * 不兼容的变更: 以前每个调用方线程各自创建大漠对象, 现在所有线程共用池中的对象. 默认池大小为1时,
+     * 所有线程共用同一个大漠对象和它的绑定窗口, 调用按顺序执行. 多个线程各自绑定窗口时,
+     * 应为每个窗口创建单独的DmSoft, 或在{@link DmSoft#withComponent}中完成绑定和后续调用
+     */
+    @Setter(AccessLevel.PRIVATE)
+    private int poolSize = 1;
+    /**
+     * 画面变化跟踪，为空时不缓存查找结果
+     */
+    @Setter(AccessLevel.PRIVATE)
+    private ScreenChangeTracking screenChangeTracking;
+    /**
+     * 按画面内容缓存查找结果，为空时不缓存
+     */
+    @Setter(AccessLevel.PRIVATE)
+    private ResultCaching resultCaching;
     
     public static PluginOptionsBuilder builder(String workDir, String regCode, String addCode) {
         return new PluginOptionsBuilder(workDir, regCode, addCode);
@@ -94,7 +120,53 @@ public class DmOptions {
             return this;
         }
         
+        public PluginOptionsBuilder withPoolSize(int poolSize) {
+            dmOptions.setPoolSize(poolSize);
+            return this;
+        }
+
+        public PluginOptionsBuilder withBackend(DmBackend backend) {
+            dmOptions.setBackend(backend);
+            return this;
+        }
+
+        /**
+         * 开启画面变化跟踪: 按图块检测区域内的画面变化, 找图、找字、找色等接口的查找区域没有变化时直接返回上次的结果
+         *
+         * @param region                跟踪的区域, 通常是整个绑定窗口
+         * @param tileSize              图块边长, 例如32
+         * @param refreshIntervalMillis 重新截图的最小间隔(毫秒), 0表示每次查找前都截图.
+         *                              大于0时缓存的结果最多可能落后这么长时间
+         * @return
+         */
+        public PluginOptionsBuilder withScreenChangeTracking(Rect region, int tileSize, long refreshIntervalMillis) {
+            if (tileSize <= 0 || refreshIntervalMillis < 0) {
+                throw new IllegalArgumentException("图块边长必须大于0, 截图间隔不能小于0");
+            }
+            dmOptions.setScreenChangeTracking(new ScreenChangeTracking(region, tileSize, refreshIntervalMillis));
+            return this;
+        }
+
+        /**
+         * 开启结果缓存: 找图、找字和文字识别前先截取查找区域计算像素的哈希, 方法、参数和哈希都相同时直接返回缓存的结果.
+         * 不能与{@link #withScreenChangeTracking}同时使用
+         *
+         * @param maxEntries 最多缓存的结果数量, 超过时淘汰最久没有使用的结果
+         * @param ttlMillis  结果的有效期(毫秒)
+         * @return
+         */
+        public PluginOptionsBuilder withResultCache(int maxEntries, long ttlMillis) {
+            if (maxEntries <= 0 || ttlMillis <= 0) {
+                throw new IllegalArgumentException("缓存数量和有效期必须大于0");
+            }
+            dmOptions.setResultCaching(new ResultCaching(maxEntries, ttlMillis));
+            return this;
+        }
+
         public DmOptions build() {
+            if (dmOptions.getScreenChangeTracking() != null && dmOptions.getResultCaching() != null) {
+                throw new IllegalStateException("画面变化跟踪和结果缓存不能同时开启");
+            }
             return dmOptions;
         }
     }
@@ -114,4 +186,40 @@ public class DmOptions {
          */
         private String pwd;
     }
+
+    /**
+     * 画面变化跟踪配置
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class ScreenChangeTracking {
+        /**
+         * 跟踪的区域
+         */
+        private Rect region;
+        /**
+         * 图块边长
+         */
+        private int tileSize;
+        /**
+         * 重新截图的最小间隔(毫秒)
+         */
+        private long refreshIntervalMillis;
+    }
+
+    /**
+     * 结果缓存配置
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class ResultCaching {
+        /**
+         * 最多缓存的结果数量
+         */
+        private int maxEntries;
+        /**
+         * 结果的有效期(毫秒)
+         */
+        private long ttlMillis;
+    }
 }
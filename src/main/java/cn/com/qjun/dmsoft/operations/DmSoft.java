@@ -1,22 +1,17 @@
 package cn.com.qjun.dmsoft.operations;
 
-import cn.com.qjun.dmsoft.utils.RuntimeUtils;
-import com.jacob.activeX.ActiveXComponent;
-import com.jacob.com.ComThread;
-import com.jacob.com.Dispatch;
-import com.jacob.com.LibraryLoader;
-import com.jacob.com.Variant;
-import com.sun.jna.Library;
-import com.sun.jna.Native;
-
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import cn.com.qjun.dmsoft.backend.DmBackend;
+import cn.com.qjun.dmsoft.backend.JacobDmBackend;
+import cn.com.qjun.dmsoft.metrics.DmCallTracing;
+import cn.com.qjun.dmsoft.metrics.DmMetrics;
+import cn.com.qjun.dmsoft.utils.ResultScanner;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * 大漠插件封装
@@ -27,7 +22,14 @@ import java.util.stream.Stream;
 //@Slf4j
 public class DmSoft implements AutoCloseable {
     //    Logger logger =  LoggerFactory.getLogger(DmSoft.class);
-    private final ThreadLocal<ActiveXComponent> componentThreadLocal;
+    private final DmOptions options;
+    private final DmBackend backend;
+    private final DmMetrics metrics = new DmMetrics();
+    private final ThreadLocal<int[]> scratchOutputs = ThreadLocal.withInitial(() -> new int[4]);
+    /**
+     * 查找结果缓存, 未开启时为null
+     */
+    private final CallCache callCache;
 
     private final AiOperations aiOperations;
     private final BackgroundOperations backgroundOperations;
@@ -41,31 +43,9 @@ public class DmSoft implements AutoCloseable {
     private final SystemOperations systemOperations;
     private final WindowOperations windowOperations;
 
-    static {
-        try {
-            //TODO 判断系统环境
-            String systemPath = "win64-x64";
-            Path jacobDll = Files.createTempFile("jacob-1.20-x86", ".dll");
-//            Path jacobDll = Files.createTempFile("jacob-1.21-x64", ".dll");
-            RuntimeUtils.copyResourceFile("/win32-x86/jacob-1.20-x86.dll", jacobDll);
-//            RuntimeUtils.copyResourceFile("/win64-x64/jacob-1.21-x64.dll", jacobDll);
-            System.setProperty(LibraryLoader.JACOB_DLL_PATH, jacobDll.toAbsolutePath().toString());
-            LibraryLoader.loadJacobLibrary();
-
-            Path dmDll = Files.createTempFile("dm", ".dll");
-            RuntimeUtils.copyResourceFile("/win32-x86/dm.dll", dmDll);
-//            RuntimeUtils.copyResourceFile("/win64-x64/dm.dll", dmDll);
-            long dmReg = DmReg.INSTANCE.SetDllPathA(dmDll.toAbsolutePath().toString(), 1);
-            DmReg.INSTANCE.SetDllPathA(dmDll.toAbsolutePath().toString(), 0);
-            if (dmReg != 1L) {
-                throw new RuntimeException("Load dm.dll failed.");
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Library release fail.", e);
-        }
-    }
-
     public DmSoft(DmOptions options) {
+        this.options = options;
+        backend = options.getBackend() != null ? options.getBackend() : new JacobDmBackend(options.getPoolSize());
         aiOperations = new AiOperations(this);
         backgroundOperations = new BackgroundOperations(this);
         basicOperations = new BasicOperations(this);
@@ -77,12 +57,22 @@ public class DmSoft implements AutoCloseable {
         otherOperations = new OtherOperations(this);
         systemOperations = new SystemOperations(this);
         windowOperations = new WindowOperations(this);
-        componentThreadLocal = ThreadLocal.withInitial(() -> {
-            ComThread.InitMTA();
-            ActiveXComponent dmSoft = new ActiveXComponent("dm.dmsoft");
-            System.out.println("Init DmSoft success.");
-            return dmSoft;
-        });
+        if (options.getScreenChangeTracking() != null) {
+            callCache = new ScreenChangeCache(this, options.getScreenChangeTracking());
+        } else if (options.getResultCaching() != null) {
+            callCache = new ContentResultCache(this, options.getResultCaching());
+        } else {
+            callCache = null;
+        }
+        backend.setComponentInitializer(this::initComponent);
+        // 立即创建第一个大漠对象，尽早暴露注册失败等问题
+        backend.withComponent(() -> null);
+    }
+
+    /**
+     * 初始化大漠对象：注册、设置工作目录、图片密码、字库和AI模块
+     */
+    private void initComponent() {
         String version = opsForBasic().ver();
         System.out.println("大漠插件版本: " + version);
         opsForBasic().reg(options.getRegCode(), options.getAddCode());
@@ -113,6 +103,24 @@ public class DmSoft implements AutoCloseable {
         }
     }
 
+    /**
+     * 获取调用后端
+     *
+     * @return 调用后端
+     */
+    DmBackend backend() {
+        return this.backend;
+    }
+
+    /**
+     * 获取大漠接口调用统计
+     *
+     * @return 调用统计
+     */
+    public DmMetrics getMetrics() {
+        return this.metrics;
+    }
+
     public AiOperations opsForAi() {
         return this.aiOperations;
     }
@@ -167,22 +175,45 @@ public class DmSoft implements AutoCloseable {
      * @return 返回的整型数数组
      */
     int[] callForMultiInt(String method, int outputCount, boolean outputInArgs, Object... args) {
+        int[] outputs = new int[outputCount];
+        callForMultiInt(method, outputs, outputInArgs, args);
+        return outputs;
+    }
+
+    /**
+     * 调用大漠接口，把多个整型数写入调用方提供的数组
+     *
+     * @param method       方法名
+     * @param outputs      接收输出参数的数组，数组长度即输出参数数量
+     * @param outputInArgs 输出参数是否已经包含在参数中，包含时参数值作为输出参数的初始值
+     * @param args         方法参数
+     */
+    void callForMultiInt(String method, int[] outputs, boolean outputInArgs, Object... args) {
         int argsCount = args == null ? 0 : args.length;
+        int outputCount = outputs.length;
         int inputCount = outputInArgs ? argsCount : argsCount + outputCount;
-        Variant[] variants = new Variant[inputCount];
-        for (int i = 0; i < argsCount; i++) {
-            variants[i] = new Variant(args[i]);
-        }
-        if (inputCount > argsCount) {
-            for (int i = argsCount; i < inputCount; i++) {
-                variants[i] = new Variant(0, true);
+        Object[] inputs = new Object[inputCount];
+        for (int i = 0; i < inputCount; i++) {
+            int outputIndex = i - (inputCount - outputCount);
+            if (outputIndex < 0) {
+                inputs[i] = args[i];
+            } else if (outputInArgs) {
+                outputs[outputIndex] = ((Number) args[i]).intValue();
+                inputs[i] = DmBackend.IN_OUT;
+            } else {
+                inputs[i] = DmBackend.OUT;
             }
         }
-        callAndCheckResultEq1(method, (Object[]) variants);
-        return Stream.of(variants)
-                .skip(inputCount - outputCount)
-                .mapToInt(Variant::getInt)
-                .toArray();
+        callWithOutputsAndCheckResultEq1(method, outputs, inputs);
+    }
+
+    /**
+     * 当前线程复用的输出参数数组, 长度为4. 只能在一次调用中使用, 调用返回后立即读取
+     *
+     * @return 输出参数数组
+     */
+    int[] scratchOutputs() {
+        return scratchOutputs.get();
     }
 
     /**
@@ -193,7 +224,39 @@ public class DmSoft implements AutoCloseable {
      * @return 返回的字符串
      */
     String callForString(String method, Object... args) {
-        return Dispatch.call(component(), method, args).getString();
+        if (callCache != null) {
+            // 查找缓存时的截图、调用大漠和保存结果必须使用同一个大漠对象, 否则哈希的画面和查找的画面可能来自不同的对象
+            return backend.withComponent(() -> invokeForString(method, args));
+        }
+        return invokeForString(method, args);
+    }
+
+    private String invokeForString(String method, Object... args) {
+        CallCache.Lookup cacheLookup = lookupCache(method, args);
+        if (cacheLookup != null) {
+            CallCache.Entry cached = cacheLookup.getCached();
+            if (cached != null) {
+                return cached.getText();
+            }
+        }
+        long start = System.nanoTime();
+        Object event = DmCallTracing.begin();
+        String result = null;
+        boolean success = false;
+        try {
+            result = backend.callForString(method, args);
+            success = true;
+            if (cacheLookup != null) {
+                cacheLookup.store(result, null);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordError(method);
+            throw e;
+        } finally {
+            metrics.record(method, start);
+            DmCallTracing.end(event, method, args, success, result);
+        }
     }
 
     /**
@@ -205,12 +268,17 @@ public class DmSoft implements AutoCloseable {
      */
     List<Long> callForStringAndConvertToLongList(String method, Object... args) {
         String result = callForString(method, args);
-        if (result == null || result.isEmpty()) {
+        int count = ResultScanner.countItems(result, ',');
+        if (count == 0) {
             return Collections.emptyList();
         }
-        return Arrays.stream(result.split(","))
-                .map(Long::parseLong)
-                .collect(Collectors.toList());
+        long[] values = new long[count];
+        int size = ResultScanner.parseLongs(result, ',', values);
+        List<Long> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(values[i]);
+        }
+        return list;
     }
 
     /**
@@ -221,7 +289,104 @@ public class DmSoft implements AutoCloseable {
      * @return 返回的整型数
      */
     long callForLong(String method, Object... args) {
-        return Dispatch.call(component(), method, args).getInt();
+        if (callCache != null) {
+            return backend.withComponent(() -> invokeForLong(method, args));
+        }
+        return invokeForLong(method, args);
+    }
+
+    private long invokeForLong(String method, Object... args) {
+        CallCache.Lookup cacheLookup = lookupCache(method, args);
+        if (cacheLookup != null) {
+            CallCache.Entry cached = cacheLookup.getCached();
+            if (cached != null) {
+                return cached.getValue();
+            }
+        }
+        long start = System.nanoTime();
+        Object event = DmCallTracing.begin();
+        long result = 0L;
+        boolean success = false;
+        try {
+            result = backend.callForLong(method, args);
+            success = true;
+            if (cacheLookup != null) {
+                cacheLookup.store(result, null);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordError(method);
+            throw e;
+        } finally {
+            metrics.record(method, start);
+            DmCallTracing.end(event, method, args, success, result);
+        }
+    }
+
+    /**
+     * 调用带输出参数的大漠接口，返回整型数
+     *
+     * @param method  方法名
+     * @param outputs 输出参数，调用后写入大漠返回的值
+     * @param args    参数，输出参数所在位置用{@link DmBackend#OUT}或{@link DmBackend#IN_OUT}占位
+     * @return 返回的整型数
+     */
+    long callWithOutputs(String method, int[] outputs, Object... args) {
+        if (callCache != null) {
+            return backend.withComponent(() -> invokeWithOutputs(method, outputs, args));
+        }
+        return invokeWithOutputs(method, outputs, args);
+    }
+
+    private long invokeWithOutputs(String method, int[] outputs, Object... args) {
+        CallCache.Lookup cacheLookup = lookupCache(method, args);
+        if (cacheLookup != null) {
+            CallCache.Entry cached = cacheLookup.getCached();
+            if (cached != null) {
+                cached.copyOutputs(outputs);
+                return cached.getValue();
+            }
+        }
+        long start = System.nanoTime();
+        Object event = DmCallTracing.begin();
+        long result = 0L;
+        boolean success = false;
+        try {
+            result = backend.callWithOutputs(method, outputs, args);
+            success = true;
+            if (cacheLookup != null) {
+                cacheLookup.store(result, outputs);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordError(method);
+            throw e;
+        } finally {
+            metrics.record(method, start);
+            DmCallTracing.end(event, method, args, success, result);
+        }
+    }
+
+    /**
+     * 开启结果缓存时检查本次调用并记录是否命中
+     *
+     * @param method 方法名
+     * @param args   参数
+     * @return 本次调用的缓存状态, 未开启或不能缓存时返回null
+     */
+    private CallCache.Lookup lookupCache(String method, Object[] args) {
+        if (callCache == null) {
+            return null;
+        }
+        CallCache.Lookup lookup = callCache.lookup(method, args);
+        if (lookup != null) {
+            if (lookup.getCached() != null) {
+                metrics.recordCacheHit(method);
+            } else {
+                metrics.recordCacheMiss(method);
+            }
+        }
+        return lookup;
     }
 
     /**
@@ -232,7 +397,21 @@ public class DmSoft implements AutoCloseable {
      * @return 返回的双精度浮点数
      */
     double callForDouble(String method, Object... args) {
-        return Dispatch.call(component(), method, args).getDouble();
+        long start = System.nanoTime();
+        Object event = DmCallTracing.begin();
+        double result = 0D;
+        boolean success = false;
+        try {
+            result = backend.callForDouble(method, args);
+            success = true;
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordError(method);
+            throw e;
+        } finally {
+            metrics.record(method, start);
+            DmCallTracing.end(event, method, args, success, result);
+        }
     }
 
     /**
@@ -243,7 +422,21 @@ public class DmSoft implements AutoCloseable {
      * @return 返回的单精度浮点数
      */
     float callForFloat(String method, Object... args) {
-        return Dispatch.call(component(), method, args).getFloat();
+        long start = System.nanoTime();
+        Object event = DmCallTracing.begin();
+        float result = 0F;
+        boolean success = false;
+        try {
+            result = backend.callForFloat(method, args);
+            success = true;
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordError(method);
+            throw e;
+        } finally {
+            metrics.record(method, start);
+            DmCallTracing.end(event, method, args, success, result);
+        }
     }
 
     /**
@@ -255,38 +448,52 @@ public class DmSoft implements AutoCloseable {
     void callAndCheckResultEq1(String method, Object... args) {
         long result = callForLong(method, args);
         if (result != 1L) {
+            metrics.recordError(method);
             throw new RuntimeException(String.format("JACOB调用失败: method=%s, args=%s, code=%d", method, Arrays.toString(args), result));
         }
     }
 
     /**
-     * 获取当前线程的大漠插件ActiveX对象
+     * 调用带输出参数的大漠接口，并检查返回值是否等于1，不等于1则抛出异常
      *
-     * @return
+     * @param method  方法名
+     * @param outputs 输出参数，调用后写入大漠返回的值
+     * @param args    参数，输出参数所在位置用{@link DmBackend#OUT}或{@link DmBackend#IN_OUT}占位
      */
-    private ActiveXComponent component() {
-        return componentThreadLocal.get();
+    void callWithOutputsAndCheckResultEq1(String method, int[] outputs, Object... args) {
+        long result = callWithOutputs(method, outputs, args);
+        if (result != 1L) {
+            metrics.recordError(method);
+            throw new RuntimeException(String.format("JACOB调用失败: method=%s, args=%s, code=%d", method, Arrays.toString(args), result));
+        }
     }
 
-    @Override
-    public void close() throws Exception {
-        opsForOthers().releaseRef();
-        component().safeRelease();
-        ComThread.Release();
-        componentThreadLocal.remove();
-        System.out.println("+++++++ DmSoft Close.");
+    /**
+     * 独占同一个大漠对象连续执行多个操作, 例如绑定窗口后立即找图点击
+     *
+     * @param action 要执行的操作
+     * @param <T>    返回值类型
+     * @return 操作的返回值
+     */
+    public <T> T withComponent(Function<DmSoft, T> action) {
+        return backend.withComponent(() -> action.apply(this));
     }
 
-    private interface DmReg extends Library {
-        DmReg INSTANCE = Native.load("DmReg", DmReg.class);
+    /**
+     * 在每个已创建的大漠对象上执行一次操作, 用于设置绑定窗口等对象级别的状态.
+     * 不能在{@link #withComponent(Function)}中调用
+     *
+     * @param action 要执行的操作
+     */
+    public void forEachComponent(Consumer<DmSoft> action) {
+        backend.forEachComponent(() -> action.accept(this));
+    }
 
-        /**
-         * 加载大漠插件
-         *
-         * @param dllPath dm.dll路径
-         * @param mode    0表示STA，1表示MTA
-         * @return 0表示成功
-         */
-        int SetDllPathA(String dllPath, int mode);
+    @Override
+    public void close() throws Exception {
+        forEachComponent(dmSoft -> dmSoft.opsForOthers().releaseRef());
+        backend.close();
+        metrics.unregisterMBean();
+        System.out.println("+++++++ DmSoft Close.");
     }
 }
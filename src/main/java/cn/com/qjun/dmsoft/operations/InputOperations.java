@@ -1,6 +1,8 @@
 package cn.com.qjun.dmsoft.operations;
 
+import cn.com.qjun.dmsoft.backend.DmBackend;
 import cn.com.qjun.dmsoft.domain.Point;
+import cn.com.qjun.dmsoft.domain.Points;
 import cn.com.qjun.dmsoft.domain.Rect;
 import cn.com.qjun.dmsoft.enums.KeypadMode;
 import cn.com.qjun.dmsoft.enums.MouseMode;
@@ -40,6 +42,15 @@ public class InputOperations {
         return Point.of(result[0], result[1]);
     }
 
+    /**
+     * 获取鼠标位置,写入调用方提供的数组
+     *
+     * @param point 接收坐标的数组,point[0]为X坐标,point[1]为Y坐标
+     */
+    public void getCursorPos(int[] point) {
+        dmSoft.callWithOutputsAndCheckResultEq1("GetCursorPos", point, DmBackend.OUT, DmBackend.OUT);
+    }
+
     /**
      * 获取鼠标特征码. 当BindWindow或者BindWindowEx中的mouse参数含有dx.mouse.cursor时，
      * 获取到的是后台鼠标特征，否则是前台鼠标特征. 关于如何识别后台鼠标特征.
@@ -246,6 +257,15 @@ public class InputOperations {
         dmSoft.callAndCheckResultEq1("MoveTo", point.getX(), point.getY());
     }
 
+    /**
+     * 把鼠标移动到目的点,坐标用{@link Points}表示
+     *
+     * @param point 目的点
+     */
+    public void moveTo(long point) {
+        dmSoft.callAndCheckResultEq1("MoveTo", Points.x(point), Points.y(point));
+    }
+
     /**
      * 把鼠标移动到目的范围内的任意一点
      *
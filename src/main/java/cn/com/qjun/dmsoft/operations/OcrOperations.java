@@ -1,10 +1,12 @@
 package cn.com.qjun.dmsoft.operations;
 
+import cn.com.qjun.dmsoft.backend.DmBackend;
 import cn.com.qjun.dmsoft.domain.*;
 import cn.com.qjun.dmsoft.utils.InfoParseUtils;
-import com.jacob.com.Variant;
+import cn.com.qjun.dmsoft.utils.ResultScanner;
 import lombok.RequiredArgsConstructor;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -90,20 +92,27 @@ public class OcrOperations {
      * @return 找到的字符串索引和对应位置，没找到返回null
      */
     public FindResult findStr(Rect rect, List<String> keywords, String colorFormat, double sim) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()),
-                new Variant(rect.getY1()),
-                new Variant(rect.getX2()),
-                new Variant(rect.getY2()),
-                new Variant(String.join("|", keywords)),
-                new Variant(colorFormat),
-                new Variant(sim),
-                new Variant(0, true),
-                new Variant(0, true)};
-        long result = dmSoft.callForLong("FindStr", (Object[]) variants);
-        if (result == -1) {
+        int[] point = new int[2];
+        int index = findStr(rect, String.join("|", keywords), colorFormat, sim, point);
+        if (index == -1) {
             return null;
         }
-        return new FindResult((int) result, Point.of(variants[7].getInt(), variants[8].getInt()), null);
+        return new FindResult(index, Point.of(point[0], point[1]), null);
+    }
+
+    /**
+     * 在屏幕范围内查找字符串,找到的坐标写入调用方提供的数组,适合高频调用
+     *
+     * @param rect        查找的区域
+     * @param keywords    待查找的字符串,可以是字符串组合，比如"长安|洛阳|大雁塔",中间用"|"来分割字符串
+     * @param colorFormat 颜色格式串, 可以包含换行分隔符,语法是","后加分割字符串. 具体可以查看下面的示例.注意，RGB和HSV,以及灰度格式都支持.
+     * @param sim         相似度,取值范围0.1-1.0
+     * @param point       接收字符串坐标的数组,point[0]为X坐标,point[1]为Y坐标
+     * @return 找到的字符串索引，没找到返回-1
+     */
+    public int findStr(Rect rect, String keywords, String colorFormat, double sim, int[] point) {
+        return (int) dmSoft.callWithOutputs("FindStr", point, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                keywords, colorFormat, sim, DmBackend.OUT, DmBackend.OUT);
     }
 
     /**
@@ -126,6 +135,22 @@ public class OcrOperations {
         return convertFindResultList(result);
     }
 
+    /**
+     * 同{@link #findStrEx(Rect, List, String, double)}, 结果写入可重复使用的缓冲区
+     *
+     * @param rect        查找区域
+     * @param keywords    待查找的字符串, 可以是字符串组合，比如"长安|洛阳|大雁塔",中间用"|"来分割字符串
+     * @param colorFormat 颜色格式串
+     * @param sim         相似度,取值范围0.1-1.0
+     * @param buffer      接收结果的缓冲区, 调用前的内容会被清空
+     * @return 找到的结果数量
+     */
+    public int findStrEx(Rect rect, String keywords, String colorFormat, double sim, FindResultBuffer buffer) {
+        String result = dmSoft.callForString("FindStrEx", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                keywords, colorFormat, sim);
+        return buffer.parse(result, false);
+    }
+
     /**
      * 同FindStr。
      * <p>
@@ -143,14 +168,13 @@ public class OcrOperations {
      * @return 找到的字符串索引和对应位置，没找到返回null
      */
     public FindResult findStrFast(Rect rect, List<String> keywords, String colorFormat, double sim) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(String.join("|", keywords)), new Variant(colorFormat), new Variant(sim),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindStrFast", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindStrFast", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                String.join("|", keywords), colorFormat, sim, DmBackend.OUT, DmBackend.OUT);
         if (result == -1) {
             return null;
         }
-        return new FindResult((int) result, Point.of(variants[7].getInt(), variants[8].getInt()), null);
+        return new FindResult((int) result, Point.of(outputs[0], outputs[1]), null);
     }
 
     /**
@@ -175,6 +199,22 @@ public class OcrOperations {
         return convertFindResultList(result);
     }
 
+    /**
+     * 同{@link #findStrFastEx(Rect, List, String, double)}, 结果写入可重复使用的缓冲区
+     *
+     * @param rect        查找区域
+     * @param keywords    待查找的字符串, 可以是字符串组合，比如"长安|洛阳|大雁塔",中间用"|"来分割字符串
+     * @param colorFormat 颜色格式串
+     * @param sim         相似度,取值范围0.1-1.0
+     * @param buffer      接收结果的缓冲区, 调用前的内容会被清空
+     * @return 找到的结果数量
+     */
+    public int findStrFastEx(Rect rect, String keywords, String colorFormat, double sim, FindResultBuffer buffer) {
+        String result = dmSoft.callForString("FindStrFastEx", rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                keywords, colorFormat, sim);
+        return buffer.parse(result, false);
+    }
+
     /**
      * 同FindStr，但是不使用SetDict设置的字库，而利用系统自带的字库，速度比FindStr稍慢.
      *
@@ -192,14 +232,13 @@ public class OcrOperations {
      * @return 找到的字符串索引和对应位置，没找到返回null
      */
     public FindResult findStrWithFont(Rect rect, List<String> keywords, String colorFormat, double sim, String fontName, int fontSize, int fontFlag) {
-        Variant[] variants = new Variant[]{new Variant(rect.getX1()), new Variant(rect.getY1()), new Variant(rect.getX2()), new Variant(rect.getY2()),
-                new Variant(String.join("|", keywords)), new Variant(colorFormat), new Variant(sim), new Variant(fontName), new Variant(fontSize), new Variant(fontFlag),
-                new Variant(0, true), new Variant(0, true)};
-        long result = dmSoft.callForLong("FindStrWithFont", (Object[]) variants);
+        int[] outputs = new int[2];
+        long result = dmSoft.callWithOutputs("FindStrWithFont", outputs, rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2(),
+                String.join("|", keywords), colorFormat, sim, fontName, fontSize, fontFlag, DmBackend.OUT, DmBackend.OUT);
         if (result == -1) {
             return null;
         }
-        return new FindResult((int) result, Point.of(variants[10].getInt(), variants[11].getInt()), null);
+        return new FindResult((int) result, Point.of(outputs[0], outputs[1]), null);
     }
 
     /**
@@ -544,26 +583,28 @@ public class OcrOperations {
     }
 
     private List<OcrResult> convertOcrResultList(String resultStr) {
-        if (resultStr == null || resultStr.isEmpty()) {
+        int count = ResultScanner.countItems(resultStr, ResultScanner.ITEM_SEPARATOR);
+        if (count == 0) {
             return Collections.emptyList();
         }
-        return Arrays.stream(resultStr.split("\\|"))
-                .map(item -> {
-                    String[] parts = item.split("\\$");
-                    return new OcrResult(parts[0], Point.of(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
-                })
-                .collect(Collectors.toList());
+        int[] textStarts = new int[count];
+        int[] textEnds = new int[count];
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        int size = ResultScanner.parseOcrResults(resultStr, textStarts, textEnds, xs, ys);
+        // 返回可修改的列表, 与原来Collectors.toList()的结果一致, 调用方可以排序、删除
+        return new ArrayList<>(new OcrResultList(resultStr, size, textStarts, textEnds, xs, ys));
     }
 
     private List<FindResult> convertFindResultList(String resultStr) {
-        if (resultStr == null || resultStr.isEmpty()) {
+        int count = ResultScanner.countItems(resultStr, ResultScanner.ITEM_SEPARATOR);
+        if (count == 0) {
             return Collections.emptyList();
         }
-        return Arrays.stream(resultStr.split("\\|"))
-                .map(item -> {
-                    String[] parts = item.split(",");
-                    return new FindResult(Integer.parseInt(parts[0]), Point.of(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])), null);
-                })
-                .collect(Collectors.toList());
+        int[] indexes = new int[count];
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        int size = ResultScanner.parseFindResults(resultStr, false, indexes, xs, ys, null);
+        return new ArrayList<>(new FindResultList(size, indexes, xs, ys, null));
     }
 }
@@ -0,0 +1,322 @@
+package cn.com.qjun.dmsoft.operations;
+
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.domain.MemoryInfo;
+import cn.com.qjun.dmsoft.domain.Point;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.domain.Size;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import cn.com.qjun.dmsoft.vision.TemplatePack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 按内存预算管理大漠对象中加载的图片
+ * <p>
+ * 记录每个大漠对象已经加载(LoadPic/LoadPicByte)的图片和解码后占用的内存(宽x高x4字节). 找图前加载还没有加载的图片,
+ * 已加载图片的总大小超过预算时, 用FreePic释放最久没有使用的图片. 启动时可以用{@link #prefetch(Path)}按清单预先加载,
+ * 避免第一次找图时从磁盘加载. 组件池中每个大漠对象分别记录和计算预算.
+ * <p>
+ * 图片名不能包含通配符. 需要大漠的图片缓存处于开启状态(默认开启). 设置工作目录(SetPath)后应调用{@link #reset()},
+ * 因为大漠中已加载的相对路径图片会失效. 通过本类以外的方式加载或释放图片不会被记录.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class PictureLibrary {
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final DmSoft dmSoft;
+    private final long memoryBudget;
+    private final Map<String, MemoryInfo> memorySources = new ConcurrentHashMap<>();
+    /**
+     * 登记过的模板包, 保证映射的内存在大漠使用期间有效
+     */
+    private final List<TemplatePack> packs = new CopyOnWriteArrayList<>();
+    private final Map<Object, Residency> residencies = new IdentityHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 创建实例
+     *
+     * @param dmSoft       大漠插件
+     * @param memoryBudget 每个大漠对象中已加载图片的内存预算(字节)
+     */
+    public PictureLibrary(DmSoft dmSoft, long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("内存预算必须大于0: " + memoryBudget);
+        }
+        this.dmSoft = dmSoft;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * 登记从内存加载的图片, 之后需要该图片时用LoadPicByte加载. 内存需要一直有效
+     *
+     * @param picName    图片名
+     * @param memoryInfo 图片内存信息
+     */
+    public void register(String picName, MemoryInfo memoryInfo) {
+        memorySources.put(checkName(picName), memoryInfo);
+    }
+
+    /**
+     * 登记模板包中的所有图片, 之后需要时从映射的内存加载, 不再读取图片文件
+     *
+     * @param pack 模板包
+     */
+    public void register(TemplatePack pack) {
+        packs.add(pack);
+        pack.forEachMemory(this::register);
+    }
+
+    /**
+     * 独占一个大漠对象, 确保图片已经加载后执行操作
+     *
+     * @param picNames 操作需要的图片
+     * @param action   要执行的操作, 例如找图
+     * @param <T>      返回值类型
+     * @return 操作的返回值
+     */
+    public <T> T withPictures(List<String> picNames, Function<DmSoft, T> action) {
+        return dmSoft.withComponent(dm -> {
+            ensureLoaded(picNames);
+            return action.apply(dm);
+        });
+    }
+
+    /**
+     * 加载图片后找图, 参数和返回值与{@link ColourOperations#findPic(Rect, List, String, double, FindDirection)}相同
+     *
+     * @param rect       查找区域
+     * @param picNames   图片名
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @return 找到的图片序号和对应坐标，没有找到返回null
+     */
+    public FindResult findPic(Rect rect, List<String> picNames, String deltaColor, double sim, FindDirection dir) {
+        int[] point = new int[2];
+        int index = findPic(rect, picNames, deltaColor, sim, dir, point);
+        return index < 0 ? null : new FindResult(index, Point.of(point[0], point[1]), null);
+    }
+
+    /**
+     * 加载图片后找图, 参数和返回值与{@link ColourOperations#findPic(Rect, String, String, double, FindDirection, int[])}相同
+     *
+     * @param rect       查找区域
+     * @param picNames   图片名
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @param point      接收图片左上角坐标的数组
+     * @return 找到的图片序号，没有找到返回-1
+     */
+    public int findPic(Rect rect, List<String> picNames, String deltaColor, double sim, FindDirection dir, int[] point) {
+        String joined = String.join("|", picNames);
+        return withPictures(picNames, dm -> dm.opsForColour().findPic(rect, joined, deltaColor, sim, dir, point));
+    }
+
+    /**
+     * 按清单在每个大漠对象中预先加载图片, 加载到内存预算用完为止, 不释放已经加载的图片
+     * <p>
+     * 清单每行一个图片名, 忽略空行和#开头的行, 按使用频率从高到低排列
+     *
+     * @param manifest 清单文件, UTF-8编码
+     * @return 每个大漠对象中加载的图片数量之和
+     */
+    public int prefetch(Path manifest) {
+        List<String> picNames = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String name = line.trim();
+                if (!name.isEmpty() && !name.startsWith("#")) {
+                    picNames.add(name);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取图片清单失败: " + manifest, e);
+        }
+        return prefetch(picNames);
+    }
+
+    /**
+     * 在每个大漠对象中预先加载图片, 加载到内存预算用完为止, 不释放已经加载的图片.
+     * 对象池中还没有创建的大漠对象会先创建出来, 保证之后租用到的每个对象都已加载
+     *
+     * @param picNames 图片名, 按使用频率从高到低排列
+     * @return 每个大漠对象中加载的图片数量之和
+     */
+    public int prefetch(List<String> picNames) {
+        picNames.forEach(PictureLibrary::checkName);
+        dmSoft.backend().prestartAllComponents();
+        int[] loaded = new int[1];
+        dmSoft.forEachComponent(dm -> {
+            Residency residency = residency();
+            synchronized (residency) {
+                for (String picName : picNames) {
+                    if (residency.sizes.containsKey(picName)) {
+                        continue;
+                    }
+                    long size = load(dm, picName);
+                    residency.add(picName, size);
+                    loaded[0]++;
+                    if (residency.bytes >= memoryBudget) {
+                        break;
+                    }
+                }
+            }
+        });
+        return loaded[0];
+    }
+
+    /**
+     * 在当前独占的大漠对象中加载图片, 超出预算时释放最久没有使用的其他图片.
+     * 需要在{@link DmSoft#withComponent(Function)}中调用, 保证之后的找图使用同一个大漠对象
+     *
+     * @param picNames 图片名
+     */
+    public void ensureLoaded(List<String> picNames) {
+        Residency residency = residency();
+        synchronized (residency) {
+            boolean added = false;
+            for (String picName : picNames) {
+                if (residency.sizes.get(picName) != null) {
+                    continue;
+                }
+                residency.add(checkName(picName), load(dmSoft, picName));
+                added = true;
+            }
+            if (added && residency.bytes > memoryBudget) {
+                evict(residency, picNames);
+            }
+        }
+    }
+
+    /**
+     * 清空记录, 例如改变工作目录后. 不调用FreePic
+     */
+    public void reset() {
+        synchronized (residencies) {
+            residencies.clear();
+        }
+    }
+
+    /**
+     * 当前独占的大漠对象中已加载图片占用的内存
+     *
+     * @return 字节数
+     */
+    public long getLoadedBytes() {
+        Residency residency = residency();
+        synchronized (residency) {
+            return residency.bytes;
+        }
+    }
+
+    /**
+     * 当前独占的大漠对象中已加载的图片, 按最近使用的顺序从旧到新排列
+     *
+     * @return 图片名
+     */
+    public List<String> getLoadedPictures() {
+        Residency residency = residency();
+        synchronized (residency) {
+            return Collections.unmodifiableList(new ArrayList<>(residency.sizes.keySet()));
+        }
+    }
+
+    /**
+     * 累计加载次数
+     *
+     * @return 加载次数
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * 累计因为超出预算释放的次数
+     *
+     * @return 释放次数
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private long load(DmSoft dm, String picName) {
+        MemoryInfo memoryInfo = memorySources.get(picName);
+        if (memoryInfo != null) {
+            dm.opsForColour().loadPicByte(memoryInfo, picName);
+        } else {
+            dm.opsForColour().loadPic(Collections.singletonList(picName));
+        }
+        loads.increment();
+        Size size = dm.opsForColour().getPicSize(picName);
+        return (long) size.getWidth() * size.getHeight() * BYTES_PER_PIXEL;
+    }
+
+    private void evict(Residency residency, List<String> inUse) {
+        List<String> victims = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = residency.sizes.entrySet().iterator();
+        while (residency.bytes > memoryBudget && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (inUse.contains(entry.getKey())) {
+                continue;
+            }
+            victims.add(entry.getKey());
+            residency.bytes -= entry.getValue();
+            iterator.remove();
+        }
+        if (!victims.isEmpty()) {
+            dmSoft.opsForColour().freePic(victims);
+            evictions.add(victims.size());
+        }
+    }
+
+    private Residency residency() {
+        Object component = dmSoft.backend().currentComponent();
+        if (component == null) {
+            throw new IllegalStateException("需要在DmSoft.withComponent中调用");
+        }
+        synchronized (residencies) {
+            return residencies.computeIfAbsent(component, key -> new Residency());
+        }
+    }
+
+    private static String checkName(String picName) {
+        if (picName.indexOf('*') >= 0 || picName.indexOf('?') >= 0 || picName.indexOf('|') >= 0) {
+            throw new IllegalArgumentException("图片名不能包含通配符或分隔符: " + picName);
+        }
+        return picName;
+    }
+
+    /**
+     * 一个大漠对象中已加载的图片, 按访问顺序排列
+     */
+    private static final class Residency {
+        private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(64, 0.75F, true);
+        private long bytes;
+
+        private void add(String picName, long size) {
+            sizes.put(picName, size);
+            bytes += size;
+        }
+    }
+}
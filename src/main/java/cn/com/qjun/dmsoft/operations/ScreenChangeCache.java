@@ -0,0 +1,159 @@
+package cn.com.qjun.dmsoft.operations;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.vision.Frame;
+import cn.com.qjun.dmsoft.vision.FrameChangeTracker;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按画面变化缓存查找结果
+ * <p>
+ * 开启{@link DmOptions.PluginOptionsBuilder#withScreenChangeTracking}后使用. 查找前按间隔截取跟踪区域交给{@link FrameChangeTracker},
+ * 同样的方法和参数, 只要查找区域覆盖的图块在上次得到结果后都没有变化, 就直接返回上次的结果.
+ * <p>
+ * 截图会让之前通过{@link ColourOperations#captureFrame(Rect)}得到的帧失效. 组件池中的所有大漠对象应绑定同一个窗口.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+final class ScreenChangeCache extends CallCache {
+    private static final int MAX_ENTRIES = 256;
+    private static final Set<String> CACHEABLE_METHODS = new HashSet<>(Arrays.asList(
+            "FindPic", "FindPicEx", "FindPicSim", "FindPicSimEx",
+            "FindStr", "FindStrEx", "FindStrFast", "FindStrFastEx", "FindStrWithFont", "FindStrWithFontEx",
+            "Ocr", "OcrEx", "OcrExOne",
+            "FindColor", "FindColorEx", "FindMultiColor", "FindMultiColorEx", "FindColorBlock", "FindColorBlockEx",
+            "GetColorNum", "FindShape", "FindShapeEx", "GetAveRGB", "GetAveHSV"));
+
+    private final DmSoft dmSoft;
+    private final Rect region;
+    private final long refreshIntervalNanos;
+    private final FrameChangeTracker tracker;
+    private final Map<List<Object>, VersionedEntry> entries = new LinkedHashMap<List<Object>, VersionedEntry>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, VersionedEntry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private long lastRefresh;
+    private boolean refreshed;
+
+    ScreenChangeCache(DmSoft dmSoft, DmOptions.ScreenChangeTracking tracking) {
+        this.dmSoft = dmSoft;
+        this.region = tracking.getRegion();
+        this.refreshIntervalNanos = tracking.getRefreshIntervalMillis() * 1_000_000L;
+        this.tracker = new FrameChangeTracker(tracking.getTileSize());
+    }
+
+    /**
+     * 查找缓存的结果, 需要时先截图更新画面变化. 未命中时保存的结果以查找前的版本为准
+     */
+    @Override
+    Lookup lookup(String method, Object[] args) {
+        if (!CACHEABLE_METHODS.contains(method)) {
+            if (isStateChange(method)) {
+                clear();
+            }
+            return null;
+        }
+        Rect rect = searchRect(args);
+        if (rect == null) {
+            return null;
+        }
+        List<Object> key = key(method, args);
+        if (!refresh()) {
+            return null;
+        }
+        synchronized (this) {
+            long version = tracker.getVersion();
+            VersionedEntry entry = entries.get(key);
+            if (entry != null && tracker.isUnchangedSince(rect, entry.version)) {
+                return new VersionedLookup(entry.entry, key, rect, version);
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            return new VersionedLookup(null, key, rect, version);
+        }
+    }
+
+    @Override
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 距上次截图超过间隔时重新截图.
+     * <p>
+     * 截图需要租用大漠对象, 不能在持有本对象的锁时进行: 否则对象池只有一个大漠对象时, 持有锁等待租用的线程
+     * 和已经租到大漠对象、等待锁的线程互相等待. 所以只在锁内判断是否需要截图, 截图后在同一次租用中重新加锁更新画面变化,
+     * 加锁顺序始终是先大漠对象后本对象
+     *
+     * @return 截图成功或者还在间隔内时返回true
+     */
+    private boolean refresh() {
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (refreshed && now - lastRefresh < refreshIntervalNanos) {
+                return true;
+            }
+        }
+        return dmSoft.opsForColour().withFrame(region, frame -> update(frame, now));
+    }
+
+    private synchronized boolean update(Frame frame, long capturedAt) {
+        if (frame == null) {
+            refreshed = false;
+            entries.clear();
+            return false;
+        }
+        if (refreshed && lastRefresh - capturedAt > 0) {
+            // 其他线程在本次截图之后已经截图并更新
+            return true;
+        }
+        tracker.update(frame);
+        lastRefresh = capturedAt;
+        refreshed = true;
+        return true;
+    }
+
+    private synchronized void store(List<Object> key, Rect rect, long version, Object result, int[] outputs) {
+        if (tracker.isUnchangedSince(rect, version)) {
+            entries.put(key, new VersionedEntry(version, new Entry(result, outputs)));
+        }
+    }
+
+    private final class VersionedLookup extends Lookup {
+        private final List<Object> key;
+        private final Rect rect;
+        private final long version;
+
+        private VersionedLookup(Entry cached, List<Object> key, Rect rect, long version) {
+            super(cached);
+            this.key = key;
+            this.rect = rect;
+            this.version = version;
+        }
+
+        @Override
+        void store(Object result, int[] outputs) {
+            ScreenChangeCache.this.store(key, rect, version, result, outputs);
+        }
+    }
+
+    private static final class VersionedEntry {
+        private final long version;
+        private final Entry entry;
+
+        private VersionedEntry(long version, Entry entry) {
+            this.version = version;
+            this.entry = entry;
+        }
+    }
+}
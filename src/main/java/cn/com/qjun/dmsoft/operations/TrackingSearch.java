@@ -0,0 +1,216 @@
+package cn.com.qjun.dmsoft.operations;
+
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.domain.Size;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 利用前后两帧的连续性缩小查找范围
+ * <p>
+ * 目标找到后, 下一次查找通常在上次位置的几个像素之内. 按窗口和目标(图片名、字符串)记录上次找到的范围,
+ * 下一次先在上次范围外扩一圈的邻域内查找, 没有找到再依次扩大邻域, 最后才查找完整区域; 完整区域也没有找到时清除记录.
+ * 邻域内仍按调用方的查找方向查找, 返回的是邻域内按该方向的第一个目标, 不一定离上次位置最近.
+ * 完整区域内有多个目标时, 邻域外按查找方向排在前面的目标会被忽略, 结果可能与直接查找完整区域不同.
+ * <p>
+ * 线程安全, 同一个窗口和目标在多个线程中同时查找时以最后一次的结果为准.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class TrackingSearch {
+    private static final int[] DEFAULT_MARGINS = {8, 32};
+
+    private final DmSoft dmSoft;
+    private final int[] margins;
+    private final Map<String, Rect> lastHits = new ConcurrentHashMap<>();
+    private final Map<String, Size> picSizes = new ConcurrentHashMap<>();
+    private final LongAdder searches = new LongAdder();
+    private final AtomicLongArray neighbourhoodHits;
+    private final LongAdder fullHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 创建实例, 邻域依次外扩8和32像素
+     *
+     * @param dmSoft 大漠插件
+     */
+    public TrackingSearch(DmSoft dmSoft) {
+        this(dmSoft, DEFAULT_MARGINS);
+    }
+
+    /**
+     * 创建实例
+     *
+     * @param dmSoft  大漠插件
+     * @param margins 每一级邻域在上次范围外扩的像素, 从小到大排列
+     */
+    public TrackingSearch(DmSoft dmSoft, int... margins) {
+        for (int i = 0; i < margins.length; i++) {
+            if (margins[i] < 0 || (i > 0 && margins[i] <= margins[i - 1])) {
+                throw new IllegalArgumentException("邻域必须从小到大排列且不小于0: " + Arrays.toString(margins));
+            }
+        }
+        this.dmSoft = dmSoft;
+        this.margins = margins.clone();
+        this.neighbourhoodHits = new AtomicLongArray(margins.length);
+    }
+
+    /**
+     * 跟踪找图, 参数和返回值与{@link ColourOperations#findPic(Rect, List, String, double, FindDirection)}相同.
+     * 图片尺寸通过GetPicSize获取后缓存
+     *
+     * @param hwnd       窗口句柄, 用于区分不同窗口中的同一个目标
+     * @param rect       完整的查找区域
+     * @param picNames   图片名
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @return 找到的图片序号和对应坐标，没有找到返回null
+     */
+    public FindResult findPic(long hwnd, Rect rect, List<String> picNames, String deltaColor, double sim, FindDirection dir) {
+        return track(hwnd, "FindPic|" + String.join("|", picNames), rect,
+                area -> dmSoft.opsForColour().findPic(area, picNames, deltaColor, sim, dir),
+                result -> Rect.of(result.getPoint(), picSize(picNames.get(result.getIndex()))));
+    }
+
+    /**
+     * 跟踪找字, 参数和返回值与{@link OcrOperations#findStr(Rect, List, String, double)}相同
+     *
+     * @param hwnd        窗口句柄, 用于区分不同窗口中的同一个目标
+     * @param rect        完整的查找区域
+     * @param keywords    待查找的字符串
+     * @param colorFormat 颜色格式串
+     * @param sim         相似度,取值范围0.1-1.0
+     * @param textSize    字符串大致的尺寸, 邻域在找到的坐标和这个尺寸组成的范围外扩
+     * @return 找到的字符串索引和对应位置，没找到返回null
+     */
+    public FindResult findStr(long hwnd, Rect rect, List<String> keywords, String colorFormat, double sim, Size textSize) {
+        return track(hwnd, "FindStr|" + String.join("|", keywords), rect,
+                area -> dmSoft.opsForOcr().findStr(area, keywords, colorFormat, sim),
+                result -> Rect.of(result.getPoint(), textSize));
+    }
+
+    /**
+     * 跟踪任意查找, 例如Java找图
+     *
+     * @param hwnd     窗口句柄, 用于区分不同窗口中的同一个目标
+     * @param target   目标的标识, 例如图片名
+     * @param rect     完整的查找区域
+     * @param search   在指定区域内查找, 没有找到返回null
+     * @param boundsOf 找到的目标所占的范围, 作为下一次邻域的中心
+     * @param <T>      查找结果类型
+     * @return 查找结果, 没有找到返回null
+     */
+    public <T> T track(long hwnd, String target, Rect rect, Function<Rect, T> search, Function<T, Rect> boundsOf) {
+        searches.increment();
+        String key = hwnd + "@" + target;
+        Rect last = lastHits.get(key);
+        if (last != null) {
+            for (int i = 0; i < margins.length; i++) {
+                Rect area = intersect(rect, Rect.of(last.getX1() - margins[i], last.getY1() - margins[i],
+                        last.getX2() + margins[i], last.getY2() + margins[i]));
+                if (area == null) {
+                    continue;
+                }
+                if (area.equals(rect)) {
+                    // 邻域已经覆盖完整区域
+                    break;
+                }
+                T result = search.apply(area);
+                if (result != null) {
+                    neighbourhoodHits.incrementAndGet(i);
+                    lastHits.put(key, boundsOf.apply(result));
+                    return result;
+                }
+            }
+        }
+        T result = search.apply(rect);
+        if (result == null) {
+            misses.increment();
+            lastHits.remove(key);
+            return null;
+        }
+        fullHits.increment();
+        lastHits.put(key, boundsOf.apply(result));
+        return result;
+    }
+
+    /**
+     * 清除指定窗口的记录, 例如窗口关闭后
+     *
+     * @param hwnd 窗口句柄
+     */
+    public void forget(long hwnd) {
+        String prefix = hwnd + "@";
+        lastHits.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 获取统计快照
+     *
+     * @return 统计
+     */
+    public Stats getStats() {
+        long[] hits = new long[margins.length];
+        long neighbourhood = 0;
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = neighbourhoodHits.get(i);
+            neighbourhood += hits[i];
+        }
+        long total = searches.sum();
+        return new Stats(total, hits, fullHits.sum(), misses.sum(), total == 0 ? 0D : (double) neighbourhood / total);
+    }
+
+    private Size picSize(String picName) {
+        return picSizes.computeIfAbsent(picName, name -> dmSoft.opsForColour().getPicSize(name));
+    }
+
+    private static Rect intersect(Rect a, Rect b) {
+        int x1 = Math.max(a.getX1(), b.getX1());
+        int y1 = Math.max(a.getY1(), b.getY1());
+        int x2 = Math.min(a.getX2(), b.getX2());
+        int y2 = Math.min(a.getY2(), b.getY2());
+        return x2 <= x1 || y2 <= y1 ? null : Rect.of(x1, y1, x2, y2);
+    }
+
+    /**
+     * 跟踪查找的统计快照
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Stats {
+        /**
+         * 查找次数
+         */
+        private long searches;
+        /**
+         * 每一级邻域内找到的次数
+         */
+        private long[] neighbourhoodHits;
+        /**
+         * 邻域内没有找到、在完整区域内找到的次数
+         */
+        private long fullHits;
+        /**
+         * 完整区域内也没有找到的次数
+         */
+        private long misses;
+        /**
+         * 在邻域内找到的比例
+         */
+        private double hitRate;
+    }
+}
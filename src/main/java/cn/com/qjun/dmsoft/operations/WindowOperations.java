@@ -1,8 +1,11 @@
 package cn.com.qjun.dmsoft.operations;
 
+import cn.com.qjun.dmsoft.backend.DmBackend;
 import cn.com.qjun.dmsoft.domain.Point;
+import cn.com.qjun.dmsoft.domain.Points;
 import cn.com.qjun.dmsoft.domain.ProcessInfo;
 import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.domain.Rects;
 import cn.com.qjun.dmsoft.domain.Size;
 import cn.com.qjun.dmsoft.enums.GetWindowFlag;
 import cn.com.qjun.dmsoft.enums.GetWindowStateFlag;
@@ -35,6 +38,31 @@ public class WindowOperations {
         return Point.of(result[0], result[1]);
     }
 
+    /**
+     * 把窗口坐标转换为屏幕坐标,直接在调用方提供的数组上转换
+     *
+     * @param hwnd  窗口句柄
+     * @param point 调用前为窗口中的坐标,调用后为对应的屏幕坐标. point[0]为X坐标,point[1]为Y坐标
+     */
+    public void clientToScreen(long hwnd, int[] point) {
+        dmSoft.callWithOutputsAndCheckResultEq1("ClientToScreen", point, hwnd, DmBackend.IN_OUT, DmBackend.IN_OUT);
+    }
+
+    /**
+     * 把窗口坐标转换为屏幕坐标,坐标用{@link Points}表示
+     *
+     * @param hwnd          窗口句柄
+     * @param pointInWindow 窗口坐标
+     * @return 屏幕坐标
+     */
+    public long clientToScreen(long hwnd, long pointInWindow) {
+        int[] point = dmSoft.scratchOutputs();
+        point[0] = Points.x(pointInWindow);
+        point[1] = Points.y(pointInWindow);
+        clientToScreen(hwnd, point);
+        return Points.pack(point[0], point[1]);
+    }
+
     /**
      * 根据指定进程名,枚举系统中符合条件的进程PID,并且按照进程打开顺序排序.
      *
@@ -297,6 +325,29 @@ public class WindowOperations {
         return Rect.of(result[0], result[1], result[2], result[3]);
     }
 
+    /**
+     * 获取窗口在屏幕上的位置,写入调用方提供的数组
+     *
+     * @param hwnd 指定的窗口句柄
+     * @param rect 接收区域的数组,依次为x1,y1,x2,y2
+     */
+    public void getWindowRect(long hwnd, int[] rect) {
+        dmSoft.callWithOutputsAndCheckResultEq1("GetWindowRect", rect, hwnd, DmBackend.OUT, DmBackend.OUT, DmBackend.OUT, DmBackend.OUT);
+    }
+
+    /**
+     * 获取窗口在屏幕上的位置,用{@link Rects}的形式写入调用方提供的数组
+     *
+     * @param hwnd 指定的窗口句柄
+     * @param rect 长度至少为2的数组, rect[0]为左上角, rect[1]为右下角
+     */
+    public void getWindowRect(long hwnd, long[] rect) {
+        int[] outputs = dmSoft.scratchOutputs();
+        getWindowRect(hwnd, outputs);
+        rect[0] = Points.pack(outputs[0], outputs[1]);
+        rect[1] = Points.pack(outputs[2], outputs[3]);
+    }
+
     /**
      * 获取指定窗口的一些属性
      *
@@ -351,6 +402,31 @@ public class WindowOperations {
         return Point.of(result[0], result[1]);
     }
 
+    /**
+     * 把屏幕坐标转换为窗口坐标,直接在调用方提供的数组上转换
+     *
+     * @param hwnd  指定的窗口句柄
+     * @param point 调用前为屏幕中的坐标,调用后为对应的窗口坐标. point[0]为X坐标,point[1]为Y坐标
+     */
+    public void screenToClient(long hwnd, int[] point) {
+        dmSoft.callWithOutputsAndCheckResultEq1("ScreenToClient", point, hwnd, DmBackend.IN_OUT, DmBackend.IN_OUT);
+    }
+
+    /**
+     * 把屏幕坐标转换为窗口坐标,坐标用{@link Points}表示
+     *
+     * @param hwnd          指定的窗口句柄
+     * @param pointInScreen 屏幕坐标
+     * @return 窗口坐标
+     */
+    public long screenToClient(long hwnd, long pointInScreen) {
+        int[] point = dmSoft.scratchOutputs();
+        point[0] = Points.x(pointInScreen);
+        point[1] = Points.y(pointInScreen);
+        screenToClient(hwnd, point);
+        return Points.pack(point[0], point[1]);
+    }
+
     /**
      * 向指定窗口发送粘贴命令. 把剪贴板的内容发送到目标窗口.
      *
@@ -0,0 +1,192 @@
+package cn.com.qjun.dmsoft.utils;
+
+/**
+ * 大漠返回结果字符串的扫描解析
+ * <p>
+ * 按下标逐字符扫描一遍结果字符串, 不使用正则、不截取子串, 把数值直接写入调用方提供的基本类型数组.
+ * 数组长度不能小于结果条数, 可以先用{@link #countItems(String, char)}得到条数.
+ * 格式不正确时抛出{@link NumberFormatException}, 与原来用split+Integer.parseInt解析时一致.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class ResultScanner {
+    /**
+     * 多条结果之间的分隔符
+     */
+    public static final char ITEM_SEPARATOR = '|';
+
+    /**
+     * 统计结果条数
+     *
+     * @param str       结果字符串
+     * @param separator 结果之间的分隔符
+     * @return 结果条数, 字符串为空时返回0
+     */
+    public static int countItems(String str, char separator) {
+        if (str == null || str.isEmpty()) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = 0, length = str.length(); i < length; i++) {
+            if (str.charAt(i) == separator) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 解析FindPicEx、FindStrEx等接口的结果, 格式为"id,x,y|id,x,y..."; withSim为true时为"id,sim,x,y|id,sim,x,y..."
+     *
+     * @param str     结果字符串
+     * @param withSim 结果中是否包含相似度
+     * @param indexes 写入找到的序号
+     * @param xs      写入X坐标
+     * @param ys      写入Y坐标
+     * @param sims    写入相似度, withSim为false时可以为null
+     * @return 结果条数
+     */
+    public static int parseFindResults(String str, boolean withSim, int[] indexes, int[] xs, int[] ys, int[] sims) {
+        if (str == null || str.isEmpty()) {
+            return 0;
+        }
+        int length = str.length();
+        int count = 0;
+        int pos = 0;
+        while (pos < length) {
+            int itemEnd = indexOf(str, ITEM_SEPARATOR, pos, length);
+            int end = indexOf(str, ',', pos, itemEnd);
+            indexes[count] = parseInt(str, pos, end);
+            pos = end + 1;
+            if (withSim) {
+                end = indexOf(str, ',', pos, itemEnd);
+                sims[count] = parseInt(str, pos, end);
+                pos = end + 1;
+            }
+            end = indexOf(str, ',', pos, itemEnd);
+            xs[count] = parseInt(str, pos, end);
+            pos = end + 1;
+            end = indexOf(str, ',', pos, itemEnd);
+            ys[count] = parseInt(str, pos, end);
+            count++;
+            pos = itemEnd + 1;
+        }
+        return count;
+    }
+
+    /**
+     * 解析OcrEx接口的结果, 格式为"字符串$x$y|字符串$x$y...". 文字只记录在结果字符串中的起止位置, 需要时再截取
+     *
+     * @param str        结果字符串
+     * @param textStarts 写入文字的起始位置(包含)
+     * @param textEnds   写入文字的结束位置(不包含)
+     * @param xs         写入X坐标
+     * @param ys         写入Y坐标
+     * @return 结果条数
+     */
+    public static int parseOcrResults(String str, int[] textStarts, int[] textEnds, int[] xs, int[] ys) {
+        if (str == null || str.isEmpty()) {
+            return 0;
+        }
+        int length = str.length();
+        int count = 0;
+        int pos = 0;
+        while (pos < length) {
+            int itemEnd = indexOf(str, ITEM_SEPARATOR, pos, length);
+            int end = indexOf(str, '$', pos, itemEnd);
+            textStarts[count] = pos;
+            textEnds[count] = end;
+            pos = end + 1;
+            end = indexOf(str, '$', pos, itemEnd);
+            xs[count] = parseInt(str, pos, end);
+            pos = end + 1;
+            end = indexOf(str, '$', pos, itemEnd);
+            ys[count] = parseInt(str, pos, end);
+            count++;
+            pos = itemEnd + 1;
+        }
+        return count;
+    }
+
+    /**
+     * 解析用分隔符分隔的整型数列表, 例如EnumWindow返回的"hwnd1,hwnd2,..."
+     *
+     * @param str       结果字符串
+     * @param separator 分隔符
+     * @param values    写入解析出的数值
+     * @return 数值个数
+     */
+    public static int parseLongs(String str, char separator, long[] values) {
+        if (str == null || str.isEmpty()) {
+            return 0;
+        }
+        int length = str.length();
+        int count = 0;
+        int pos = 0;
+        while (pos < length) {
+            int end = indexOf(str, separator, pos, length);
+            values[count++] = parseLong(str, pos, end);
+            pos = end + 1;
+        }
+        return count;
+    }
+
+    /**
+     * 解析字符串中[from, to)范围内的十进制整型数
+     *
+     * @param str  字符串
+     * @param from 起始位置(包含)
+     * @param to   结束位置(不包含)
+     * @return 整型数
+     */
+    public static int parseInt(String str, int from, int to) {
+        long value = parseLong(str, from, to);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + str.substring(from, to) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * 解析字符串中[from, to)范围内的十进制长整型数
+     *
+     * @param str  字符串
+     * @param from 起始位置(包含)
+     * @param to   结束位置(不包含)
+     * @return 长整型数
+     */
+    public static long parseLong(String str, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        int pos = from;
+        boolean negative = false;
+        if (pos < to && (str.charAt(pos) == '-' || str.charAt(pos) == '+')) {
+            negative = str.charAt(pos) == '-';
+            pos++;
+        }
+        // 超过18位时可能溢出, 交给Long.parseLong处理
+        if (pos >= to || to - pos > 18) {
+            return Long.parseLong(str.substring(from, to));
+        }
+        long value = 0;
+        for (; pos < to; pos++) {
+            int digit = str.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + str.substring(from, to) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private static int indexOf(String str, char ch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (str.charAt(i) == ch) {
+                return i;
+            }
+        }
+        return to;
+    }
+}
@@ -0,0 +1,205 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * 内存中的32位图像
+ * <p>
+ * 每个像素一个int, 表示方式为(00RRGGBB), 与GetScreenData返回的BGRA字节按小端读取后的值一致, 最高字节的Alpha在创建时清零.
+ * 像素按从上到下、从左到右存放, 坐标以图像左上角为原点. 创建后不再修改, 可以在多个线程中同时读取.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class BgraImage {
+    private static final int RGB_MASK = 0xFFFFFF;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    private BgraImage(int width, int height, int[] pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * 用(00RRGGBB)格式的像素数组创建图像, 数组不复制
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @param pixels 像素, 长度不能小于width*height
+     * @return 图像
+     */
+    public static BgraImage wrap(int width, int height, int[] pixels) {
+        checkSize(width, height, pixels.length);
+        for (int i = 0, length = width * height; i < length; i++) {
+            pixels[i] &= RGB_MASK;
+        }
+        return new BgraImage(width, height, pixels);
+    }
+
+    /**
+     * 从GetScreenData格式的BGRA字节创建图像
+     *
+     * @param data   每个像素4个字节, 依次为B、G、R、A
+     * @param width  宽度
+     * @param height 高度
+     * @return 图像
+     */
+    public static BgraImage fromBgra(byte[] data, int width, int height) {
+        return fromBgra(ByteBuffer.wrap(data), width, height);
+    }
+
+    /**
+     * 从GetScreenData格式的BGRA字节创建图像, 从buffer的当前位置开始读取, 不改变buffer的位置
+     *
+     * @param buffer 每个像素4个字节, 依次为B、G、R、A
+     * @param width  宽度
+     * @param height 高度
+     * @return 图像
+     */
+    public static BgraImage fromBgra(ByteBuffer buffer, int width, int height) {
+        checkSize(width, height, buffer.remaining() / 4);
+        int[] pixels = new int[width * height];
+        IntBuffer ints = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        ints.get(pixels);
+        return wrap(width, height, pixels);
+    }
+
+    /**
+     * 从BufferedImage创建图像, 忽略透明度
+     *
+     * @param image 图像
+     * @return 图像
+     */
+    public static BgraImage of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        return wrap(width, height, pixels);
+    }
+
+    /**
+     * 读取BMP、PNG等ImageIO支持的图片文件
+     *
+     * @param file 图片文件
+     * @return 图像
+     */
+    public static BgraImage read(File file) {
+        try {
+            return of(checkRead(ImageIO.read(file), file));
+        } catch (IOException e) {
+            throw new RuntimeException("读取图片失败: " + file, e);
+        }
+    }
+
+    /**
+     * 读取BMP、PNG等ImageIO支持的图片数据, 不关闭输入流
+     *
+     * @param input 输入流
+     * @return 图像
+     */
+    public static BgraImage read(InputStream input) {
+        try {
+            return of(checkRead(ImageIO.read(input), input));
+        } catch (IOException e) {
+            throw new RuntimeException("读取图片失败", e);
+        }
+    }
+
+    /**
+     * 读取GetScreenDataBmp返回的24位位图数据(已拷贝到Java的字节数组中)
+     *
+     * @param bmp 位图数据, 包含文件头
+     * @return 图像
+     */
+    public static BgraImage readBmp(byte[] bmp) {
+        return read(new ByteArrayInputStream(bmp));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 获取像素颜色
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 颜色(00RRGGBB)
+     */
+    public int getRgb(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException(String.format("(%d,%d) out of %dx%d", x, y, width, height));
+        }
+        return pixels[y * width + x];
+    }
+
+    /**
+     * 截取区域内的图像
+     *
+     * @param rect 区域, 必须在图像范围内
+     * @return 新的图像
+     */
+    public BgraImage crop(Rect rect) {
+        if (rect.getX1() < 0 || rect.getY1() < 0 || rect.getX2() > width || rect.getY2() > height
+                || rect.getWidth() <= 0 || rect.getHeight() <= 0) {
+            throw new IndexOutOfBoundsException(rect + " out of " + width + "x" + height);
+        }
+        int[] cropped = new int[rect.getWidth() * rect.getHeight()];
+        for (int y = 0; y < rect.getHeight(); y++) {
+            System.arraycopy(pixels, (rect.getY1() + y) * width + rect.getX1(), cropped, y * rect.getWidth(), rect.getWidth());
+        }
+        return new BgraImage(rect.getWidth(), rect.getHeight(), cropped);
+    }
+
+    /**
+     * 转换为BufferedImage, 可用于保存为PNG查看
+     *
+     * @return BufferedImage
+     */
+    public BufferedImage toBufferedImage() {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    /**
+     * 像素数组, 不复制, 调用方不能修改
+     */
+    int[] pixels() {
+        return pixels;
+    }
+
+    private static BufferedImage checkRead(BufferedImage image, Object source) {
+        if (image == null) {
+            throw new RuntimeException("不支持的图片格式: " + source);
+        }
+        return image;
+    }
+
+    private static void checkSize(int width, int height, int available) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("图像尺寸不正确: " + width + "x" + height);
+        }
+        if ((long) width * height > available) {
+            throw new IllegalArgumentException("像素数据不足: " + width + "x" + height + ", 实际" + available + "个像素");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package cn.com.qjun.dmsoft.vision;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 截图内存的代次
+ * <p>
+ * 大漠GetScreenData返回的内存在下次截图时被释放或覆盖. 每次截图后调用{@link #invalidate()}进入新的代次,
+ * 之前代次的{@link Frame}随之失效, 再读取时抛出{@link IllegalStateException}, 而不是读到下一帧的数据或已释放的内存.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class CaptureGuard {
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 当前代次
+     *
+     * @return 代次
+     */
+    public long current() {
+        return generation.get();
+    }
+
+    /**
+     * 进入新的代次, 之前的截图全部失效
+     *
+     * @return 新的代次
+     */
+    public long invalidate() {
+        return generation.incrementAndGet();
+    }
+
+    /**
+     * 代次是否仍然有效
+     *
+     * @param generation 截图时的代次
+     * @return 是否有效
+     */
+    public boolean isCurrent(long generation) {
+        return this.generation.get() == generation;
+    }
+}
@@ -0,0 +1,157 @@
+package cn.com.qjun.dmsoft.vision;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 模板在{@link ImagePyramid}某一层上的粗匹配条件
+ * <p>
+ * 设缩小倍数为s=2^level. 模板左上角在原图(x,y)时, 金字塔中的格子(x/s+i, y/s+j)覆盖的是模板上以(i*s, j*s)为左上角、
+ * 向左上偏移不超过s-1的s*s区域, 因此一定落在以(i*s, j*s)为中心、边长2s-1的窗口内. 窗口全部是模板内的不透明像素时,
+ * 这个格子的平均颜色在窗口内各分量的最小值减色偏和最大值加色偏之间, 否则该格子内至少有一个像素不匹配.
+ * 不同格子的像素不重叠, 不满足条件的格子数超过允许不匹配的像素数时, 格子(x/s, y/s)对应的s*s个位置都不可能找到,
+ * 所以粗匹配只排除不可能的位置, 不会漏掉原图上能找到的位置.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+final class CoarseTemplate {
+    /**
+     * 至少需要的窗口数量, 太少时排除不了多少位置
+     */
+    private static final int MIN_WINDOWS = 4;
+    /**
+     * 3个分量的变化范围之和不超过这个值的窗口才算有区分度
+     */
+    private static final int SELECTIVE_RANGE = 96;
+
+    final int level;
+    /**
+     * 窗口对应的格子相对模板左上角格子的偏移
+     */
+    final int[] cellXs;
+    final int[] cellYs;
+    /**
+     * 窗口内各分量的最小值和最大值, 格式为(00RRGGBB)
+     */
+    final int[] minColors;
+    final int[] maxColors;
+    final int[] minGrays;
+    final int[] maxGrays;
+
+    private CoarseTemplate(int level, Window[] windows) {
+        this.level = level;
+        int count = windows.length;
+        this.cellXs = new int[count];
+        this.cellYs = new int[count];
+        this.minColors = new int[count];
+        this.maxColors = new int[count];
+        this.minGrays = new int[count];
+        this.maxGrays = new int[count];
+        for (int i = 0; i < count; i++) {
+            Window window = windows[i];
+            cellXs[i] = window.cellX;
+            cellYs[i] = window.cellY;
+            minColors[i] = window.minColor;
+            maxColors[i] = window.maxColor;
+            minGrays[i] = window.minGray;
+            maxGrays[i] = window.maxGray;
+        }
+    }
+
+    /**
+     * 为模板选择最高的、有足够区分度的层
+     *
+     * @param template 模板
+     * @return 粗匹配条件, 模板太小或颜色变化太大时返回null, 只能在原图上逐个位置匹配
+     */
+    static CoarseTemplate of(Template template) {
+        int[] grid = template.grid();
+        for (int level = ImagePyramid.MAX_LEVEL; level >= 1; level--) {
+            Window[] windows = windows(grid, template.getWidth(), template.getHeight(), level);
+            int selective = 0;
+            for (Window window : windows) {
+                if (window.range <= SELECTIVE_RANGE) {
+                    selective++;
+                }
+            }
+            if (selective >= MIN_WINDOWS) {
+                // 区分度高的窗口先比较, 不匹配时能尽早排除
+                Arrays.sort(windows, Comparator.comparingInt(window -> window.range));
+                return new CoarseTemplate(level, windows);
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return cellXs.length;
+    }
+
+    private static Window[] windows(int[] grid, int width, int height, int level) {
+        int scale = 1 << level;
+        int cellsX = width / scale;
+        int cellsY = height / scale;
+        if (cellsX < 2 || cellsY < 2) {
+            return new Window[0];
+        }
+        Window[] windows = new Window[(cellsX - 1) * (cellsY - 1)];
+        int count = 0;
+        for (int cellY = 1; cellY < cellsY; cellY++) {
+            for (int cellX = 1; cellX < cellsX; cellX++) {
+                Window window = window(grid, width, cellX * scale - scale + 1, cellY * scale - scale + 1, 2 * scale - 1);
+                if (window != null) {
+                    window.cellX = cellX;
+                    window.cellY = cellY;
+                    windows[count++] = window;
+                }
+            }
+        }
+        return Arrays.copyOf(windows, count);
+    }
+
+    /**
+     * 统计窗口内的颜色范围, 窗口内有透明像素时返回null
+     */
+    private static Window window(int[] grid, int width, int left, int top, int size) {
+        int minR = 255, minG = 255, minB = 255, maxR = 0, maxG = 0, maxB = 0;
+        int minGray = 255, maxGray = 0;
+        for (int y = top; y < top + size; y++) {
+            for (int x = left; x < left + size; x++) {
+                int color = grid[y * width + x];
+                if (color < 0) {
+                    return null;
+                }
+                int r = (color >> 16) & 0xFF;
+                int g = (color >> 8) & 0xFF;
+                int b = color & 0xFF;
+                int gray = ImagePyramid.gray(color);
+                minR = Math.min(minR, r);
+                maxR = Math.max(maxR, r);
+                minG = Math.min(minG, g);
+                maxG = Math.max(maxG, g);
+                minB = Math.min(minB, b);
+                maxB = Math.max(maxB, b);
+                minGray = Math.min(minGray, gray);
+                maxGray = Math.max(maxGray, gray);
+            }
+        }
+        Window window = new Window();
+        window.minColor = (minR << 16) | (minG << 8) | minB;
+        window.maxColor = (maxR << 16) | (maxG << 8) | maxB;
+        window.minGray = minGray;
+        window.maxGray = maxGray;
+        window.range = (maxR - minR) + (maxG - minG) + (maxB - minB);
+        return window;
+    }
+
+    private static final class Window {
+        private int cellX;
+        private int cellY;
+        private int minColor;
+        private int maxColor;
+        private int minGray;
+        private int maxGray;
+        private int range;
+    }
+}
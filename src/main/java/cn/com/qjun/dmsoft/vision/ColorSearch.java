@@ -0,0 +1,291 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+
+/**
+ * 纯Java实现的找色
+ * <p>
+ * 在GetScreenData截取的图像上执行与大漠FindColor、FindColorEx、GetColorNum、FindMulColor对应的查找.
+ * 颜色先用{@link ColorSpec#compile(String, double)}编译, 同一个颜色在每帧查找时重复使用.
+ * 按行扫描连续的像素数组, 每个像素的比较没有分支, 计数循环可以被JIT编译为向量指令.
+ * 坐标以图像左上角为原点, 查找区域包含左上边界, 不包含右下边界, 为null时查找整个图像.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class ColorSearch {
+    private static final int GUARDS = ColorSpec.GUARDS;
+
+    /**
+     * 统计区域内符合颜色的像素数量
+     *
+     * @param frame 截取的图像
+     * @param rect  区域
+     * @param spec  颜色
+     * @return 颜色数量
+     */
+    public static int getColorNum(BgraImage frame, Rect rect, ColorSpec spec) {
+        int[] pixels = frame.pixels();
+        int width = frame.getWidth();
+        int x1 = x1(frame, rect);
+        int x2 = x2(frame, rect);
+        if (x2 <= x1) {
+            return 0;
+        }
+        int count = 0;
+        for (int y = y1(frame, rect), y2 = y2(frame, rect); y < y2; y++) {
+            int rowStart = y * width;
+            count += countRow(pixels, rowStart + x1, rowStart + x2, spec);
+        }
+        return count;
+    }
+
+    /**
+     * 查找区域内的颜色
+     *
+     * @param frame 截取的图像
+     * @param rect  区域
+     * @param spec  颜色
+     * @param dir   查找方向
+     * @return 找到的坐标, 没有找到返回{@link Points#NOT_FOUND}
+     */
+    public static long findColor(BgraImage frame, Rect rect, ColorSpec spec, FindDirection dir) {
+        ScanOrder order = scanOrder(frame, rect, dir);
+        if (order == null) {
+            return Points.NOT_FOUND;
+        }
+        int[] pixels = frame.pixels();
+        int width = frame.getWidth();
+        if (order.center) {
+            return findNearest(pixels, width, order, spec);
+        }
+        for (int outer = 0; outer < order.outerCount; outer++) {
+            if (order.rowMajor) {
+                int y = order.yOf(outer, 0);
+                int rowStart = y * width;
+                int i = indexOfRow(pixels, rowStart + order.minX, rowStart + order.maxX + 1, spec, order.xAscending);
+                if (i >= 0) {
+                    return Points.pack(i - rowStart, y);
+                }
+            } else {
+                for (int inner = 0; inner < order.innerCount; inner++) {
+                    int x = order.xOf(outer, inner);
+                    int y = order.yOf(outer, inner);
+                    if (spec.matches(pixels[y * width + x])) {
+                        return Points.pack(x, y);
+                    }
+                }
+            }
+        }
+        return Points.NOT_FOUND;
+    }
+
+    /**
+     * 查找区域内的所有颜色, 按查找方向写入数组, 数组写满后停止查找
+     *
+     * @param frame  截取的图像
+     * @param rect   区域
+     * @param spec   颜色
+     * @param dir    查找方向, 从中心往外时按从左到右、从上到下的顺序
+     * @param points 接收坐标的数组, 坐标用{@link Points}表示
+     * @return 写入的坐标数量
+     */
+    public static int findColorEx(BgraImage frame, Rect rect, ColorSpec spec, FindDirection dir, long[] points) {
+        ScanOrder order = scanOrder(frame, rect, dir);
+        if (order == null) {
+            return 0;
+        }
+        int[] pixels = frame.pixels();
+        int width = frame.getWidth();
+        int count = 0;
+        for (int outer = 0; outer < order.outerCount && count < points.length; outer++) {
+            if (order.rowMajor && !spec.isInverted()) {
+                // 整行没有匹配时跳过
+                int y = order.yOf(outer, 0);
+                int rowStart = y * width;
+                if (!anyInRange(pixels, rowStart + order.minX, rowStart + order.maxX + 1, spec)) {
+                    continue;
+                }
+            }
+            for (int inner = 0; inner < order.innerCount && count < points.length; inner++) {
+                int x = order.xOf(outer, inner);
+                int y = order.yOf(outer, inner);
+                if (spec.matches(pixels[y * width + x])) {
+                    points[count++] = Points.pack(x, y);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 区域内是否包含颜色中的每一个颜色范围
+     *
+     * @param frame 截取的图像
+     * @param rect  区域
+     * @param spec  颜色, 反色模式时表示每一个颜色范围之外的颜色都存在
+     * @return 是否全部找到
+     */
+    public static boolean findMulColor(BgraImage frame, Rect rect, ColorSpec spec) {
+        int[] pixels = frame.pixels();
+        int width = frame.getWidth();
+        int x1 = x1(frame, rect);
+        int x2 = x2(frame, rect);
+        boolean[] found = new boolean[spec.size()];
+        int remaining = found.length;
+        for (int y = y1(frame, rect), y2 = y2(frame, rect); y < y2; y++) {
+            for (int i = y * width + x1, end = y * width + x2; i < end; i++) {
+                int s = ColorSpec.spread(pixels[i]);
+                for (int r = 0; r < found.length; r++) {
+                    if (!found[r] && ColorSpec.inRange(s, spec.low(r), spec.high(r)) != spec.isInverted()) {
+                        found[r] = true;
+                        if (--remaining == 0) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 统计[from, to)范围内匹配的像素数量. 一个或两个颜色范围、以及颜色范围两两不相交时, 循环体只有整数运算, 可以被JIT向量化;
+     * 其他情况逐个像素比较
+     */
+    private static int countRow(int[] pixels, int from, int to, ColorSpec spec) {
+        int count = 0;
+        int size = spec.size();
+        if (size == 1 || spec.isDisjoint()) {
+            for (int r = 0; r < size; r++) {
+                count += countRange(pixels, from, to, spec.low(r), spec.high(r) | GUARDS);
+            }
+        } else if (size == 2) {
+            int low0 = spec.low(0);
+            int high0 = spec.high(0) | GUARDS;
+            int low1 = spec.low(1);
+            int high1 = spec.high(1) | GUARDS;
+            for (int i = from; i < to; i++) {
+                int s = ColorSpec.spread(pixels[i]);
+                int g = s | GUARDS;
+                int m0 = (g - low0) & (high0 - s) & GUARDS;
+                int m1 = (g - low1) & (high1 - s) & GUARDS;
+                count += (((m0 ^ GUARDS) - 1) | ((m1 ^ GUARDS) - 1)) >>> 31;
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                int s = ColorSpec.spread(pixels[i]);
+                for (int r = 0; r < size; r++) {
+                    if (ColorSpec.inRange(s, spec.low(r), spec.high(r))) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+        }
+        return spec.isInverted() ? (to - from) - count : count;
+    }
+
+    private static int countRange(int[] pixels, int from, int to, int low, int high) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int s = ColorSpec.spread(pixels[i]);
+            int m = ((s | GUARDS) - low) & (high - s) & GUARDS;
+            count += ((m ^ GUARDS) - 1) >>> 31;
+        }
+        return count;
+    }
+
+    /**
+     * [from, to)范围内是否有像素在任意一个颜色范围内, 不考虑反色模式
+     */
+    static boolean anyInRange(int[] pixels, int from, int to, ColorSpec spec) {
+        int any = 0;
+        for (int r = 0; r < spec.size(); r++) {
+            int low = spec.low(r);
+            int high = spec.high(r) | GUARDS;
+            for (int i = from; i < to; i++) {
+                int s = ColorSpec.spread(pixels[i]);
+                int m = ((s | GUARDS) - low) & (high - s) & GUARDS;
+                any |= ((m ^ GUARDS) - 1) >>> 31;
+            }
+        }
+        return any != 0;
+    }
+
+    /**
+     * 在[from, to)范围内按方向查找第一个匹配的像素. 先用可以向量化的循环判断整行有没有匹配, 大多数行不需要逐个查找
+     */
+    private static int indexOfRow(int[] pixels, int from, int to, ColorSpec spec, boolean ascending) {
+        if (!spec.isInverted() && !anyInRange(pixels, from, to, spec)) {
+            return -1;
+        }
+        if (ascending) {
+            for (int i = from; i < to; i++) {
+                if (spec.matches(pixels[i])) {
+                    return i;
+                }
+            }
+        } else {
+            for (int i = to - 1; i >= from; i--) {
+                if (spec.matches(pixels[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static long findNearest(int[] pixels, int width, ScanOrder order, ColorSpec spec) {
+        long centerX = (order.minX + order.maxX + 1) / 2;
+        long centerY = (order.minY + order.maxY + 1) / 2;
+        long best = Points.NOT_FOUND;
+        long bestDistance = Long.MAX_VALUE;
+        for (int y = order.minY; y <= order.maxY; y++) {
+            long dy = y - centerY;
+            if (dy * dy >= bestDistance) {
+                if (y > centerY) {
+                    break;
+                }
+                continue;
+            }
+            for (int x = order.minX; x <= order.maxX; x++) {
+                if (spec.matches(pixels[y * width + x])) {
+                    long dx = x - centerX;
+                    long distance = dx * dx + dy * dy;
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = Points.pack(x, y);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static ScanOrder scanOrder(BgraImage frame, Rect rect, FindDirection dir) {
+        int x1 = x1(frame, rect);
+        int y1 = y1(frame, rect);
+        int x2 = x2(frame, rect);
+        int y2 = y2(frame, rect);
+        return x2 <= x1 || y2 <= y1 ? null : new ScanOrder(x1, x2 - 1, y1, y2 - 1, dir);
+    }
+
+    private static int x1(BgraImage frame, Rect rect) {
+        return rect == null ? 0 : Math.max(0, rect.getX1());
+    }
+
+    private static int y1(BgraImage frame, Rect rect) {
+        return rect == null ? 0 : Math.max(0, rect.getY1());
+    }
+
+    private static int x2(BgraImage frame, Rect rect) {
+        return rect == null ? frame.getWidth() : Math.min(frame.getWidth(), rect.getX2());
+    }
+
+    private static int y2(BgraImage frame, Rect rect) {
+        return rect == null ? frame.getHeight() : Math.min(frame.getHeight(), rect.getY2());
+    }
+}
@@ -0,0 +1,187 @@
+package cn.com.qjun.dmsoft.vision;
+
+/**
+ * 编译后的大漠颜色格式
+ * <p>
+ * 把"RRGGBB-DRDGDB|RRGGBB-DRDGDB"编译为每个颜色分量的上下界. 为了一次比较3个分量, 上下界和像素都展开为
+ * 每个分量占10位的int(B在0-9位, G在10-19位, R在20-29位), 每个分量的第9位作为借位保护位:
+ * (像素|保护位)-下界 后保护位仍在, 说明该分量不小于下界; (上界|保护位)-像素 同理. 比较一个颜色范围只需要十几次整数运算, 没有分支.
+ * <p>
+ * 相似度小于1时, 每个分量的偏差再放宽(1-sim)*255. 前面加@表示反色模式, 匹配所有颜色范围之外的颜色.
+ * 对象创建后不再修改, 可以在多个线程中同时使用.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class ColorSpec {
+    static final int GUARDS = (1 << 8) | (1 << 18) | (1 << 28);
+
+    private final String color;
+    private final boolean inverted;
+    private final int[] lows;
+    private final int[] highs;
+    private final boolean disjoint;
+
+    private ColorSpec(String color, boolean inverted, int[] lows, int[] highs, boolean disjoint) {
+        this.color = color;
+        this.inverted = inverted;
+        this.lows = lows;
+        this.highs = highs;
+        this.disjoint = disjoint;
+    }
+
+    /**
+     * 编译颜色格式
+     *
+     * @param color 颜色 格式为"RRGGBB-DRDGDB",比如"123456-000000|aabbcc-202020", 偏色可以省略. 前面加@表示反色模式
+     * @param sim   相似度,取值范围0.1-1.0
+     * @return 编译后的颜色
+     */
+    public static ColorSpec compile(String color, double sim) {
+        if (!(sim > 0D && sim <= 1D)) {
+            throw new IllegalArgumentException("相似度取值范围0.1-1.0: " + sim);
+        }
+        if (color == null || color.isEmpty()) {
+            throw new IllegalArgumentException("颜色不能为空");
+        }
+        boolean inverted = color.charAt(0) == '@';
+        String[] items = (inverted ? color.substring(1) : color).split("\\|");
+        int extra = (int) Math.round((1D - sim) * 255D);
+        int[] lows = new int[items.length];
+        int[] highs = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            String item = items[i].trim();
+            int dash = item.indexOf('-');
+            int rgb = parseRgb(color, dash < 0 ? item : item.substring(0, dash));
+            int delta = dash < 0 ? 0 : parseRgb(color, item.substring(dash + 1));
+            int low = 0;
+            int high = 0;
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int value = (rgb >> shift) & 0xFF;
+                int range = ((delta >> shift) & 0xFF) + extra;
+                low |= Math.max(0, value - range) << shift;
+                high |= Math.min(0xFF, value + range) << shift;
+            }
+            lows[i] = low;
+            highs[i] = high;
+        }
+        boolean disjoint = true;
+        for (int i = 0; i < items.length && disjoint; i++) {
+            for (int j = i + 1; j < items.length && disjoint; j++) {
+                disjoint = isDisjoint(lows[i], highs[i], lows[j], highs[j]);
+            }
+        }
+        for (int i = 0; i < items.length; i++) {
+            lows[i] = spread(lows[i]);
+            highs[i] = spread(highs[i]);
+        }
+        return new ColorSpec(color, inverted, lows, highs, disjoint);
+    }
+
+    /**
+     * 颜色范围的数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return lows.length;
+    }
+
+    public boolean isInverted() {
+        return inverted;
+    }
+
+    /**
+     * 颜色是否匹配
+     *
+     * @param rgb 颜色(00RRGGBB)
+     * @return 是否匹配
+     */
+    public boolean matches(int rgb) {
+        int s = spread(rgb);
+        for (int i = 0; i < lows.length; i++) {
+            if (inRange(s, lows[i], highs[i])) {
+                return !inverted;
+            }
+        }
+        return inverted;
+    }
+
+    /**
+     * 颜色是否在第index个颜色范围内, 不考虑反色模式
+     *
+     * @param rgb   颜色(00RRGGBB)
+     * @param index 颜色范围序号
+     * @return 是否在范围内
+     */
+    public boolean matches(int rgb, int index) {
+        return inRange(spread(rgb), lows[index], highs[index]);
+    }
+
+    /**
+     * 各个颜色范围是否两两不相交, 不相交时匹配任意一个范围的像素数量等于匹配每个范围的像素数量之和
+     */
+    boolean isDisjoint() {
+        return disjoint;
+    }
+
+    /**
+     * 匹配的颜色占整个RGB空间的比例, 颜色范围相交时偏大. 用于估计一个颜色的区分度, 比例越小越少见
+     */
+    double coverage() {
+        double sum = 0D;
+        for (int i = 0; i < lows.length; i++) {
+            double volume = 1D;
+            for (int shift = 0; shift <= 20; shift += 10) {
+                volume *= (((highs[i] >> shift) & 0xFF) - ((lows[i] >> shift) & 0xFF) + 1) / 256D;
+            }
+            sum += volume;
+        }
+        sum = Math.min(1D, sum);
+        return inverted ? 1D - sum : sum;
+    }
+
+    int low(int index) {
+        return lows[index];
+    }
+
+    int high(int index) {
+        return highs[index];
+    }
+
+    /**
+     * 把(00RRGGBB)展开为每个分量10位
+     */
+    static int spread(int rgb) {
+        return (rgb & 0xFF) | ((rgb & 0xFF00) << 2) | ((rgb & 0xFF0000) << 4);
+    }
+
+    static boolean inRange(int spread, int low, int high) {
+        return (((spread | GUARDS) - low) & ((high | GUARDS) - spread) & GUARDS) == GUARDS;
+    }
+
+    @Override
+    public String toString() {
+        return color;
+    }
+
+    private static boolean isDisjoint(int low1, int high1, int low2, int high2) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            if (((high1 >> shift) & 0xFF) < ((low2 >> shift) & 0xFF) || ((high2 >> shift) & 0xFF) < ((low1 >> shift) & 0xFF)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int parseRgb(String color, String hex) {
+        if (hex.length() != 6) {
+            throw new IllegalArgumentException("颜色格式不正确: " + color);
+        }
+        try {
+            return Integer.parseInt(hex, 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("颜色格式不正确: " + color, e);
+        }
+    }
+}
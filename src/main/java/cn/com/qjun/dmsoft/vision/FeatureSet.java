@@ -0,0 +1,304 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 一组画面特征, 对同一帧一次性判断
+ * <p>
+ * 每个特征由查找区域和颜色、多点颜色或图片组成, 例如消息按钮、红蓝条上的龙、攻击按钮. 特征集合的区域是包含所有查找区域的最小矩形,
+ * 只需要截取一次(参考{@code ColourOperations#evaluate}), 然后在这一帧上判断所有特征, 结果用位掩码和坐标数组表示.
+ * 查找区域分散在窗口两端时这个矩形会包含大量不需要的像素, 这种情况应拆成多个特征集合.
+ * 每帧判断时可以用{@link #evaluate(Frame, int[])}重复使用同一个像素数组, 避免每次复制帧都分配新数组.
+ * 一个特征集合最多64个特征. 查找方向都是从左到右、从上到下.
+ * <p>
+ * 区域和结果坐标都使用截图时的坐标(例如绑定窗口的客户区坐标). 对象创建后不再修改, 可以在多个线程中同时使用.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class FeatureSet {
+    /**
+     * 最多包含的特征数量
+     */
+    public static final int MAX_FEATURES = 64;
+    private static final FindDirection DIRECTION = FindDirection.L_TO_R_AND_T_TO_B;
+
+    private final List<Feature> features;
+    private final Map<String, Integer> indexes;
+    private final Rect region;
+
+    private FeatureSet(List<Feature> features) {
+        this.features = features;
+        this.indexes = new HashMap<>(features.size() * 2);
+        int x1 = Integer.MAX_VALUE;
+        int y1 = Integer.MAX_VALUE;
+        int x2 = Integer.MIN_VALUE;
+        int y2 = Integer.MIN_VALUE;
+        for (int i = 0; i < features.size(); i++) {
+            Feature feature = features.get(i);
+            if (indexes.put(feature.name, i) != null) {
+                throw new IllegalArgumentException("特征名称重复: " + feature.name);
+            }
+            x1 = Math.min(x1, feature.area.getX1());
+            y1 = Math.min(y1, feature.area.getY1());
+            x2 = Math.max(x2, feature.area.getX2());
+            y2 = Math.max(y2, feature.area.getY2());
+        }
+        this.region = Rect.of(x1, y1, x2, y2);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 包含所有查找区域的最小矩形(不是并集, 查找区域之间的像素也在内), 即需要截取的区域
+     *
+     * @return 区域
+     */
+    public Rect getRegion() {
+        return region;
+    }
+
+    public int size() {
+        return features.size();
+    }
+
+    /**
+     * 特征的序号, 即在位掩码中的位置
+     *
+     * @param name 特征名称
+     * @return 序号
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("没有特征: " + name);
+        }
+        return index;
+    }
+
+    /**
+     * 在截取的帧上依次判断所有特征
+     *
+     * @param frame 截取的帧, 区域应包含{@link #getRegion()}
+     * @return 判断结果
+     */
+    public Result evaluate(Frame frame) {
+        return evaluate(frame, new int[frame.getWidth() * frame.getHeight()]);
+    }
+
+    /**
+     * 在截取的帧上依次判断所有特征, 帧复制到调用方提供的数组中, 用于每帧重复使用同一个数组
+     *
+     * @param frame  截取的帧, 区域应包含{@link #getRegion()}
+     * @param pixels 接收像素的数组, 长度不能小于帧的宽乘高. 返回后可以用于下一帧
+     * @return 判断结果
+     */
+    public Result evaluate(Frame frame, int[] pixels) {
+        return evaluate(frame.toImage(pixels), frame.getRect(), false);
+    }
+
+    /**
+     * 在截取的帧上并行判断所有特征, 在{@link java.util.concurrent.ForkJoinPool#commonPool()}中执行
+     *
+     * @param frame 截取的帧, 区域应包含{@link #getRegion()}
+     * @return 判断结果
+     */
+    public Result evaluateParallel(Frame frame) {
+        return evaluateParallel(frame, new int[frame.getWidth() * frame.getHeight()]);
+    }
+
+    /**
+     * 在截取的帧上并行判断所有特征, 帧复制到调用方提供的数组中, 用于每帧重复使用同一个数组
+     *
+     * @param frame  截取的帧, 区域应包含{@link #getRegion()}
+     * @param pixels 接收像素的数组, 长度不能小于帧的宽乘高. 返回后可以用于下一帧
+     * @return 判断结果
+     */
+    public Result evaluateParallel(Frame frame, int[] pixels) {
+        return evaluate(frame.toImage(pixels), frame.getRect(), true);
+    }
+
+    /**
+     * 在图像上判断所有特征
+     *
+     * @param image     图像
+     * @param imageRect 图像所在的区域, 用于换算坐标
+     * @param parallel  是否并行判断
+     * @return 判断结果
+     */
+    public Result evaluate(BgraImage image, Rect imageRect, boolean parallel) {
+        long[] points = new long[features.size()];
+        IntStream range = IntStream.range(0, features.size());
+        (parallel ? range.parallel() : range).forEach(i -> {
+            Feature feature = features.get(i);
+            Rect area = feature.area;
+            int ox = imageRect.getX1();
+            int oy = imageRect.getY1();
+            long point = feature.find(image, Rect.of(area.getX1() - ox, area.getY1() - oy, area.getX2() - ox, area.getY2() - oy));
+            points[i] = point == Points.NOT_FOUND ? Points.NOT_FOUND : Points.pack(Points.x(point) + ox, Points.y(point) + oy);
+        });
+        long mask = 0L;
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] != Points.NOT_FOUND) {
+                mask |= 1L << i;
+            }
+        }
+        return new Result(this, mask, points);
+    }
+
+    /**
+     * 判断结果
+     */
+    public static final class Result {
+        private final FeatureSet featureSet;
+        private final long mask;
+        private final long[] points;
+
+        private Result(FeatureSet featureSet, long mask, long[] points) {
+            this.featureSet = featureSet;
+            this.mask = mask;
+            this.points = points;
+        }
+
+        /**
+         * 位掩码, 第i位为1表示第i个特征存在
+         *
+         * @return 位掩码
+         */
+        public long getMask() {
+            return mask;
+        }
+
+        public boolean isMatched(int index) {
+            return (mask & (1L << index)) != 0;
+        }
+
+        public boolean isMatched(String name) {
+            return isMatched(featureSet.indexOf(name));
+        }
+
+        /**
+         * 特征找到的坐标
+         *
+         * @param index 特征序号
+         * @return 坐标, 没有找到返回{@link Points#NOT_FOUND}
+         */
+        public long getPoint(int index) {
+            return points[index];
+        }
+
+        public long getPoint(String name) {
+            return getPoint(featureSet.indexOf(name));
+        }
+    }
+
+    public static final class Builder {
+        private final List<Feature> features = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 区域内有符合颜色的像素, 坐标为第一个像素
+         *
+         * @param name  特征名称
+         * @param area  查找区域
+         * @param color 颜色
+         * @return 本对象
+         */
+        public Builder color(String name, Rect area, ColorSpec color) {
+            return add(new Feature(name, area) {
+                @Override
+                long find(BgraImage image, Rect rect) {
+                    return ColorSearch.findColor(image, rect, color, DIRECTION);
+                }
+            });
+        }
+
+        /**
+         * 区域内有符合的多点颜色, 坐标为第一个颜色所在的位置
+         *
+         * @param name    特征名称
+         * @param area    查找区域
+         * @param pattern 多点颜色
+         * @return 本对象
+         */
+        public Builder multiColor(String name, Rect area, MultiColorPattern pattern) {
+            return add(new Feature(name, area) {
+                @Override
+                long find(BgraImage image, Rect rect) {
+                    return pattern.find(image, rect, DIRECTION);
+                }
+            });
+        }
+
+        /**
+         * 区域内有任意一张图片, 坐标为图片左上角
+         *
+         * @param name       特征名称
+         * @param area       查找区域
+         * @param matcher    图片
+         * @param deltaColor 颜色色偏, 格式与{@link TemplateMatcher}相同
+         * @param sim        相似度,取值范围0.1-1.0
+         * @return 本对象
+         */
+        public Builder picture(String name, Rect area, TemplateMatcher matcher, String deltaColor, double sim) {
+            return add(new Feature(name, area) {
+                @Override
+                long find(BgraImage image, Rect rect) {
+                    int[] point = new int[2];
+                    return matcher.findPic(image, rect, deltaColor, sim, DIRECTION, point) < 0
+                            ? Points.NOT_FOUND : Points.pack(point[0], point[1]);
+                }
+            });
+        }
+
+        public FeatureSet build() {
+            if (features.isEmpty()) {
+                throw new IllegalStateException("特征集合不能为空");
+            }
+            return new FeatureSet(Collections.unmodifiableList(new ArrayList<>(features)));
+        }
+
+        private Builder add(Feature feature) {
+            if (features.size() == MAX_FEATURES) {
+                throw new IllegalStateException("特征数量不能超过" + MAX_FEATURES);
+            }
+            features.add(feature);
+            return this;
+        }
+    }
+
+    /**
+     * 一个特征
+     */
+    private abstract static class Feature {
+        private final String name;
+        private final Rect area;
+
+        private Feature(String name, Rect area) {
+            this.name = name;
+            this.area = area;
+        }
+
+        /**
+         * 在图像上查找
+         *
+         * @param image 图像
+         * @param rect  相对图像的查找区域
+         * @return 相对图像的坐标, 没有找到返回{@link Points#NOT_FOUND}
+         */
+        abstract long find(BgraImage image, Rect rect);
+    }
+}
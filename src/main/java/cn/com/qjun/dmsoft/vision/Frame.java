@@ -0,0 +1,263 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+import com.sun.jna.Pointer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * GetScreenData截取的一帧图像, 直接读取大漠的截图内存, 不复制
+ * <p>
+ * 每个像素4个字节, 依次为B、G、R、A, 按小端读取为int时为(00RRGGBB). 像素按从上到下、从左到右存放, 每行stride个字节.
+ * 坐标以截图区域左上角为原点, 截图区域在屏幕(窗口)上的位置见{@link #getRect()}.
+ * <p>
+ * 截图内存在同一个大漠对象下次截图时失效. 每次读取前后都会检查{@link CaptureGuard}的代次, 失效后读取抛出{@link IllegalStateException}.
+ * 代次检查只能发现读取前已经发生的截图, 不能阻止读取过程中另一个线程截图释放内存, 那样会读到已释放的内存甚至使JVM崩溃.
+ * 因此帧只能在截图的大漠对象被独占期间读取(参考{@code ColourOperations#withFrame}), 不能在多个线程之间共享.
+ * 需要跨越下次截图或交给其他线程处理时, 用{@link #toImage()}复制到Java堆上, 或用{@link #copyTo(FrameBufferPool)}复制到堆外缓冲区.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class Frame {
+    public static final int BYTES_PER_PIXEL = 4;
+
+    private final ByteBuffer buffer;
+    private final Rect rect;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final CaptureGuard guard;
+    private final long generation;
+
+    private Frame(ByteBuffer buffer, Rect rect, int stride, CaptureGuard guard, long generation) {
+        this.buffer = buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        this.rect = rect;
+        this.width = rect.getWidth();
+        this.height = rect.getHeight();
+        this.stride = stride;
+        this.guard = guard;
+        this.generation = generation;
+    }
+
+    /**
+     * 包装大漠返回的截图内存, 以guard的当前代次作为本帧的代次
+     *
+     * @param pointer 截图内存地址
+     * @param rect    截图区域
+     * @param guard   截图内存的代次
+     * @return 帧
+     */
+    public static Frame wrap(Pointer pointer, Rect rect, CaptureGuard guard) {
+        return wrap(pointer, rect, guard, guard.current());
+    }
+
+    /**
+     * 包装大漠返回的截图内存
+     *
+     * @param pointer    截图内存地址
+     * @param rect       截图区域
+     * @param guard      截图内存的代次
+     * @param generation 截图前{@link CaptureGuard#invalidate()}返回的代次. 截图后再读取当前代次,
+     *                   可能读到其他线程随后截图的代次, 使本帧在内存失效后仍被认为有效
+     * @return 帧
+     */
+    public static Frame wrap(Pointer pointer, Rect rect, CaptureGuard guard, long generation) {
+        checkRect(rect);
+        long size = (long) rect.getWidth() * rect.getHeight() * BYTES_PER_PIXEL;
+        return new Frame(pointer.getByteBuffer(0, size), rect, rect.getWidth() * BYTES_PER_PIXEL, guard, generation);
+    }
+
+    /**
+     * 包装BGRA格式的像素数据, 从buffer的当前位置开始, 以guard的当前代次作为本帧的代次
+     *
+     * @param buffer 像素数据
+     * @param rect   截图区域
+     * @param guard  截图内存的代次
+     * @return 帧
+     */
+    public static Frame wrap(ByteBuffer buffer, Rect rect, CaptureGuard guard) {
+        checkRect(rect);
+        if (buffer.remaining() / BYTES_PER_PIXEL < (long) rect.getWidth() * rect.getHeight()) {
+            throw new IllegalArgumentException("像素数据不足: " + rect + ", 实际" + buffer.remaining() + "字节");
+        }
+        return new Frame(buffer.slice(), rect, rect.getWidth() * BYTES_PER_PIXEL, guard, guard.current());
+    }
+
+    public Rect getRect() {
+        return rect;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 每行的字节数
+     *
+     * @return 字节数
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 截图内存是否仍然有效
+     *
+     * @return 是否有效
+     */
+    public boolean isValid() {
+        return guard.isCurrent(generation);
+    }
+
+    /**
+     * 获取像素颜色
+     *
+     * @param x 相对截图区域左上角的X坐标
+     * @param y 相对截图区域左上角的Y坐标
+     * @return 颜色(00RRGGBB)
+     */
+    public int getRgb(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException(String.format("(%d,%d) out of %dx%d", x, y, width, height));
+        }
+        checkValid();
+        int rgb = buffer.getInt(y * stride + x * BYTES_PER_PIXEL);
+        checkValid();
+        return rgb & 0xFFFFFF;
+    }
+
+    /**
+     * 读取一行像素
+     *
+     * @param y      相对截图区域左上角的Y坐标
+     * @param pixels 接收像素的数组, 颜色为(00RRGGBB)
+     * @param offset 写入数组的起始位置
+     */
+    public void readRow(int y, int[] pixels, int offset) {
+        if (y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("row " + y + " out of " + height);
+        }
+        checkValid();
+        ints(y * stride).get(pixels, offset, width);
+        checkValid();
+        for (int i = offset, end = offset + width; i < end; i++) {
+            pixels[i] &= 0xFFFFFF;
+        }
+    }
+
+    /**
+     * 按行计算所有像素(00RRGGBB)的{@link XxHash64}, 相同内容的帧得到相同的值, 与截图位置无关
+     *
+     * @return 哈希值
+     */
+    public long contentHash() {
+        XxHash64 hasher = new XxHash64();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            readRow(y, row, 0);
+            hasher.update(row, 0, width);
+        }
+        return hasher.digest();
+    }
+
+    /**
+     * 只读的像素数据视图, 字节序为小端. 视图本身不检查代次, 只能在下次截图前使用
+     *
+     * @return 像素数据
+     */
+    public ByteBuffer asByteBuffer() {
+        checkValid();
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 复制为{@link BgraImage}, 复制后不再受下次截图影响
+     *
+     * @return 图像
+     */
+    public BgraImage toImage() {
+        return toImage(new int[width * height]);
+    }
+
+    /**
+     * 复制到调用方提供的数组中并包装为{@link BgraImage}, 用于每帧重复使用同一个数组
+     *
+     * @param pixels 接收像素的数组, 长度不能小于width*height
+     * @return 图像, 与pixels共用数据
+     */
+    public BgraImage toImage(int[] pixels) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("数组长度不足: " + pixels.length + " < " + width * height);
+        }
+        checkValid();
+        if (stride == width * BYTES_PER_PIXEL) {
+            ints(0).get(pixels, 0, width * height);
+        } else {
+            for (int y = 0; y < height; y++) {
+                ints(y * stride).get(pixels, y * width, width);
+            }
+        }
+        checkValid();
+        return BgraImage.wrap(width, height, pixels);
+    }
+
+    /**
+     * 复制到从缓冲池租用的堆外缓冲区, 用于跨越下次截图或交给其他线程处理, 不在Java堆上分配
+     *
+     * @param pool 缓冲池
+     * @return 存放本帧BGRA数据的缓冲区, 用完后需要归还
+     */
+    public FrameBuffer copyTo(FrameBufferPool pool) {
+        int rowBytes = width * BYTES_PER_PIXEL;
+        FrameBuffer target = pool.lease(rowBytes * height);
+        try {
+            ByteBuffer dst = target.getBuffer();
+            checkValid();
+            for (int y = 0; y < height; y++) {
+                ByteBuffer src = buffer.duplicate();
+                src.position(y * stride);
+                src.limit(y * stride + (stride == rowBytes ? rowBytes * (height - y) : rowBytes));
+                dst.put(src);
+                if (stride == rowBytes) {
+                    break;
+                }
+            }
+            checkValid();
+            dst.flip();
+            target.setRect(rect);
+            return target;
+        } catch (RuntimeException e) {
+            target.release();
+            throw e;
+        }
+    }
+
+    private IntBuffer ints(int position) {
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.position(position);
+        return view.asIntBuffer();
+    }
+
+    private void checkValid() {
+        if (!guard.isCurrent(generation)) {
+            throw new IllegalStateException("截图内存已失效, 帧" + rect + "之后又进行了截图");
+        }
+    }
+
+    private static void checkRect(Rect rect) {
+        if (rect.getWidth() <= 0 || rect.getHeight() <= 0) {
+            throw new IllegalArgumentException("截图区域不正确: " + rect);
+        }
+    }
+}
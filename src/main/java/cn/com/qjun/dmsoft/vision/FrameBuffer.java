@@ -0,0 +1,121 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+
+/**
+ * 从{@link FrameBufferPool}租用的堆外缓冲区
+ * <p>
+ * 用完后必须调用{@link #release()}(或在try-with-resources中使用)归还给缓冲池, 归还后不能再使用.
+ * 没有归还就被回收的缓冲区由缓冲池检测到后收回, 并记为一次泄漏. 非线程安全, 同一时间只应由一个线程使用.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class FrameBuffer implements AutoCloseable {
+    private final FrameBufferPool pool;
+    private final ByteBuffer buffer;
+    private final FrameBufferPool.LeaseReference reference;
+    private Rect rect;
+    private Frame frame;
+    private boolean released;
+
+    FrameBuffer(FrameBufferPool pool, ByteBuffer buffer, ReferenceQueue<FrameBuffer> leakQueue) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.reference = new FrameBufferPool.LeaseReference(this, buffer, leakQueue);
+    }
+
+    /**
+     * 缓冲区, 字节序为小端, position为0, limit为租用时请求的大小. 归还后不能再使用
+     *
+     * @return 缓冲区
+     */
+    public ByteBuffer getBuffer() {
+        checkNotReleased();
+        return buffer;
+    }
+
+    /**
+     * 租用时请求的大小
+     *
+     * @return 字节数
+     */
+    public int getSize() {
+        return buffer.limit();
+    }
+
+    /**
+     * 实际占用的大小, 即所在规格的容量
+     *
+     * @return 字节数
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 缓冲区中的帧对应的截图区域
+     *
+     * @return 截图区域, 没有存放帧时返回null
+     */
+    public Rect getRect() {
+        return rect;
+    }
+
+    /**
+     * 把缓冲区中的BGRA数据作为帧读取, 归还后帧随之失效
+     *
+     * @return 帧
+     */
+    public Frame getFrame() {
+        checkNotReleased();
+        if (rect == null) {
+            throw new IllegalStateException("缓冲区中没有帧");
+        }
+        if (frame == null) {
+            frame = Frame.wrap(buffer.duplicate(), rect, reference.guard);
+        }
+        return frame;
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * 归还给缓冲池, 重复归还时什么也不做
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        pool.giveBack(reference);
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    FrameBufferPool.LeaseReference reference() {
+        return reference;
+    }
+
+    /**
+     * 记录缓冲区中存放的帧的区域
+     */
+    void setRect(Rect rect) {
+        this.rect = rect;
+        this.frame = null;
+    }
+
+    private void checkNotReleased() {
+        if (released) {
+            throw new IllegalStateException("缓冲区已归还");
+        }
+    }
+}
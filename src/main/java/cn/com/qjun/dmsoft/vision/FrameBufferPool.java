@@ -0,0 +1,248 @@
+package cn.com.qjun.dmsoft.vision;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按规格复用的堆外缓冲池
+ * <p>
+ * 把截图从大漠内存复制出来做异步处理时, 从缓冲池租用{@link FrameBuffer}, 用完归还, 不在Java堆上分配大数组.
+ * 请求的大小向上取整到规格: 每个2的幂区间均分为4个规格, 例如1920x1080的帧(约7.9MB)使用8MB的规格, 9MB时使用10MB的规格, 浪费不超过1/4.
+ * <p>
+ * 缓冲池中所有缓冲区(租出的和空闲的)的总容量不超过上限. 需要新建缓冲区而超过上限时, 先释放其他规格的空闲缓冲区,
+ * 仍然不够时{@link #tryLease(int)}返回null, {@link #lease(int)}抛出异常, {@link #lease(int, long, TimeUnit)}等待归还.
+ * <p>
+ * 没有归还就被回收的{@link FrameBuffer}通过虚引用检测, 其缓冲区在下次租用或归还时收回, 次数通过{@link #getLeakCount()}获取.
+ * 释放的空闲缓冲区由GC回收其堆外内存, 因此-XX:MaxDirectMemorySize应留出余量. 线程安全.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FrameBufferPool {
+    /**
+     * 最小规格
+     */
+    public static final int MIN_CAPACITY = 64 * 1024;
+    /**
+     * 最大规格
+     */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private final long maxBytes;
+    private final TreeMap<Integer, ArrayDeque<ByteBuffer>> idle = new TreeMap<>();
+    private final Set<LeaseReference> leased = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ReferenceQueue<FrameBuffer> leakQueue = new ReferenceQueue<>();
+    private long allocatedBytes;
+    private long leasedBytes;
+    private long leakCount;
+
+    /**
+     * 创建缓冲池
+     *
+     * @param maxBytes 所有缓冲区总容量的上限
+     */
+    public FrameBufferPool(long maxBytes) {
+        if (maxBytes < MIN_CAPACITY) {
+            throw new IllegalArgumentException("内存上限不能小于" + MIN_CAPACITY + ": " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 租用缓冲区, 超过内存上限时抛出异常
+     *
+     * @param size 需要的字节数
+     * @return 缓冲区
+     */
+    public FrameBuffer lease(int size) {
+        FrameBuffer buffer = tryLease(size);
+        if (buffer == null) {
+            throw new IllegalStateException("超过缓冲池内存上限" + maxBytes + ", 已租出" + getLeasedBytes() + "字节, 需要" + size + "字节");
+        }
+        return buffer;
+    }
+
+    /**
+     * 租用缓冲区, 超过内存上限时等待其他缓冲区归还
+     *
+     * @param size    需要的字节数
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 缓冲区, 超时返回null
+     * @throws InterruptedException 等待时被中断
+     */
+    public synchronized FrameBuffer lease(int size, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        FrameBuffer buffer;
+        while ((buffer = tryLease(size)) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return buffer;
+    }
+
+    /**
+     * 租用缓冲区
+     *
+     * @param size 需要的字节数
+     * @return 缓冲区, 超过内存上限时返回null
+     */
+    public synchronized FrameBuffer tryLease(int size) {
+        int capacity = capacityOf(size);
+        if (capacity > maxBytes) {
+            throw new IllegalArgumentException("请求的大小超过缓冲池内存上限: " + size);
+        }
+        drainLeaks();
+        ByteBuffer buffer = poll(capacity);
+        if (buffer == null) {
+            if (!reserve(capacity)) {
+                return null;
+            }
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        leasedBytes += capacity;
+        FrameBuffer frameBuffer = new FrameBuffer(this, buffer, leakQueue);
+        leased.add(frameBuffer.reference());
+        return frameBuffer;
+    }
+
+    /**
+     * 释放所有空闲的缓冲区
+     */
+    public synchronized void trim() {
+        drainLeaks();
+        idle.forEach((capacity, buffers) -> allocatedBytes -= (long) capacity * buffers.size());
+        idle.clear();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 所有缓冲区(租出的和空闲的)的总容量
+     *
+     * @return 字节数
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * 租出的缓冲区的总容量
+     *
+     * @return 字节数
+     */
+    public synchronized long getLeasedBytes() {
+        return leasedBytes;
+    }
+
+    /**
+     * 检测到的没有归还就被回收的缓冲区数量
+     *
+     * @return 泄漏次数
+     */
+    public synchronized long getLeakCount() {
+        drainLeaks();
+        return leakCount;
+    }
+
+    /**
+     * 请求的大小对应的规格容量
+     *
+     * @param size 字节数
+     * @return 规格容量
+     */
+    public static int capacityOf(int size) {
+        if (size <= 0 || size > MAX_CAPACITY) {
+            throw new IllegalArgumentException("缓冲区大小不正确: " + size);
+        }
+        if (size <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        int step = Integer.highestOneBit(size - 1) >> 2;
+        return (int) (((long) size + step - 1) / step * step);
+    }
+
+    synchronized void giveBack(LeaseReference reference) {
+        if (!leased.remove(reference)) {
+            return;
+        }
+        reference.clear();
+        recycle(reference);
+        drainLeaks();
+    }
+
+    private void recycle(LeaseReference reference) {
+        reference.guard.invalidate();
+        ByteBuffer buffer = reference.buffer;
+        leasedBytes -= buffer.capacity();
+        idle.computeIfAbsent(buffer.capacity(), key -> new ArrayDeque<>()).push(buffer);
+        notifyAll();
+    }
+
+    private ByteBuffer poll(int capacity) {
+        ArrayDeque<ByteBuffer> buffers = idle.get(capacity);
+        return buffers == null ? null : buffers.poll();
+    }
+
+    /**
+     * 为新的缓冲区预留容量, 超过上限时先释放其他规格的空闲缓冲区, 从最大的规格开始
+     */
+    private boolean reserve(int capacity) {
+        while (allocatedBytes + capacity > maxBytes) {
+            Map.Entry<Integer, ArrayDeque<ByteBuffer>> largest = idle.lastEntry();
+            if (largest == null) {
+                return false;
+            }
+            largest.getValue().poll();
+            allocatedBytes -= largest.getKey();
+            if (largest.getValue().isEmpty()) {
+                idle.remove(largest.getKey());
+            }
+        }
+        allocatedBytes += capacity;
+        return true;
+    }
+
+    private void drainLeaks() {
+        LeaseReference reference;
+        while ((reference = (LeaseReference) leakQueue.poll()) != null) {
+            if (leased.remove(reference)) {
+                leakCount++;
+                recycle(reference);
+            }
+        }
+    }
+
+    /**
+     * 租出的缓冲区的虚引用, FrameBuffer被回收后通过它收回缓冲区
+     */
+    static final class LeaseReference extends PhantomReference<FrameBuffer> {
+        private final ByteBuffer buffer;
+        /**
+         * 缓冲区中的帧的代次, 缓冲区收回时失效
+         */
+        final CaptureGuard guard = new CaptureGuard();
+
+        LeaseReference(FrameBuffer referent, ByteBuffer buffer, ReferenceQueue<? super FrameBuffer> queue) {
+            super(referent, queue);
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按图块检测画面变化
+ * <p>
+ * 把跟踪区域按tileSize x tileSize分成图块, 每次截图后用{@link XxHash64}计算每个图块的哈希并与上次比较.
+ * 每次更新版本号加1, 并记录每个图块最后一次变化时的版本号. 某个版本得到的查找结果,
+ * 只要查找区域覆盖的图块在那之后都没有变化, 就可以直接使用, 不需要重新查找.
+ * <p>
+ * 坐标与截图时使用的坐标一致(例如绑定窗口的客户区坐标). 第一次更新或截图区域改变时所有图块都视为变化. 线程安全.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FrameChangeTracker {
+    private final int tileSize;
+    private final XxHash64 hasher = new XxHash64();
+    private Rect region;
+    private int tilesX;
+    private int tilesY;
+    private long[] hashes;
+    private long[] changedAt;
+    private long version;
+    private int changedCount;
+    private int[] rows;
+
+    /**
+     * 创建实例
+     *
+     * @param tileSize 图块边长, 例如32
+     */
+    public FrameChangeTracker(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("图块边长必须大于0: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * 用新截取的图像更新
+     *
+     * @param image  截取的图像
+     * @param region 图像在屏幕(窗口)上的区域, 尺寸必须与图像一致
+     * @return 本次变化的图块数量
+     */
+    public synchronized int update(BgraImage image, Rect region) {
+        checkSize(region, image.getWidth(), image.getHeight());
+        return update(region, (y, target, offset) -> System.arraycopy(image.pixels(), y * image.getWidth(), target, offset, image.getWidth()));
+    }
+
+    /**
+     * 用GetScreenData截取的帧更新, 逐行读取, 不复制整帧
+     *
+     * @param frame 截取的帧, 区域为{@link Frame#getRect()}
+     * @return 本次变化的图块数量
+     */
+    public synchronized int update(Frame frame) {
+        return update(frame.getRect(), frame::readRow);
+    }
+
+    /**
+     * 当前版本号, 每次更新加1, 没有更新过时为0
+     *
+     * @return 版本号
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized Rect getRegion() {
+        return region;
+    }
+
+    /**
+     * 区域覆盖的图块在指定版本之后是否都没有变化
+     *
+     * @param rect    区域, 包含左上边界, 不包含右下边界
+     * @param version 版本号, 通常是得到查找结果时的{@link #getVersion()}
+     * @return 没有变化时返回true; 区域超出跟踪范围或者还没有更新过时返回false
+     */
+    public synchronized boolean isUnchangedSince(Rect rect, long version) {
+        if (region == null || rect.getX1() < region.getX1() || rect.getY1() < region.getY1()
+                || rect.getX2() > region.getX2() || rect.getY2() > region.getY2()) {
+            return false;
+        }
+        if (rect.getWidth() <= 0 || rect.getHeight() <= 0) {
+            return true;
+        }
+        int firstX = (rect.getX1() - region.getX1()) / tileSize;
+        int lastX = (rect.getX2() - 1 - region.getX1()) / tileSize;
+        int firstY = (rect.getY1() - region.getY1()) / tileSize;
+        int lastY = (rect.getY2() - 1 - region.getY1()) / tileSize;
+        for (int tileY = firstY; tileY <= lastY; tileY++) {
+            for (int tileX = firstX; tileX <= lastX; tileX++) {
+                if (changedAt[tileY * tilesX + tileX] > version) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 最近一次更新时变化的图块
+     *
+     * @return 图块区域, 同一行相邻的图块合并为一个区域
+     */
+    public synchronized List<Rect> getChangedTiles() {
+        List<Rect> tiles = new ArrayList<>(changedCount);
+        if (region == null) {
+            return tiles;
+        }
+        for (int tileY = 0; tileY < tilesY; tileY++) {
+            int tileX = 0;
+            while (tileX < tilesX) {
+                if (changedAt[tileY * tilesX + tileX] != version) {
+                    tileX++;
+                    continue;
+                }
+                int start = tileX;
+                while (tileX < tilesX && changedAt[tileY * tilesX + tileX] == version) {
+                    tileX++;
+                }
+                int x1 = region.getX1() + start * tileSize;
+                int y1 = region.getY1() + tileY * tileSize;
+                tiles.add(Rect.of(x1, y1, Math.min(region.getX2(), region.getX1() + tileX * tileSize),
+                        Math.min(region.getY2(), y1 + tileSize)));
+            }
+        }
+        return tiles;
+    }
+
+    private int update(Rect region, RowReader reader) {
+        boolean reset = !region.equals(this.region);
+        if (reset) {
+            this.region = region;
+            tilesX = (region.getWidth() + tileSize - 1) / tileSize;
+            tilesY = (region.getHeight() + tileSize - 1) / tileSize;
+            hashes = new long[tilesX * tilesY];
+            changedAt = new long[hashes.length];
+            rows = new int[region.getWidth() * tileSize];
+        }
+        version++;
+        changedCount = 0;
+        int width = region.getWidth();
+        int height = region.getHeight();
+        for (int tileY = 0; tileY < tilesY; tileY++) {
+            int top = tileY * tileSize;
+            int rowCount = Math.min(tileSize, height - top);
+            for (int row = 0; row < rowCount; row++) {
+                reader.read(top + row, rows, row * width);
+            }
+            for (int tileX = 0; tileX < tilesX; tileX++) {
+                int left = tileX * tileSize;
+                int columns = Math.min(tileSize, width - left);
+                hasher.reset();
+                for (int row = 0; row < rowCount; row++) {
+                    hasher.update(rows, row * width + left, columns);
+                }
+                long hash = hasher.digest();
+                int tile = tileY * tilesX + tileX;
+                if (reset || hashes[tile] != hash) {
+                    hashes[tile] = hash;
+                    changedAt[tile] = version;
+                    changedCount++;
+                }
+            }
+        }
+        return changedCount;
+    }
+
+    private static void checkSize(Rect region, int width, int height) {
+        if (region.getWidth() != width || region.getHeight() != height) {
+            throw new IllegalArgumentException("区域" + region + "与图像尺寸" + width + "x" + height + "不一致");
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+        /**
+         * 读取第y行到target[offset]开始的位置
+         */
+        void read(int y, int[] target, int offset);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FrameChangeTracker(region=" + region + ", tileSize=" + tileSize + ", version=" + version
+                + ", changed=" + changedCount + "/" + (hashes == null ? 0 : hashes.length) + ")";
+    }
+}
@@ -0,0 +1,156 @@
+package cn.com.qjun.dmsoft.vision;
+
+/**
+ * 图像金字塔, 用于{@link TemplateMatcher}的分层找图
+ * <p>
+ * 第level层的每个像素是原图中(2^level)x(2^level)区域的平均颜色, 不足一个区域的右边和下边被舍去.
+ * 各层在第一次使用时计算, 同一帧查找多个模板时应重复使用同一个金字塔. 线程安全.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class ImagePyramid {
+    /**
+     * 最高层数, 第3层缩小为原图的1/8
+     */
+    public static final int MAX_LEVEL = 3;
+    /**
+     * 展开后每个分量只保留低8位
+     */
+    private static final int LANE_MASK = 0xFF | (0xFF << 10) | (0xFF << 20);
+
+    private final BgraImage image;
+    private final int[][] spreads = new int[MAX_LEVEL + 1][];
+    private final int[][] grays = new int[MAX_LEVEL + 1][];
+
+    private ImagePyramid(BgraImage image) {
+        this.image = image;
+    }
+
+    /**
+     * 为图像创建金字塔, 不立即计算
+     *
+     * @param image 原图
+     * @return 金字塔
+     */
+    public static ImagePyramid of(BgraImage image) {
+        return new ImagePyramid(image);
+    }
+
+    public BgraImage getImage() {
+        return image;
+    }
+
+    public int getWidth(int level) {
+        return image.getWidth() >> checkLevel(level);
+    }
+
+    public int getHeight(int level) {
+        return image.getHeight() >> checkLevel(level);
+    }
+
+    /**
+     * 第level层的图像, 用于查看缩小后的效果
+     *
+     * @param level 层数, 0为原图
+     * @return 图像, 该层的宽或高为0时返回null
+     */
+    public BgraImage getLevel(int level) {
+        if (checkLevel(level) == 0) {
+            return image;
+        }
+        if (getWidth(level) == 0 || getHeight(level) == 0) {
+            return null;
+        }
+        int[] spread = spreadLevel(level);
+        int[] pixels = new int[spread.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int value = spread[i];
+            pixels[i] = (value & 0xFF) | ((value >> 2) & 0xFF00) | ((value >> 4) & 0xFF0000);
+        }
+        return BgraImage.wrap(getWidth(level), getHeight(level), pixels);
+    }
+
+    /**
+     * 第level层(level>=1)的像素, 按{@link ColorSpec#spread(int)}展开为每个分量10位
+     */
+    synchronized int[] spreadLevel(int level) {
+        if (spreads[level] == null) {
+            int width = image.getWidth() >> (level - 1);
+            int height = image.getHeight() >> (level - 1);
+            spreads[level] = level == 1 ? halve(image.pixels(), width, height, true)
+                    : halve(spreadLevel(level - 1), width, height, LANE_MASK);
+        }
+        return spreads[level];
+    }
+
+    /**
+     * 第level层(level>=1)的灰度, 每个像素是区域内各像素灰度的平均值
+     */
+    synchronized int[] grayLevel(int level) {
+        if (grays[level] == null) {
+            int width = image.getWidth() >> (level - 1);
+            int height = image.getHeight() >> (level - 1);
+            grays[level] = level == 1 ? halve(image.pixels(), width, height, false)
+                    : halve(grayLevel(level - 1), width, height, 0xFF);
+        }
+        return grays[level];
+    }
+
+    /**
+     * 灰度, 与大漠按灰度找图时的算法一致
+     */
+    static int gray(int rgb) {
+        return (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+    }
+
+    /**
+     * 每2x2个像素取平均值(向下取整). 每个分量不超过8位, 4个相加不会进位到相邻的分量
+     */
+    private static int[] halve(int[] source, int width, int height, int mask) {
+        int halfWidth = width >> 1;
+        int halfHeight = height >> 1;
+        int[] target = new int[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            int top = 2 * y * width;
+            int bottom = top + width;
+            int row = y * halfWidth;
+            for (int x = 0; x < halfWidth; x++) {
+                int sum = source[top + 2 * x] + source[top + 2 * x + 1] + source[bottom + 2 * x] + source[bottom + 2 * x + 1];
+                target[row + x] = (sum >> 2) & mask;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 从原图的像素计算第1层, 展开为每个分量10位或者转换为灰度
+     */
+    private static int[] halve(int[] pixels, int width, int height, boolean spread) {
+        int halfWidth = width >> 1;
+        int halfHeight = height >> 1;
+        int[] target = new int[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            int top = 2 * y * width;
+            int bottom = top + width;
+            int row = y * halfWidth;
+            for (int x = 0; x < halfWidth; x++) {
+                int a = pixels[top + 2 * x];
+                int b = pixels[top + 2 * x + 1];
+                int c = pixels[bottom + 2 * x];
+                int d = pixels[bottom + 2 * x + 1];
+                target[row + x] = spread
+                        ? ((ColorSpec.spread(a) + ColorSpec.spread(b) + ColorSpec.spread(c) + ColorSpec.spread(d)) >> 2) & LANE_MASK
+                        : (gray(a) + gray(b) + gray(c) + gray(d)) >> 2;
+            }
+        }
+        return target;
+    }
+
+    private static int checkLevel(int level) {
+        if (level < 0 || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("层数取值范围0-" + MAX_LEVEL + ": " + level);
+        }
+        return level;
+    }
+}
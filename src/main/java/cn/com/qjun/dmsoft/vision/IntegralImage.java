@@ -0,0 +1,280 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 一帧图像的积分图(summed-area table)
+ * <p>
+ * 预先累加每个分量的和以及每个{@link ColorSpec}的匹配数量, 之后任意矩形内的平均颜色、颜色数量都只需要读4个值,
+ * 与矩形大小无关. 适合对同一帧做大量区域查询, 例如{@link #findColorBlock}逐个位置统计颜色块内的颜色数量.
+ * <p>
+ * 分量的和在第一次求平均值时计算, 颜色数量表在第一次使用该颜色时计算并缓存, 按{@link ColorSpec}对象区分,
+ * 同一个颜色应重复使用编译好的对象. 每张表占用(宽+1)x(高+1)个int. 坐标以图像左上角为原点,
+ * 区域包含左上边界, 不包含右下边界, 超出图像的部分被忽略, 为null时表示整个图像. 线程安全.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class IntegralImage {
+    /**
+     * 每个分量的和不超过int范围时图像最多包含的像素数量
+     */
+    private static final int MAX_PIXELS = Integer.MAX_VALUE / 255;
+
+    private final BgraImage image;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private int[] redSums;
+    private int[] greenSums;
+    private int[] blueSums;
+    private final Map<ColorSpec, int[]> colorCounts = new IdentityHashMap<>();
+
+    private IntegralImage(BgraImage image) {
+        if ((long) image.getWidth() * image.getHeight() > MAX_PIXELS) {
+            throw new IllegalArgumentException("图像太大: " + image.getWidth() + "x" + image.getHeight());
+        }
+        this.image = image;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.stride = width + 1;
+    }
+
+    /**
+     * 为图像创建积分图, 各张表在使用时才计算
+     *
+     * @param image 图像
+     * @return 积分图
+     */
+    public static IntegralImage of(BgraImage image) {
+        return new IntegralImage(image);
+    }
+
+    public BgraImage getImage() {
+        return image;
+    }
+
+    /**
+     * 区域内颜色的平均值, 对应大漠的GetAveRGB
+     *
+     * @param rect 区域
+     * @return 颜色(00RRGGBB), 各分量向下取整; 区域为空时返回0
+     */
+    public int getAveRgb(Rect rect) {
+        Window window = window(rect);
+        long area = window.area();
+        if (area == 0) {
+            return 0;
+        }
+        ensureChannelSums();
+        int r = (int) (window.sum(redSums) / area);
+        int g = (int) (window.sum(greenSums) / area);
+        int b = (int) (window.sum(blueSums) / area);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * 区域内颜色的平均值换算成HSV, 对应大漠的GetAveHSV
+     *
+     * @param rect 区域
+     * @return "H.S.V"格式的颜色, H取值0-359, S和V取值0-255
+     */
+    public String getAveHsv(Rect rect) {
+        int rgb = getAveRgb(rect);
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        int delta = max - min;
+        int h = 0;
+        if (delta != 0) {
+            if (max == r) {
+                h = 60 * (g - b) / delta;
+            } else if (max == g) {
+                h = 120 + 60 * (b - r) / delta;
+            } else {
+                h = 240 + 60 * (r - g) / delta;
+            }
+            if (h < 0) {
+                h += 360;
+            }
+        }
+        int s = max == 0 ? 0 : delta * 255 / max;
+        return h + "." + s + "." + max;
+    }
+
+    /**
+     * 统计区域内符合颜色的像素数量, 结果与{@link ColorSearch#getColorNum}一致
+     *
+     * @param rect 区域
+     * @param spec 颜色
+     * @return 颜色数量
+     */
+    public int getColorNum(Rect rect, ColorSpec spec) {
+        Window window = window(rect);
+        return window.area() == 0 ? 0 : (int) window.sum(colorCounts(spec));
+    }
+
+    /**
+     * 查找颜色块, 对应大漠的FindColorBlock. 按从左到右、从上到下的顺序逐个位置统计颜色块内符合颜色的像素数量
+     *
+     * @param rect   查找区域, 颜色块必须完整地在区域内
+     * @param spec   颜色
+     * @param count  颜色块内符合颜色的最小数量
+     * @param width  颜色块宽度
+     * @param height 颜色块高度
+     * @return 第一个颜色块左上角的坐标, 没有找到返回{@link Points#NOT_FOUND}
+     */
+    public long findColorBlock(Rect rect, ColorSpec spec, int count, int width, int height) {
+        long[] points = new long[1];
+        return findColorBlockEx(rect, spec, count, width, height, points) == 0 ? Points.NOT_FOUND : points[0];
+    }
+
+    /**
+     * 查找所有颜色块, 对应大漠的FindColorBlockEx. 按从左到右、从上到下的顺序查找,
+     * 与已经找到的颜色块重叠的位置跳过, 数组写满后停止查找
+     *
+     * @param rect   查找区域, 颜色块必须完整地在区域内
+     * @param spec   颜色
+     * @param count  颜色块内符合颜色的最小数量
+     * @param width  颜色块宽度
+     * @param height 颜色块高度
+     * @param points 接收颜色块左上角坐标的数组, 坐标用{@link Points}表示
+     * @return 写入的坐标数量
+     */
+    public int findColorBlockEx(Rect rect, ColorSpec spec, int count, int width, int height, long[] points) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("颜色块尺寸不正确: " + width + "x" + height);
+        }
+        Window window = window(rect);
+        if (window.x2 - window.x1 < width || window.y2 - window.y1 < height || points.length == 0) {
+            return 0;
+        }
+        int[] counts = colorCounts(spec);
+        // 每列中已找到的颜色块占到的最后一行(不含), 用于跳过重叠的位置
+        int[] coveredUntil = new int[this.width];
+        int found = 0;
+        for (int y = window.y1; y + height <= window.y2; y++) {
+            int top = y * stride;
+            int bottom = (y + height) * stride;
+            for (int x = window.x1; x + width <= window.x2; x++) {
+                if (coveredUntil[x] > y || coveredUntil[x + width - 1] > y) {
+                    continue;
+                }
+                int sum = counts[bottom + x + width] - counts[bottom + x] - counts[top + x + width] + counts[top + x];
+                if (sum < count || overlaps(coveredUntil, x, width, y)) {
+                    continue;
+                }
+                points[found++] = Points.pack(x, y);
+                if (found == points.length) {
+                    return found;
+                }
+                for (int i = x; i < x + width; i++) {
+                    coveredUntil[i] = y + height;
+                }
+                x += width - 1;
+            }
+        }
+        return found;
+    }
+
+    private static boolean overlaps(int[] coveredUntil, int x, int width, int y) {
+        for (int i = x; i < x + width; i++) {
+            if (coveredUntil[i] > y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void ensureChannelSums() {
+        if (redSums != null) {
+            return;
+        }
+        int[] pixels = image.pixels();
+        int[] red = new int[stride * (height + 1)];
+        int[] green = new int[red.length];
+        int[] blue = new int[red.length];
+        for (int y = 0; y < height; y++) {
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            int above = y * stride;
+            int row = above + stride;
+            for (int x = 0; x < width; x++) {
+                int rgb = pixels[y * width + x];
+                r += (rgb >> 16) & 0xFF;
+                g += (rgb >> 8) & 0xFF;
+                b += rgb & 0xFF;
+                red[row + x + 1] = red[above + x + 1] + r;
+                green[row + x + 1] = green[above + x + 1] + g;
+                blue[row + x + 1] = blue[above + x + 1] + b;
+            }
+        }
+        blueSums = blue;
+        greenSums = green;
+        redSums = red;
+    }
+
+    private synchronized int[] colorCounts(ColorSpec spec) {
+        int[] counts = colorCounts.get(spec);
+        if (counts == null) {
+            int[] pixels = image.pixels();
+            counts = new int[stride * (height + 1)];
+            for (int y = 0; y < height; y++) {
+                int sum = 0;
+                int above = y * stride;
+                int row = above + stride;
+                for (int x = 0; x < width; x++) {
+                    if (spec.matches(pixels[y * width + x])) {
+                        sum++;
+                    }
+                    counts[row + x + 1] = counts[above + x + 1] + sum;
+                }
+            }
+            colorCounts.put(spec, counts);
+        }
+        return counts;
+    }
+
+    private Window window(Rect rect) {
+        if (rect == null) {
+            return new Window(0, 0, width, height);
+        }
+        int x1 = Math.max(0, rect.getX1());
+        int y1 = Math.max(0, rect.getY1());
+        int x2 = Math.min(width, rect.getX2());
+        int y2 = Math.min(height, rect.getY2());
+        return new Window(x1, y1, Math.max(x1, x2), Math.max(y1, y2));
+    }
+
+    /**
+     * 裁剪到图像范围内的区域
+     */
+    private final class Window {
+        private final int x1;
+        private final int y1;
+        private final int x2;
+        private final int y2;
+
+        private Window(int x1, int y1, int x2, int y2) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+        }
+
+        private long area() {
+            return (long) (x2 - x1) * (y2 - y1);
+        }
+
+        private long sum(int[] table) {
+            return (long) table[y2 * stride + x2] - table[y2 * stride + x1] - table[y1 * stride + x2] + table[y1 * stride + x1];
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 编译后的多点找色, 对应大漠的FindMultiColor、FindMultiColorEx
+ * <p>
+ * 编译时检查格式并把每个偏移点编译为{@link ColorSpec}, 偏移点按区分度排序, 最少见的颜色最先比较.
+ * 查找时先按行判断有没有符合第一个颜色的像素, 没有的行整行跳过; 符合的位置再按顺序比较偏移点, 任何一个不符合立即放弃.
+ * 所有偏移点都必须在查找区域内, 因此第一个颜色的查找范围按偏移点的范围缩小, 比较时不再检查边界.
+ * <p>
+ * 偏移点中颜色前面的"-"表示反色: 第一个颜色以"-"开头时, 该偏移点匹配所有颜色范围之外的颜色.
+ * 坐标以图像左上角为原点, 查找区域包含左上边界, 不包含右下边界, 为null时查找整个图像.
+ * 对象创建后不再修改, 可以在多个线程中同时使用.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class MultiColorPattern {
+    private final String firstColor;
+    private final String offsetColor;
+    private final ColorSpec first;
+    private final int[] dxs;
+    private final int[] dys;
+    private final ColorSpec[] specs;
+    private final int minDx;
+    private final int maxDx;
+    private final int minDy;
+    private final int maxDy;
+
+    private MultiColorPattern(String firstColor, String offsetColor, ColorSpec first, List<Probe> probes) {
+        this.firstColor = firstColor;
+        this.offsetColor = offsetColor;
+        this.first = first;
+        this.dxs = new int[probes.size()];
+        this.dys = new int[probes.size()];
+        this.specs = new ColorSpec[probes.size()];
+        int minDx = 0;
+        int maxDx = 0;
+        int minDy = 0;
+        int maxDy = 0;
+        for (int i = 0; i < probes.size(); i++) {
+            Probe probe = probes.get(i);
+            dxs[i] = probe.dx;
+            dys[i] = probe.dy;
+            specs[i] = probe.spec;
+            minDx = Math.min(minDx, probe.dx);
+            maxDx = Math.max(maxDx, probe.dx);
+            minDy = Math.min(minDy, probe.dy);
+            maxDy = Math.max(maxDy, probe.dy);
+        }
+        this.minDx = minDx;
+        this.maxDx = maxDx;
+        this.minDy = minDy;
+        this.maxDy = maxDy;
+    }
+
+    /**
+     * 编译多点颜色
+     *
+     * @param firstColor  第一个颜色, 格式为"RRGGBB-DRDGDB|RRGGBB-DRDGDB", 比如"123456-000000"
+     * @param offsetColor 偏移颜色, 格式为"x1|y1|RRGGBB-DRDGDB|RRGGBB-DRDGDB……,……xn|yn|RRGGBB-DRDGDB……",
+     *                    比如"-4|7|e8b8bb,8|7|db5860,3|12|-db5860". 可以为空
+     * @param sim         相似度,取值范围0.1-1.0
+     * @return 编译后的多点颜色
+     */
+    public static MultiColorPattern compile(String firstColor, String offsetColor, double sim) {
+        ColorSpec first = ColorSpec.compile(firstColor, sim);
+        List<Probe> probes = new ArrayList<>();
+        if (offsetColor != null && !offsetColor.trim().isEmpty()) {
+            for (String item : offsetColor.split(",")) {
+                String[] parts = item.trim().split("\\|", 3);
+                if (parts.length < 3) {
+                    throw new IllegalArgumentException("偏移颜色格式不正确: " + item);
+                }
+                int dx;
+                int dy;
+                try {
+                    dx = Integer.parseInt(parts[0].trim());
+                    dy = Integer.parseInt(parts[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("偏移颜色格式不正确: " + item, e);
+                }
+                probes.add(new Probe(dx, dy, compileOffsetColor(parts[2].trim(), sim)));
+            }
+        }
+        probes.sort(Comparator.comparingDouble(probe -> probe.coverage));
+        return new MultiColorPattern(firstColor, offsetColor, first, probes);
+    }
+
+    /**
+     * 偏移点数量, 不包括第一个颜色
+     *
+     * @return 数量
+     */
+    public int size() {
+        return specs.length;
+    }
+
+    /**
+     * 第一个颜色在指定位置时是否所有点都匹配
+     *
+     * @param frame 截取的图像
+     * @param x     第一个颜色的X坐标
+     * @param y     第一个颜色的Y坐标
+     * @return 是否匹配, 有偏移点超出图像时返回false
+     */
+    public boolean matchesAt(BgraImage frame, int x, int y) {
+        if (x + minDx < 0 || y + minDy < 0 || x + maxDx >= frame.getWidth() || y + maxDy >= frame.getHeight()) {
+            return false;
+        }
+        int width = frame.getWidth();
+        return matches(frame.pixels(), y * width + x, offsets(width));
+    }
+
+    /**
+     * 查找第一个符合的位置
+     *
+     * @param frame 截取的图像
+     * @param rect  查找区域
+     * @param dir   查找方向
+     * @return 第一个颜色所在的坐标, 没有找到返回{@link Points#NOT_FOUND}
+     */
+    public long find(BgraImage frame, Rect rect, FindDirection dir) {
+        ScanOrder order = scanOrder(frame, rect, dir);
+        if (order == null) {
+            return Points.NOT_FOUND;
+        }
+        int[] pixels = frame.pixels();
+        int width = frame.getWidth();
+        int[] offsets = offsets(width);
+        if (order.center) {
+            return findNearest(pixels, width, offsets, order, frame, rect);
+        }
+        for (int outer = 0; outer < order.outerCount; outer++) {
+            if (skipRow(pixels, width, order, outer)) {
+                continue;
+            }
+            for (int inner = 0; inner < order.innerCount; inner++) {
+                int x = order.xOf(outer, inner);
+                int y = order.yOf(outer, inner);
+                if (matches(pixels, y * width + x, offsets)) {
+                    return Points.pack(x, y);
+                }
+            }
+        }
+        return Points.NOT_FOUND;
+    }
+
+    /**
+     * 查找所有符合的位置, 与FindMultiColorEx一致. 按查找方向写入数组, 数组写满后停止查找
+     *
+     * @param frame  截取的图像
+     * @param rect   查找区域
+     * @param dir    查找方向, 从中心往外时按从左到右、从上到下的顺序
+     * @param points 接收第一个颜色坐标的数组, 坐标用{@link Points}表示
+     * @return 写入的坐标数量
+     */
+    public int findAll(BgraImage frame, Rect rect, FindDirection dir, long[] points) {
+        ScanOrder order = scanOrder(frame, rect, dir);
+        if (order == null) {
+            return 0;
+        }
+        int[] pixels = frame.pixels();
+        int width = frame.getWidth();
+        int[] offsets = offsets(width);
+        int count = 0;
+        for (int outer = 0; outer < order.outerCount && count < points.length; outer++) {
+            if (skipRow(pixels, width, order, outer)) {
+                continue;
+            }
+            for (int inner = 0; inner < order.innerCount && count < points.length; inner++) {
+                int x = order.xOf(outer, inner);
+                int y = order.yOf(outer, inner);
+                if (matches(pixels, y * width + x, offsets)) {
+                    points[count++] = Points.pack(x, y);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按行扫描时, 整行都没有第一个颜色则跳过
+     */
+    private boolean skipRow(int[] pixels, int width, ScanOrder order, int outer) {
+        if (!order.rowMajor || first.isInverted()) {
+            return false;
+        }
+        int rowStart = order.yOf(outer, 0) * width;
+        return !ColorSearch.anyInRange(pixels, rowStart + order.minX, rowStart + order.maxX + 1, first);
+    }
+
+    private boolean matches(int[] pixels, int index, int[] offsets) {
+        if (!first.matches(pixels[index])) {
+            return false;
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            if (!specs[i].matches(pixels[index + offsets[i]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long findNearest(int[] pixels, int width, int[] offsets, ScanOrder order, BgraImage frame, Rect rect) {
+        long centerX = (x1(rect) + (rect == null ? frame.getWidth() : Math.min(frame.getWidth(), rect.getX2()))) / 2;
+        long centerY = (y1(rect) + (rect == null ? frame.getHeight() : Math.min(frame.getHeight(), rect.getY2()))) / 2;
+        long best = Points.NOT_FOUND;
+        long bestDistance = Long.MAX_VALUE;
+        for (int y = order.minY; y <= order.maxY; y++) {
+            long dy = y - centerY;
+            if (dy * dy >= bestDistance) {
+                if (y > centerY) {
+                    break;
+                }
+                continue;
+            }
+            for (int x = order.minX; x <= order.maxX; x++) {
+                if (matches(pixels, y * width + x, offsets)) {
+                    long dx = x - centerX;
+                    long distance = dx * dx + dy * dy;
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = Points.pack(x, y);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 偏移点相对第一个颜色在像素数组中的位置差
+     */
+    private int[] offsets(int width) {
+        int[] offsets = new int[specs.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = dys[i] * width + dxs[i];
+        }
+        return offsets;
+    }
+
+    /**
+     * 第一个颜色的查找范围: 查找区域按偏移点的范围缩小, 保证所有偏移点都在区域内
+     */
+    private ScanOrder scanOrder(BgraImage frame, Rect rect, FindDirection dir) {
+        int x1 = x1(rect) - minDx;
+        int y1 = y1(rect) - minDy;
+        int x2 = (rect == null ? frame.getWidth() : Math.min(frame.getWidth(), rect.getX2())) - maxDx;
+        int y2 = (rect == null ? frame.getHeight() : Math.min(frame.getHeight(), rect.getY2())) - maxDy;
+        return x2 <= x1 || y2 <= y1 ? null : new ScanOrder(x1, x2 - 1, y1, y2 - 1, dir);
+    }
+
+    private static int x1(Rect rect) {
+        return rect == null ? 0 : Math.max(0, rect.getX1());
+    }
+
+    private static int y1(Rect rect) {
+        return rect == null ? 0 : Math.max(0, rect.getY1());
+    }
+
+    /**
+     * 把偏移点的颜色转换为{@link ColorSpec}的格式: 以"-"开头时为反色模式, 各颜色前面的"-"去掉
+     */
+    private static ColorSpec compileOffsetColor(String colors, double sim) {
+        boolean inverted = colors.startsWith("-");
+        StringBuilder spec = new StringBuilder(colors.length() + 1);
+        if (inverted) {
+            spec.append('@');
+        }
+        for (String color : colors.split("\\|")) {
+            String item = color.trim();
+            if (spec.length() > (inverted ? 1 : 0)) {
+                spec.append('|');
+            }
+            spec.append(item.startsWith("-") ? item.substring(1) : item);
+        }
+        return ColorSpec.compile(spec.toString(), sim);
+    }
+
+    @Override
+    public String toString() {
+        return firstColor + " " + offsetColor;
+    }
+
+    private static final class Probe {
+        private final int dx;
+        private final int dy;
+        private final ColorSpec spec;
+        private final double coverage;
+
+        private Probe(int dx, int dy, ColorSpec spec) {
+            this.dx = dx;
+            this.dy = dy;
+            this.spec = spec;
+            this.coverage = spec.coverage();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.enums.FindDirection;
+
+/**
+ * 按{@link FindDirection}遍历一个矩形范围内的坐标
+ * <p>
+ * 把坐标分为外层(行或列)和内层, 外层第outer行(列)、内层第inner个位置对应一个坐标. 例如从左到右、从上到下时外层是行, 内层是列.
+ * 从中心往外时按从左到右、从上到下遍历, 由调用方按离中心的距离取舍.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+final class ScanOrder {
+    final int minX;
+    final int maxX;
+    final int minY;
+    final int maxY;
+    final boolean rowMajor;
+    final boolean xAscending;
+    final boolean yAscending;
+    final boolean center;
+    final int outerCount;
+    final int innerCount;
+
+    /**
+     * 创建实例, 坐标范围包含边界
+     */
+    ScanOrder(int minX, int maxX, int minY, int maxY, FindDirection dir) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        int value = dir.getValue();
+        this.center = dir == FindDirection.CENTER_TO_AROUND;
+        this.rowMajor = value <= 4;
+        this.xAscending = value == 0 || value == 1 || value == 4 || value == 5 || value == 7;
+        this.yAscending = value == 0 || value == 2 || value == 4 || value == 5 || value == 6;
+        int rows = maxY - minY + 1;
+        int columns = maxX - minX + 1;
+        this.outerCount = rowMajor ? rows : columns;
+        this.innerCount = rowMajor ? columns : rows;
+    }
+
+    int xOf(int outer, int inner) {
+        int step = rowMajor ? inner : outer;
+        return xAscending ? minX + step : maxX - step;
+    }
+
+    int yOf(int outer, int inner) {
+        int step = rowMajor ? outer : inner;
+        return yAscending ? minY + step : maxY - step;
+    }
+
+    /**
+     * 把外层[0, outerCount)均分为chunks段, 返回第chunk段的起始位置
+     */
+    int chunkStart(int chunk, int chunks) {
+        return (int) ((long) outerCount * chunk / chunks);
+    }
+}
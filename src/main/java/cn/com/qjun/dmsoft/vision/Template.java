@@ -0,0 +1,145 @@
+package cn.com.qjun.dmsoft.vision;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * 找图用的模板图片
+ * <p>
+ * 与大漠一致, 当图片4个顶点的颜色一样时, 这个颜色作为透明色处理, 透明的像素不参与比较.
+ * 创建时只保留不透明像素的坐标和颜色, 匹配时按顺序逐个比较. 创建后不再修改, 可以在多个线程中同时使用.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class Template {
+    /**
+     * 没有透明色时{@link #getTransparentColor()}的返回值
+     */
+    public static final int NO_TRANSPARENT_COLOR = -1;
+
+    private final String name;
+    private final int width;
+    private final int height;
+    private final int transparentColor;
+    private final int[] pixelXs;
+    private final int[] pixelYs;
+    private final int[] colors;
+
+    private Template(String name, BgraImage image) {
+        this.name = name;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        int[] pixels = image.pixels();
+        int topLeft = pixels[0];
+        int topRight = pixels[width - 1];
+        int bottomLeft = pixels[(height - 1) * width];
+        int bottomRight = pixels[height * width - 1];
+        this.transparentColor = topLeft == topRight && topLeft == bottomLeft && topLeft == bottomRight
+                ? topLeft : NO_TRANSPARENT_COLOR;
+        int count = 0;
+        for (int i = 0, length = width * height; i < length; i++) {
+            if (pixels[i] != transparentColor) {
+                count++;
+            }
+        }
+        this.pixelXs = new int[count];
+        this.pixelYs = new int[count];
+        this.colors = new int[count];
+        int n = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int color = pixels[y * width + x];
+                if (color != transparentColor) {
+                    pixelXs[n] = x;
+                    pixelYs[n] = y;
+                    colors[n] = color;
+                    n++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从图像创建模板
+     *
+     * @param name  名称, 例如文件名
+     * @param image 图像
+     * @return 模板
+     */
+    public static Template of(String name, BgraImage image) {
+        return new Template(name, image);
+    }
+
+    /**
+     * 读取图片文件作为模板
+     *
+     * @param file BMP、PNG等图片文件
+     * @return 模板, 名称为文件名
+     */
+    public static Template load(File file) {
+        return new Template(file.getName(), BgraImage.read(file));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 透明色
+     *
+     * @return 颜色(00RRGGBB), 没有透明色时返回{@link #NO_TRANSPARENT_COLOR}
+     */
+    public int getTransparentColor() {
+        return transparentColor;
+    }
+
+    /**
+     * 参与比较的不透明像素数量
+     *
+     * @return 像素数量
+     */
+    public int getOpaquePixelCount() {
+        return colors.length;
+    }
+
+    /**
+     * 不透明像素在宽度为stride的图像中相对模板左上角的下标偏移
+     */
+    int[] offsets(int stride) {
+        int[] offsets = new int[colors.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = pixelYs[i] * stride + pixelXs[i];
+        }
+        return offsets;
+    }
+
+    int[] colors() {
+        return colors;
+    }
+
+    /**
+     * 按行存放的全部像素, 透明像素为-1
+     */
+    int[] grid() {
+        int[] grid = new int[width * height];
+        Arrays.fill(grid, -1);
+        for (int i = 0; i < colors.length; i++) {
+            grid[pixelYs[i] * width + pixelXs[i]] = colors[i];
+        }
+        return grid;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + width + "x" + height + ")";
+    }
+}
@@ -0,0 +1,681 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.domain.FindResultBuffer;
+import cn.com.qjun.dmsoft.domain.Point;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * 纯Java实现的找图
+ * <p>
+ * 在GetScreenData截取的图像上查找模板, 不经过大漠插件, 可以在任意线程、任意平台上执行. 匹配规则与大漠的FindPic一致:
+ * <ul>
+ *     <li>色偏"RRGGBB"表示每个颜色分量允许的最大偏差, 2位的色偏如"20"表示按灰度比较</li>
+ *     <li>相似度表示颜色在色偏范围内的像素占不透明像素的比例</li>
+ *     <li>模板4个顶点颜色一样时, 该颜色为透明色, 不参与比较</li>
+ *     <li>多个模板时按顺序查找, 前面的模板找到后不再查找后面的模板</li>
+ *     <li>找到的位置按{@link FindDirection}的顺序返回, 返回的坐标是模板左上角在图像中的坐标</li>
+ * </ul>
+ * 带Parallel后缀的方法把查找区域分段后在{@link java.util.concurrent.ForkJoinPool#commonPool()}中并行查找, 结果与串行查找一致.
+ * 带Pyramid后缀的方法先在{@link ImagePyramid}的缩小图上排除不可能的位置, 只在剩下的位置附近按原图匹配, 适合在整个窗口这样的大区域中查找,
+ * 结果与逐个位置查找一致(见{@link CoarseTemplate}). 模板太小或颜色变化太大时没有可用的缩小图, 与逐个位置查找相同.
+ * 对象创建后不再修改, 可以在多个线程中同时使用.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class TemplateMatcher {
+    /**
+     * 并行查找时每段至少包含的行(列)数
+     */
+    private static final int MIN_LINES_PER_CHUNK = 8;
+
+    private final List<Template> templates;
+    private final CoarseTemplate[] coarseTemplates;
+
+    /**
+     * 创建实例
+     *
+     * @param templates 模板, 序号与列表中的顺序一致
+     */
+    public TemplateMatcher(List<Template> templates) {
+        if (templates == null || templates.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个模板");
+        }
+        this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+        this.coarseTemplates = new CoarseTemplate[templates.size()];
+        for (int i = 0; i < coarseTemplates.length; i++) {
+            coarseTemplates[i] = CoarseTemplate.of(this.templates.get(i));
+        }
+    }
+
+    public static TemplateMatcher of(Template... templates) {
+        return new TemplateMatcher(Arrays.asList(templates));
+    }
+
+    public List<Template> getTemplates() {
+        return templates;
+    }
+
+    /**
+     * 查找图片, 只返回第一个找到的位置
+     *
+     * @param frame      截取的图像
+     * @param rect       查找区域, 为null时查找整个图像
+     * @param deltaColor 颜色色偏比如"203040", 2位时表示使用灰度找图, 比如"20"
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @return 找到的图片序号和对应坐标(图片左上角坐标)，没有找到返回null
+     */
+    public FindResult findPic(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir) {
+        return toFindResult(findPic(frame, rect, deltaColor, sim, dir, false));
+    }
+
+    /**
+     * 查找图片, 找到的坐标写入调用方提供的数组
+     *
+     * @param frame      截取的图像
+     * @param rect       查找区域, 为null时查找整个图像
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @param point      接收图片左上角坐标的数组,point[0]为X坐标,point[1]为Y坐标
+     * @return 找到的图片序号，没有找到返回-1
+     */
+    public int findPic(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir, int[] point) {
+        return copyHit(findPic(frame, rect, deltaColor, sim, dir, false), point);
+    }
+
+    /**
+     * 同{@link #findPic(BgraImage, Rect, String, double, FindDirection)}, 并行查找
+     */
+    public FindResult findPicParallel(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir) {
+        return toFindResult(findPic(frame, rect, deltaColor, sim, dir, true));
+    }
+
+    /**
+     * 同{@link #findPic(BgraImage, Rect, String, double, FindDirection, int[])}, 并行查找
+     */
+    public int findPicParallel(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir, int[] point) {
+        return copyHit(findPic(frame, rect, deltaColor, sim, dir, true), point);
+    }
+
+    /**
+     * 查找所有模板的所有位置, 同一模板的结果按查找方向排列, 不同模板按序号排列. 结果包含相似度(0-100)
+     *
+     * @param frame      截取的图像
+     * @param rect       查找区域, 为null时查找整个图像
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @param buffer     接收结果的缓冲区, 调用前的内容会被清空
+     * @return 找到的结果数量
+     */
+    public int findPicEx(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir, FindResultBuffer buffer) {
+        return findPicEx(frame, rect, deltaColor, sim, dir, buffer, false);
+    }
+
+    /**
+     * 同{@link #findPicEx(BgraImage, Rect, String, double, FindDirection, FindResultBuffer)}, 并行查找
+     */
+    public int findPicExParallel(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir,
+                                 FindResultBuffer buffer) {
+        return findPicEx(frame, rect, deltaColor, sim, dir, buffer, true);
+    }
+
+    /**
+     * 分层查找图片, 只返回第一个找到的位置
+     *
+     * @param frame      截取的图像
+     * @param rect       查找区域, 为null时查找整个图像
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @return 找到的图片序号和对应坐标(图片左上角坐标)，没有找到返回null
+     */
+    public FindResult findPicPyramid(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir) {
+        return findPicPyramid(ImagePyramid.of(frame), rect, deltaColor, sim, dir);
+    }
+
+    /**
+     * 在已创建的金字塔上分层查找图片, 同一帧查找多次时使用
+     *
+     * @param pyramid    截取的图像的金字塔
+     * @param rect       查找区域, 为null时查找整个图像
+     * @param deltaColor 颜色色偏
+     * @param sim        相似度,取值范围0.1-1.0
+     * @param dir        查找方向
+     * @return 找到的图片序号和对应坐标(图片左上角坐标)，没有找到返回null
+     */
+    public FindResult findPicPyramid(ImagePyramid pyramid, Rect rect, String deltaColor, double sim, FindDirection dir) {
+        return toFindResult(findPic(pyramid.getImage(), pyramid, rect, deltaColor, sim, dir, false));
+    }
+
+    /**
+     * 同{@link #findPicEx(BgraImage, Rect, String, double, FindDirection, FindResultBuffer)}, 分层查找
+     */
+    public int findPicExPyramid(ImagePyramid pyramid, Rect rect, String deltaColor, double sim, FindDirection dir,
+                                FindResultBuffer buffer) {
+        return findPicEx(pyramid.getImage(), pyramid, rect, deltaColor, sim, dir, buffer, false);
+    }
+
+    private Hit findPic(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir, boolean parallel) {
+        return findPic(frame, null, rect, deltaColor, sim, dir, parallel);
+    }
+
+    private Hit findPic(BgraImage frame, ImagePyramid pyramid, Rect rect, String deltaColor, double sim, FindDirection dir,
+                        boolean parallel) {
+        Criteria criteria = new Criteria(deltaColor, sim);
+        for (int index = 0; index < templates.size(); index++) {
+            Scan scan = Scan.of(frame, rect, templates.get(index), index, dir, criteria, coarse(pyramid, index));
+            if (scan == null) {
+                continue;
+            }
+            Hit hit = parallel ? scan.firstParallel() : scan.first(0, scan.outerCount, null, 0);
+            if (hit != null) {
+                return hit;
+            }
+        }
+        return null;
+    }
+
+    private int findPicEx(BgraImage frame, Rect rect, String deltaColor, double sim, FindDirection dir,
+                          FindResultBuffer buffer, boolean parallel) {
+        return findPicEx(frame, null, rect, deltaColor, sim, dir, buffer, parallel);
+    }
+
+    private int findPicEx(BgraImage frame, ImagePyramid pyramid, Rect rect, String deltaColor, double sim, FindDirection dir,
+                          FindResultBuffer buffer, boolean parallel) {
+        Criteria criteria = new Criteria(deltaColor, sim);
+        buffer.clear();
+        for (int index = 0; index < templates.size(); index++) {
+            Scan scan = Scan.of(frame, rect, templates.get(index), index, dir, criteria, coarse(pyramid, index));
+            if (scan == null) {
+                continue;
+            }
+            if (scan.center) {
+                FindResultBuffer found = new FindResultBuffer();
+                scan.collect(parallel, found);
+                found.sortByDistance(scan.centerX - scan.template.getWidth() / 2, scan.centerY - scan.template.getHeight() / 2);
+                append(found, buffer);
+            } else {
+                scan.collect(parallel, buffer);
+            }
+        }
+        return buffer.size();
+    }
+
+    /**
+     * 分层查找时第index个模板在金字塔上的粗匹配条件, 不分层查找或模板没有可用的层时返回null
+     */
+    private Coarse coarse(ImagePyramid pyramid, int index) {
+        if (pyramid == null || coarseTemplates[index] == null) {
+            return null;
+        }
+        return new Coarse(coarseTemplates[index], pyramid);
+    }
+
+    private static void append(FindResultBuffer from, FindResultBuffer to) {
+        for (int i = 0; i < from.size(); i++) {
+            to.add(from.getIndex(i), from.getX(i), from.getY(i), from.getSimilarity(i));
+        }
+    }
+
+    private static FindResult toFindResult(Hit hit) {
+        return hit == null ? null : new FindResult(hit.index, Point.of(hit.x, hit.y), hit.similarity);
+    }
+
+    private static int copyHit(Hit hit, int[] point) {
+        if (hit == null) {
+            return -1;
+        }
+        point[0] = hit.x;
+        point[1] = hit.y;
+        return hit.index;
+    }
+
+    private static int chunkCount(int lines) {
+        int chunks = Math.min(Runtime.getRuntime().availableProcessors() * 4, lines / MIN_LINES_PER_CHUNK);
+        return Math.max(1, chunks);
+    }
+
+    /**
+     * 色偏和相似度
+     */
+    private static final class Criteria {
+        private final boolean exact;
+        private final boolean gray;
+        private final int deltaR;
+        private final int deltaG;
+        private final int deltaB;
+        private final double sim;
+
+        private Criteria(String deltaColor, double sim) {
+            if (!(sim > 0D && sim <= 1D)) {
+                throw new IllegalArgumentException("相似度取值范围0.1-1.0: " + sim);
+            }
+            this.sim = sim;
+            String delta = deltaColor == null ? "" : deltaColor.trim();
+            try {
+                if (delta.isEmpty()) {
+                    gray = false;
+                    deltaR = deltaG = deltaB = 0;
+                } else if (delta.length() == 2) {
+                    gray = true;
+                    deltaR = deltaG = deltaB = Integer.parseInt(delta, 16);
+                } else if (delta.length() == 6) {
+                    gray = false;
+                    deltaR = Integer.parseInt(delta.substring(0, 2), 16);
+                    deltaG = Integer.parseInt(delta.substring(2, 4), 16);
+                    deltaB = Integer.parseInt(delta.substring(4, 6), 16);
+                } else {
+                    throw new IllegalArgumentException("色偏格式不正确: " + deltaColor);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("色偏格式不正确: " + deltaColor, e);
+            }
+            exact = !gray && deltaR == 0 && deltaG == 0 && deltaB == 0;
+        }
+
+        /**
+         * 允许不匹配的像素数量
+         */
+        private int allowedMismatches(int total) {
+            return total - (int) Math.ceil(sim * total - 1e-9);
+        }
+
+        private boolean matches(int color, int expected) {
+            if (exact) {
+                return color == expected;
+            }
+            if (gray) {
+                return Math.abs(gray(color) - gray(expected)) <= deltaR;
+            }
+            return Math.abs(((color >> 16) & 0xFF) - ((expected >> 16) & 0xFF)) <= deltaR
+                    && Math.abs(((color >> 8) & 0xFF) - ((expected >> 8) & 0xFF)) <= deltaG
+                    && Math.abs((color & 0xFF) - (expected & 0xFF)) <= deltaB;
+        }
+
+        private static int gray(int color) {
+            return ImagePyramid.gray(color);
+        }
+    }
+
+    /**
+     * 模板在金字塔上的粗匹配条件和对应的缩小图
+     */
+    private static final class Coarse {
+        private final CoarseTemplate template;
+        private final ImagePyramid pyramid;
+
+        private Coarse(CoarseTemplate template, ImagePyramid pyramid) {
+            this.template = template;
+            this.pyramid = pyramid;
+        }
+
+        /**
+         * 按色偏确定每个窗口的颜色范围
+         *
+         * @return 粗匹配, 所有窗口的像素都不匹配也不超过允许的数量时排除不了任何位置, 返回null
+         */
+        private CoarseFilter filter(Criteria criteria, int allowed) {
+            long covered = (long) template.size() << (2 * template.level);
+            return allowed >= covered ? null : new CoarseFilter(template, pyramid, criteria, allowed);
+        }
+    }
+
+    /**
+     * 按格子排除不可能的位置
+     * <p>
+     * 格子的平均颜色超出窗口的范围时, 根据超出的多少估计格子内至少有几个像素不匹配: 匹配的像素在范围内, 不匹配的像素最多在0或255,
+     * 要把平均值拉到范围外至少需要这么多个. 各格子的估计值相加超过允许不匹配的像素数时排除.
+     * 缩小时每层向下取整, 格子的平均值比实际偏小不到level, 估计时按偏小最多的情况计算.
+     */
+    private static final class CoarseFilter {
+        private final int level;
+        private final boolean gray;
+        private final int[] cells;
+        private final int cellStride;
+        private final int[] offsets;
+        private final int[] lows;
+        private final int[] highs;
+        private final int allowed;
+        private final int area;
+
+        private CoarseFilter(CoarseTemplate template, ImagePyramid pyramid, Criteria criteria, int allowed) {
+            this.level = template.level;
+            this.gray = criteria.gray;
+            this.cells = gray ? pyramid.grayLevel(level) : pyramid.spreadLevel(level);
+            this.cellStride = pyramid.getWidth(level);
+            this.allowed = allowed;
+            this.area = 1 << (2 * level);
+            int count = template.size();
+            this.offsets = new int[count];
+            this.lows = new int[count];
+            this.highs = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = template.cellYs[i] * cellStride + template.cellXs[i];
+                if (gray) {
+                    lows[i] = template.minGrays[i] - criteria.deltaR;
+                    highs[i] = template.maxGrays[i] + criteria.deltaR;
+                } else {
+                    lows[i] = ColorSpec.spread(bound(template.minColors[i], -criteria.deltaR, -criteria.deltaG, -criteria.deltaB));
+                    highs[i] = ColorSpec.spread(bound(template.maxColors[i], criteria.deltaR, criteria.deltaG, criteria.deltaB));
+                }
+            }
+        }
+
+        /**
+         * 模板左上角所在的格子是否可能找到
+         */
+        private boolean passes(int cellX, int cellY) {
+            int base = cellY * cellStride + cellX;
+            int mismatches = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                int cell = cells[base + offsets[i]];
+                if (gray ? cell >= lows[i] && cell <= highs[i] : ColorSpec.inRange(cell, lows[i], highs[i])) {
+                    continue;
+                }
+                mismatches += gray ? mismatches(cell, lows[i], highs[i])
+                        : Math.max(mismatches(cell & 0x3FF, lows[i] & 0x3FF, highs[i] & 0x3FF),
+                        Math.max(mismatches((cell >> 10) & 0x3FF, (lows[i] >> 10) & 0x3FF, (highs[i] >> 10) & 0x3FF),
+                                mismatches(cell >> 20, lows[i] >> 20, highs[i] >> 20)));
+                if (mismatches > allowed) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 一个分量的平均值为value、匹配范围为[low, high]时, 格子内至少不匹配的像素数
+         */
+        private int mismatches(int value, int low, int high) {
+            int needed = 0;
+            if (value > high) {
+                needed = (area * (value - high) + 254 - high) / (255 - high);
+            } else if (value + level < low) {
+                needed = (area * (low - value - level) + low - 1) / low;
+            }
+            return Math.max(1, needed);
+        }
+
+        private static int bound(int color, int deltaR, int deltaG, int deltaB) {
+            int r = Math.min(255, Math.max(0, ((color >> 16) & 0xFF) + deltaR));
+            int g = Math.min(255, Math.max(0, ((color >> 8) & 0xFF) + deltaG));
+            int b = Math.min(255, Math.max(0, (color & 0xFF) + deltaB));
+            return (r << 16) | (g << 8) | b;
+        }
+    }
+
+    /**
+     * 单个模板在一个区域内的查找, 按{@link ScanOrder}遍历模板左上角的候选坐标
+     */
+    private static final class Scan {
+        private final int[] pixels;
+        private final int stride;
+        private final Template template;
+        private final int index;
+        private final Criteria criteria;
+        private final int[] offsets;
+        private final int[] colors;
+        private final int allowed;
+        private final ScanOrder order;
+        private final boolean center;
+        private final int centerX;
+        private final int centerY;
+        private final int outerCount;
+        private final int innerCount;
+        private final CoarseFilter filter;
+
+        private Scan(BgraImage frame, int x1, int y1, int x2, int y2, Template template, int index, FindDirection dir,
+                     Criteria criteria, Coarse coarse) {
+            this.pixels = frame.pixels();
+            this.stride = frame.getWidth();
+            this.template = template;
+            this.index = index;
+            this.criteria = criteria;
+            this.offsets = template.offsets(stride);
+            this.colors = template.colors();
+            this.allowed = criteria.allowedMismatches(colors.length);
+            this.order = new ScanOrder(x1, x2 - template.getWidth(), y1, y2 - template.getHeight(), dir);
+            this.center = order.center;
+            this.centerX = (x1 + x2) / 2;
+            this.centerY = (y1 + y2) / 2;
+            this.outerCount = order.outerCount;
+            this.innerCount = order.innerCount;
+            this.filter = coarse == null ? null : coarse.filter(criteria, allowed);
+        }
+
+        /**
+         * 创建查找, 区域放不下模板时返回null
+         */
+        private static Scan of(BgraImage frame, Rect rect, Template template, int index, FindDirection dir, Criteria criteria,
+                               Coarse coarse) {
+            int x1 = rect == null ? 0 : Math.max(0, rect.getX1());
+            int y1 = rect == null ? 0 : Math.max(0, rect.getY1());
+            int x2 = rect == null ? frame.getWidth() : Math.min(frame.getWidth(), rect.getX2());
+            int y2 = rect == null ? frame.getHeight() : Math.min(frame.getHeight(), rect.getY2());
+            if (x2 - x1 < template.getWidth() || y2 - y1 < template.getHeight()) {
+                return null;
+            }
+            return new Scan(frame, x1, y1, x2, y2, template, index, dir, criteria, coarse);
+        }
+
+        /**
+         * 匹配模板左上角在(x,y)的位置
+         *
+         * @return 匹配的像素数量, 不匹配的像素超过允许数量时返回-1
+         */
+        private int match(int x, int y) {
+            int base = y * stride + x;
+            int mismatches = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                if (!criteria.matches(pixels[base + offsets[i]], colors[i]) && ++mismatches > allowed) {
+                    return -1;
+                }
+            }
+            return offsets.length - mismatches;
+        }
+
+        private int similarity(int matched) {
+            return offsets.length == 0 ? 100 : (int) (matched * 100L / offsets.length);
+        }
+
+        /**
+         * 在外层[outerFrom, outerTo)范围内查找第一个位置; 从中心往外查找时返回离中心最近的位置
+         *
+         * @param found 并行查找时已找到结果的最小段号, 本段号更大时提前结束; 串行查找时为null
+         * @param chunk 本段号
+         */
+        private Hit first(int outerFrom, int outerTo, AtomicInteger found, int chunk) {
+            Hit best = null;
+            long bestDistance = Long.MAX_VALUE;
+            InnerRanges ranges = new InnerRanges();
+            for (int outer = outerFrom; outer < outerTo; outer++) {
+                if (found != null && !center && found.get() < chunk) {
+                    return null;
+                }
+                for (int range = 0, count = ranges.of(outer); range < count; range++) {
+                    for (int inner = ranges.from(range), to = ranges.to(range); inner < to; inner++) {
+                        int x = order.xOf(outer, inner);
+                        int y = order.yOf(outer, inner);
+                        int matched = match(x, y);
+                        if (matched < 0) {
+                            continue;
+                        }
+                        if (!center) {
+                            return new Hit(index, x, y, similarity(matched));
+                        }
+                        long dx = x + template.getWidth() / 2 - centerX;
+                        long dy = y + template.getHeight() / 2 - centerY;
+                        long distance = dx * dx + dy * dy;
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = new Hit(index, x, y, similarity(matched));
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        private Hit firstParallel() {
+            int chunks = chunkCount(outerCount);
+            if (chunks == 1) {
+                return first(0, outerCount, null, 0);
+            }
+            AtomicInteger found = new AtomicInteger(Integer.MAX_VALUE);
+            Hit[] hits = new Hit[chunks];
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                Hit hit = first(order.chunkStart(chunk, chunks), order.chunkStart(chunk + 1, chunks), found, chunk);
+                hits[chunk] = hit;
+                if (hit != null) {
+                    found.accumulateAndGet(chunk, Math::min);
+                }
+            });
+            Hit best = null;
+            long bestDistance = Long.MAX_VALUE;
+            for (Hit hit : hits) {
+                if (hit == null) {
+                    continue;
+                }
+                if (!center) {
+                    return hit;
+                }
+                long dx = hit.x + template.getWidth() / 2 - centerX;
+                long dy = hit.y + template.getHeight() / 2 - centerY;
+                long distance = dx * dx + dy * dy;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = hit;
+                }
+            }
+            return best;
+        }
+
+        private void collect(int outerFrom, int outerTo, FindResultBuffer buffer) {
+            InnerRanges ranges = new InnerRanges();
+            for (int outer = outerFrom; outer < outerTo; outer++) {
+                for (int range = 0, count = ranges.of(outer); range < count; range++) {
+                    for (int inner = ranges.from(range), to = ranges.to(range); inner < to; inner++) {
+                        int x = order.xOf(outer, inner);
+                        int y = order.yOf(outer, inner);
+                        int matched = match(x, y);
+                        if (matched >= 0) {
+                            buffer.add(index, x, y, similarity(matched));
+                        }
+                    }
+                }
+            }
+        }
+
+        private void collect(boolean parallel, FindResultBuffer buffer) {
+            int chunks = parallel ? chunkCount(outerCount) : 1;
+            if (chunks == 1) {
+                collect(0, outerCount, buffer);
+                return;
+            }
+            FindResultBuffer[] parts = new FindResultBuffer[chunks];
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                FindResultBuffer part = new FindResultBuffer();
+                collect(order.chunkStart(chunk, chunks), order.chunkStart(chunk + 1, chunks), part);
+                parts[chunk] = part;
+            });
+            for (FindResultBuffer part : parts) {
+                append(part, buffer);
+            }
+        }
+
+        /**
+         * 一行(列)中需要逐个匹配的内层区间. 没有粗匹配时是整行; 有粗匹配时只包含通过粗匹配的格子,
+         * 外层每s行(列)属于同一排格子, 结果在这s行(列)之间重复使用
+         */
+        private final class InnerRanges {
+            private final int[] bounds;
+            private int count;
+            private int band = Integer.MIN_VALUE;
+
+            private InnerRanges() {
+                if (filter == null) {
+                    bounds = new int[]{0, innerCount};
+                    count = 1;
+                } else {
+                    bounds = new int[2 * ((innerCount >> filter.level) + 2)];
+                }
+            }
+
+            /**
+             * 计算外层第outer行(列)的区间
+             *
+             * @return 区间数量
+             */
+            private int of(int outer) {
+                if (filter == null) {
+                    return count;
+                }
+                int level = filter.level;
+                int line = order.rowMajor ? order.yOf(outer, 0) : order.xOf(outer, 0);
+                if (line >> level == band) {
+                    return count;
+                }
+                band = line >> level;
+                count = 0;
+                int min = order.rowMajor ? order.minX : order.minY;
+                int max = order.rowMajor ? order.maxX : order.maxY;
+                boolean ascending = order.rowMajor ? order.xAscending : order.yAscending;
+                int firstCell = ascending ? min >> level : max >> level;
+                int lastCell = ascending ? max >> level : min >> level;
+                int step = ascending ? 1 : -1;
+                for (int cell = firstCell; cell != lastCell + step; cell += step) {
+                    boolean passes = order.rowMajor ? filter.passes(cell, band) : filter.passes(band, cell);
+                    if (!passes) {
+                        continue;
+                    }
+                    int low = Math.max(min, cell << level);
+                    int high = Math.min(max, (cell << level) + (1 << level) - 1);
+                    int from = ascending ? low - min : max - high;
+                    int to = (ascending ? high - min : max - low) + 1;
+                    if (count > 0 && bounds[2 * count - 1] == from) {
+                        bounds[2 * count - 1] = to;
+                    } else {
+                        bounds[2 * count] = from;
+                        bounds[2 * count + 1] = to;
+                        count++;
+                    }
+                }
+                return count;
+            }
+
+            private int from(int range) {
+                return bounds[2 * range];
+            }
+
+            private int to(int range) {
+                return bounds[2 * range + 1];
+            }
+        }
+    }
+
+    private static final class Hit {
+        private final int index;
+        private final int x;
+        private final int y;
+        private final int similarity;
+
+        private Hit(int index, int x, int y, int similarity) {
+            this.index = index;
+            this.x = x;
+            this.y = y;
+            this.similarity = similarity;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.MemoryInfo;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 模板包: 把大量模板图片合并成一个文件, 打开时整体映射到内存
+ * <p>
+ * 找图时大漠按名称从工作目录逐个打开图片文件, 图片很多时启动和第一次找图都要大量读盘. 模板包由{@link TemplatePackBuilder}生成,
+ * 打开后不再访问文件系统: 每张图片的数据直接位于映射的内存中, 可以通过{@link #forEachMemory(BiConsumer)}
+ * 交给大漠的LoadPicByte, 或者通过{@link #template(String)}交给{@link TemplateMatcher}.
+ * <p>
+ * 文件格式(小端字节序):
+ * <pre>
+ * 文件头: magic "DMPK"(4字节) 版本(int) 图片数量(int) 保留(int)
+ * 索引:   每张图片 名称长度(short) 名称(UTF-8) 数据偏移(long) 数据长度(int)
+ * 数据:   每张图片原始的BMP文件内容, 按8字节对齐
+ * </pre>
+ * 映射的内存在本对象被回收前一直有效. 交给大漠的地址在大漠使用期间(直到FreePic)必须保持本对象可达. 线程安全.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class TemplatePack {
+    static final int MAGIC = 0x4B504D44;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long address;
+    private final Map<String, long[]> entries;
+
+    private TemplatePack(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        this.address = Pointer.nativeValue(Native.getDirectBufferPointer(buffer));
+        this.entries = Collections.unmodifiableMap(readIndex(path, buffer));
+    }
+
+    /**
+     * 映射模板包文件
+     *
+     * @param path 模板包文件
+     * @return 模板包
+     */
+    public static TemplatePack open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new TemplatePack(path, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开模板包失败: " + path, e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 包中的图片名, 按添加的顺序排列
+     *
+     * @return 图片名
+     */
+    public Set<String> getNames() {
+        return entries.keySet();
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * 图片数据的只读视图
+     *
+     * @param name 图片名
+     * @return BMP文件内容
+     */
+    public ByteBuffer get(String name) {
+        long[] entry = entry(name);
+        ByteBuffer view = buffer.duplicate();
+        view.limit((int) (entry[0] + entry[1]));
+        view.position((int) entry[0]);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * 图片数据在映射内存中的地址和大小, 用于LoadPicByte
+     *
+     * @param name 图片名
+     * @return 内存信息
+     */
+    public MemoryInfo memoryInfo(String name) {
+        long[] entry = entry(name);
+        return new MemoryInfo(address + entry[0], entry[1]);
+    }
+
+    /**
+     * 依次处理每张图片的内存信息.
+     * <p>
+     * 需要在大漠对象中加载时, 不要直接在{@code DmSoft#forEachComponent}中调用LoadPicByte: 它只覆盖已经创建的大漠对象,
+     * 对象池之后创建的对象不会加载. 应交给{@code PictureLibrary}按需加载, 或者预先在池中所有对象中加载, 例如
+     * <pre>
+     * PictureLibrary library = new PictureLibrary(dmSoft, memoryBudget);
+     * library.register(pack);
+     * library.prefetch(new ArrayList&lt;&gt;(pack.getNames()));
+     * </pre>
+     *
+     * @param action 处理图片名和内存信息
+     */
+    public void forEachMemory(BiConsumer<String, MemoryInfo> action) {
+        entries.forEach((name, entry) -> action.accept(name, new MemoryInfo(address + entry[0], entry[1])));
+    }
+
+    /**
+     * 解码图片作为Java找图的模板
+     *
+     * @param name 图片名
+     * @return 模板, 名称为图片名
+     */
+    public Template template(String name) {
+        ByteBuffer data = get(name);
+        byte[] bmp = new byte[data.remaining()];
+        data.get(bmp);
+        return Template.of(name, BgraImage.readBmp(bmp));
+    }
+
+    private long[] entry(String name) {
+        long[] entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("模板包" + path + "中没有图片: " + name);
+        }
+        return entry;
+    }
+
+    private static Map<String, long[]> readIndex(Path path, ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("不是模板包文件: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("不支持的模板包版本: " + buffer.getInt(4));
+        }
+        int count = buffer.getInt(8);
+        Map<String, long[]> entries = new LinkedHashMap<>(count * 2);
+        ByteBuffer index = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        index.position(HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[index.getShort() & 0xFFFF];
+            index.get(name);
+            long offset = index.getLong();
+            long length = index.getInt() & 0xFFFFFFFFL;
+            if (offset < 0 || offset + length > buffer.capacity()) {
+                throw new IllegalArgumentException("模板包已损坏: " + path);
+            }
+            entries.put(new String(name, StandardCharsets.UTF_8), new long[]{offset, length});
+        }
+        return entries;
+    }
+}
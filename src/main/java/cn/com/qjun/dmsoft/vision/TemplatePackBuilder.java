@@ -0,0 +1,122 @@
+package cn.com.qjun.dmsoft.vision;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 生成{@link TemplatePack}模板包文件
+ * <p>
+ * 也可以作为命令行工具使用, 把目录中的所有BMP图片打包:
+ * <pre>
+ * java -cp dmsoft-java.jar cn.com.qjun.dmsoft.vision.TemplatePackBuilder 图片目录 模板包文件
+ * </pre>
+ * 图片名为相对目录的路径, 分隔符为反斜杠, 与找图时使用的名称一致.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class TemplatePackBuilder {
+    private static final int ALIGNMENT = 8;
+
+    private final Map<String, byte[]> images = new LinkedHashMap<>();
+
+    /**
+     * 添加一张图片
+     *
+     * @param name 图片名, 例如"1.bmp"
+     * @param bmp  BMP文件内容
+     * @return 本对象
+     */
+    public TemplatePackBuilder add(String name, byte[] bmp) {
+        if (name.getBytes(StandardCharsets.UTF_8).length > 0xFFFF) {
+            throw new IllegalArgumentException("图片名太长: " + name);
+        }
+        if (images.put(name, bmp) != null) {
+            throw new IllegalArgumentException("图片名重复: " + name);
+        }
+        return this;
+    }
+
+    /**
+     * 添加目录(包括子目录)中的所有BMP图片, 按路径排序
+     *
+     * @param dir 图片目录
+     * @return 本对象
+     */
+    public TemplatePackBuilder addDirectory(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().toLowerCase().endsWith(".bmp"))
+                    .sorted()
+                    .collect(Collectors.toList())) {
+                String name = dir.relativize(file).toString().replace('/', '\\');
+                add(name, Files.readAllBytes(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取图片目录失败: " + dir, e);
+        }
+        return this;
+    }
+
+    public int size() {
+        return images.size();
+    }
+
+    /**
+     * 写入模板包文件
+     *
+     * @param file 模板包文件
+     */
+    public void write(Path file) {
+        int indexSize = 0;
+        for (String name : images.keySet()) {
+            indexSize += 2 + name.getBytes(StandardCharsets.UTF_8).length + 8 + 4;
+        }
+        long offset = align(TemplatePack.HEADER_SIZE + indexSize);
+        ByteBuffer header = ByteBuffer.allocate((int) offset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(TemplatePack.MAGIC).putInt(TemplatePack.VERSION).putInt(images.size()).putInt(0);
+        for (Map.Entry<String, byte[]> entry : images.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            header.putShort((short) name.length).put(name).putLong(offset).putInt(entry.getValue().length);
+            offset = align(offset + entry.getValue().length);
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IllegalStateException("模板包超过2GB");
+        }
+        try (OutputStream output = Files.newOutputStream(file)) {
+            output.write(header.array());
+            byte[] padding = new byte[ALIGNMENT];
+            for (byte[] bmp : images.values()) {
+                output.write(bmp);
+                output.write(padding, 0, (int) (align(bmp.length) - bmp.length));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入模板包失败: " + file, e);
+        }
+    }
+
+    private static long align(long value) {
+        return (value + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("用法: TemplatePackBuilder 图片目录 模板包文件");
+            return;
+        }
+        TemplatePackBuilder builder = new TemplatePackBuilder().addDirectory(Paths.get(args[0]));
+        builder.write(Paths.get(args[1]));
+        System.out.println("已打包" + builder.size() + "张图片: " + args[1]);
+    }
+}
@@ -0,0 +1,150 @@
+package cn.com.qjun.dmsoft.vision;
+
+/**
+ * 按int输入的XXH64哈希
+ * <p>
+ * 结果与对同样的数据按小端字节序计算的XXH64(seed=0)一致, 即像素(00RRGGBB)按BGRA字节计算. 可以分多次输入,
+ * 例如把图块的每一行依次输入. 实例可以{@link #reset()}后重复使用, 非线程安全.
+ *
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public final class XxHash64 {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    /**
+     * 不满32字节的一组中已输入的8字节数
+     */
+    private final long[] lanes = new long[4];
+    private int laneCount;
+    /**
+     * 不满8字节时暂存的低4字节
+     */
+    private int pending;
+    private boolean hasPending;
+    private long length;
+
+    public XxHash64() {
+        reset();
+    }
+
+    /**
+     * 计算一段int的哈希
+     *
+     * @param values 数据
+     * @param offset 起始位置
+     * @param length int个数
+     * @return 哈希值
+     */
+    public static long hash(int[] values, int offset, int length) {
+        return new XxHash64().update(values, offset, length).digest();
+    }
+
+    public XxHash64 reset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        laneCount = 0;
+        hasPending = false;
+        length = 0;
+        return this;
+    }
+
+    /**
+     * 输入一段int, 每个int按小端4个字节
+     *
+     * @param values 数据
+     * @param offset 起始位置
+     * @param count  int个数
+     * @return 本对象
+     */
+    public XxHash64 update(int[] values, int offset, int count) {
+        int i = offset;
+        int end = offset + count;
+        length += 4L * count;
+        if (hasPending && i < end) {
+            addLane((pending & 0xFFFFFFFFL) | ((long) values[i++] << 32));
+            hasPending = false;
+        }
+        // 凑满一组后按32字节一组处理, 不经过lanes数组
+        while (laneCount != 0 && i + 1 < end) {
+            addLane((values[i] & 0xFFFFFFFFL) | ((long) values[i + 1] << 32));
+            i += 2;
+        }
+        for (; i + 7 < end; i += 8) {
+            v1 = round(v1, (values[i] & 0xFFFFFFFFL) | ((long) values[i + 1] << 32));
+            v2 = round(v2, (values[i + 2] & 0xFFFFFFFFL) | ((long) values[i + 3] << 32));
+            v3 = round(v3, (values[i + 4] & 0xFFFFFFFFL) | ((long) values[i + 5] << 32));
+            v4 = round(v4, (values[i + 6] & 0xFFFFFFFFL) | ((long) values[i + 7] << 32));
+        }
+        for (; i + 1 < end; i += 2) {
+            addLane((values[i] & 0xFFFFFFFFL) | ((long) values[i + 1] << 32));
+        }
+        if (i < end) {
+            pending = values[i];
+            hasPending = true;
+        }
+        return this;
+    }
+
+    /**
+     * 已输入数据的哈希, 不影响继续输入
+     *
+     * @return 哈希值
+     */
+    public long digest() {
+        long hash;
+        if (length >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += length;
+        for (int i = 0; i < laneCount; i++) {
+            hash ^= round(0, lanes[i]);
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (hasPending) {
+            hash ^= (pending & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private void addLane(long lane) {
+        lanes[laneCount++] = lane;
+        if (laneCount == 4) {
+            v1 = round(v1, lanes[0]);
+            v2 = round(v2, lanes[1]);
+            v3 = round(v3, lanes[2]);
+            v4 = round(v4, lanes[3]);
+            laneCount = 0;
+        }
+    }
+
+    private static long round(long acc, long lane) {
+        return Long.rotateLeft(acc + lane * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(long hash, long acc) {
+        return (hash ^ round(0, acc)) * PRIME1 + PRIME4;
+    }
+}
@@ -1,9 +1,11 @@
 package cn.com.qjun.dmsoft.windows.game.mhxy.function;
 
+import cn.com.qjun.dmsoft.backend.DmBackend;
 import cn.com.qjun.dmsoft.domain.FindResult;
 import cn.com.qjun.dmsoft.domain.Point;
 import cn.com.qjun.dmsoft.domain.Rect;
 import cn.com.qjun.dmsoft.enums.FindDirection;
+import cn.com.qjun.dmsoft.operations.DmBatch;
 import cn.com.qjun.dmsoft.windows.index.IndexForm;
 
 import java.util.Collections;
@@ -14,17 +16,14 @@ public class MhWebFengyaoFunctions {
      * 点击主页
      */
     public static boolean clickHome(long hwnd) {
-        Rect windowRect = IndexForm.dmSoft.opsForWindow().getWindowRect(hwnd);
-        System.out.println("windowRect:"+windowRect.toString());
-        FindResult findResult = IndexForm.dmSoft.opsForOcr().findStr(windowRect, Collections.singletonList("主页"), "0ef0e9-202020", 0.5);
-        System.out.println("FindResult:"+findResult);
-        if (findResult != null) {
-            int x = findResult.getPoint().getX();
-            int y = findResult.getPoint().getY();
-            IndexForm.dmSoft.opsForInput().moveTo(Point.of(x, y));
-            IndexForm.dmSoft.opsForInput().leftClick();
-        }
-        return true;
+        // 取窗口区域、找字、移动、点击作为一批调用，在同一个大漠对象上连续执行，任何一步失败则停止
+        DmBatch batch = new DmBatch();
+        DmBatch.Step windowRect = batch.call("GetWindowRect", hwnd, DmBackend.OUT, DmBackend.OUT, DmBackend.OUT, DmBackend.OUT).expectEq1();
+        DmBatch.Step findResult = batch.call("FindStr", windowRect.output(0), windowRect.output(1), windowRect.output(2), windowRect.output(3),
+                "主页", "0ef0e9-202020", 0.5, DmBackend.OUT, DmBackend.OUT).expectFound();
+        batch.call("MoveTo", findResult.output(0), findResult.output(1)).expectEq1();
+        batch.call("LeftClick").expectEq1();
+        return batch.execute(IndexForm.dmSoft).isCompleted();
     }
 
     /**
@@ -0,0 +1,57 @@
+package cn.com.qjun.dmsoft.backend;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class ComponentPoolTest {
+
+    @Test
+    public void testInitializerFailure() {
+        ExecutorService apartment = Executors.newSingleThreadExecutor();
+        AtomicInteger sequence = new AtomicInteger();
+        List<Integer> released = new ArrayList<>();
+        List<Integer> initialized = new ArrayList<>();
+        ComponentPool<Integer> pool = new ComponentPool<>(2, sequence::incrementAndGet, released::add, apartment);
+        AtomicInteger failures = new AtomicInteger(1);
+        pool.setInitializer(() -> {
+            if (failures.getAndDecrement() > 0) {
+                // 例如注册失败
+                throw new IllegalStateException("reg failed");
+            }
+            initialized.add(pool.current());
+        });
+        try {
+            Assertions.assertThrows(IllegalStateException.class, () -> pool.withComponent(pool::current));
+            // 初始化失败的对象已释放, 不在池中, 名额已归还
+            Assertions.assertEquals(0, pool.getCreatedCount());
+            Assertions.assertEquals(0, pool.getIdleCount());
+            List<Integer> visited = new ArrayList<>();
+            pool.forEachComponent(() -> visited.add(pool.current()));
+            Assertions.assertTrue(visited.isEmpty());
+
+            // 之后租用时重新创建, 只会拿到初始化成功的对象
+            Assertions.assertEquals(Integer.valueOf(2), pool.withComponent(pool::current));
+            pool.prestartAll();
+            Assertions.assertEquals(2, pool.getCreatedCount());
+            Assertions.assertEquals(2, pool.getIdleCount());
+            pool.forEachComponent(() -> visited.add(pool.current()));
+            Assertions.assertEquals(initialized, visited);
+            Assertions.assertFalse(visited.contains(1));
+        } finally {
+            pool.close();
+            apartment.shutdown();
+        }
+        Assertions.assertEquals(1, released.get(0).intValue());
+        Assertions.assertEquals(3, released.size());
+    }
+}
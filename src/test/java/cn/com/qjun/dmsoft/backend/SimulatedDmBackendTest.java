@@ -0,0 +1,209 @@
+package cn.com.qjun.dmsoft.backend;
+
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.domain.Point;
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import cn.com.qjun.dmsoft.operations.DmAsync;
+import cn.com.qjun.dmsoft.operations.DmBatch;
+import cn.com.qjun.dmsoft.operations.DmOptions;
+import cn.com.qjun.dmsoft.operations.DmSoft;
+import cn.com.qjun.dmsoft.operations.InputOperations;
+import cn.com.qjun.dmsoft.vision.Frame;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class SimulatedDmBackendTest {
+
+    @Test
+    public void testScriptedCalls() throws Exception {
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("GetWindowRect", 1L, 10, 20, 810, 620)
+                .respond("FindPic", 0L, 100, 200)
+                .script("ClientToScreen", (args, outputs) -> {
+                    outputs[0] += 10;
+                    outputs[1] += 20;
+                    return 1;
+                })
+                .build();
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build())) {
+            Rect windowRect = dmSoft.opsForWindow().getWindowRect(1L);
+            Assertions.assertEquals(Rect.of(10, 20, 810, 620), windowRect);
+
+            FindResult findResult = dmSoft.opsForColour().findPic(windowRect, Collections.singletonList("test.bmp"), "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+            Assertions.assertEquals(0, findResult.getIndex());
+            Assertions.assertEquals(Point.of(100, 200), findResult.getPoint());
+
+            Assertions.assertEquals(Point.of(15, 25), dmSoft.opsForWindow().clientToScreen(1L, Point.of(5, 5)));
+            Assertions.assertEquals(Points.pack(15, 25), dmSoft.opsForWindow().clientToScreen(1L, Points.pack(5, 5)));
+            Assertions.assertEquals(1L, backend.getCallCount("FindPic"));
+        }
+    }
+
+    @Test
+    public void testExResultsAreMutable() throws Exception {
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("FindPicEx", "0,30,40|1,10,20")
+                .build();
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build())) {
+            List<FindResult> results = dmSoft.opsForColour().findPicEx(Rect.of(0, 0, 800, 600), Arrays.asList("a.bmp", "b.bmp"),
+                    "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+            results.sort(Comparator.comparingInt(result -> result.getPoint().getX()));
+            Assertions.assertEquals(1, results.get(0).getIndex());
+            results.remove(0);
+            Assertions.assertEquals(Collections.singletonList(new FindResult(0, Point.of(30, 40), null)), results);
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("GetWindowRect", 1L, 10, 20, 810, 620)
+                .script("FindStr", (args, outputs) -> {
+                    outputs[0] = ((Number) args[0]).intValue() + 5;
+                    outputs[1] = ((Number) args[1]).intValue() + 5;
+                    return 0;
+                })
+                .build();
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build())) {
+            DmBatch batch = new DmBatch();
+            DmBatch.Step rect = batch.call("GetWindowRect", 1L, DmBackend.OUT, DmBackend.OUT, DmBackend.OUT, DmBackend.OUT).expectEq1();
+            DmBatch.Step find = batch.call("FindStr", rect.output(0), rect.output(1), rect.output(2), rect.output(3),
+                    "主页", "0ef0e9-202020", 0.5, DmBackend.OUT, DmBackend.OUT).expectFound();
+            batch.call("MoveTo", find.output(0).plus(1), find.output(1).plus(1)).expectEq1();
+            batch.call("LeftClick").expectEq1();
+
+            DmBatch.Result result = batch.execute(dmSoft);
+            Assertions.assertTrue(result.isCompleted());
+            Assertions.assertEquals(15, result.getOutput(find, 0));
+            Assertions.assertEquals(25, result.getOutput(find, 1));
+            Assertions.assertArrayEquals(new int[]{10, 20, 810, 620, 15, 25}, result.getOutputs());
+            Assertions.assertEquals(1L, backend.getCallCount("LeftClick"));
+        }
+    }
+
+    @Test
+    public void testAsyncSlowCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .script("FindPic", (args, outputs) -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    outputs[0] = 100;
+                    outputs[1] = 200;
+                    return 0;
+                })
+                .respond("GetCursorPos", 1L, 5, 6)
+                .build();
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build());
+             DmAsync async = new DmAsync(dmSoft, 2)) {
+            CompletableFuture<FindResult> slow = async.opsForColour(ops -> ops.findPic(Rect.of(0, 0, 800, 600),
+                    Collections.singletonList("test.bmp"), "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+            // 耗时的调用占用一个工作线程, 其它调用由另一个工作线程依次执行
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertEquals(Point.of(5, 6), async.opsForInput(InputOperations::getCursorPos).get(5, TimeUnit.SECONDS));
+            }
+            Assertions.assertFalse(slow.isDone());
+            release.countDown();
+            Assertions.assertEquals(Point.of(100, 200), slow.get(5, TimeUnit.SECONDS).getPoint());
+        }
+    }
+
+    @Test
+    public void testScreenChangeCache() throws Exception {
+        Rect region = Rect.of(0, 0, 64, 64);
+        Memory screen = new Memory(64 * 64 * 4);
+        screen.clear();
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("GetScreenData", Pointer.nativeValue(screen))
+                .respond("FindPic", 0L, 10, 20)
+                .respond("Ocr", "abc")
+                .build();
+        DmOptions options = DmOptions.builder("data", "", "").withBackend(backend)
+                .withScreenChangeTracking(region, 32, 0L).build();
+        try (DmSoft dmSoft = new DmSoft(options)) {
+            Rect left = Rect.of(0, 0, 32, 64);
+            for (int i = 0; i < 3; i++) {
+                FindResult findResult = dmSoft.opsForColour().findPic(left, Collections.singletonList("test.bmp"), "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+                Assertions.assertEquals(Point.of(10, 20), findResult.getPoint());
+                Assertions.assertEquals("abc", dmSoft.opsForOcr().ocr(left, "ffffff-000000", 0.9));
+            }
+            Assertions.assertEquals(1L, backend.getCallCount("FindPic"));
+            Assertions.assertEquals(1L, backend.getCallCount("Ocr"));
+
+            // 右半边变化不影响左半边的结果
+            screen.setInt(40 * 4, 0xFFFFFF);
+            dmSoft.opsForColour().findPic(left, Collections.singletonList("test.bmp"), "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+            Assertions.assertEquals(1L, backend.getCallCount("FindPic"));
+            // 左半边变化后重新查找
+            screen.setInt(4, 0xFFFFFF);
+            dmSoft.opsForColour().findPic(left, Collections.singletonList("test.bmp"), "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+            Assertions.assertEquals(2L, backend.getCallCount("FindPic"));
+            // 改变字库后重新识别
+            dmSoft.opsForOcr().useDict(0);
+            dmSoft.opsForOcr().ocr(left, "ffffff-000000", 0.9);
+            Assertions.assertEquals(2L, backend.getCallCount("Ocr"));
+        }
+    }
+
+    @Test
+    public void testResultCache() throws Exception {
+        Memory screen = new Memory(64 * 64 * 4);
+        screen.clear();
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("GetScreenData", Pointer.nativeValue(screen))
+                .script("Ocr", (args, outputs) -> screen.getInt(0) == 0 ? "100" : "99")
+                .build();
+        DmOptions options = DmOptions.builder("data", "", "").withBackend(backend)
+                .withResultCache(16, 60_000L).build();
+        try (DmSoft dmSoft = new DmSoft(options)) {
+            Rect hud = Rect.of(0, 0, 16, 8);
+            // 画面内容在两种状态之间切换, 每种状态只识别一次
+            for (int i = 0; i < 4; i++) {
+                screen.setInt(0, i % 2 == 0 ? 0 : 0xFFFFFF);
+                Assertions.assertEquals(i % 2 == 0 ? "100" : "99", dmSoft.opsForOcr().ocr(hud, "ffffff-000000", 0.9));
+            }
+            Assertions.assertEquals(2L, backend.getCallCount("Ocr"));
+            Assertions.assertEquals(2L, dmSoft.getMetrics().snapshot("Ocr").getCacheHits());
+            Assertions.assertEquals(2L, dmSoft.getMetrics().snapshot("Ocr").getCacheMisses());
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> DmOptions.builder("data", "", "")
+                .withResultCache(16, 1000L).withScreenChangeTracking(Rect.of(0, 0, 64, 64), 32, 0L).build());
+    }
+
+    @Test
+    public void testCaptureFrame() throws Exception {
+        Memory screen = new Memory(4 * 4 * 4);
+        screen.clear();
+        screen.setInt(0, 0x123456);
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("GetScreenData", Pointer.nativeValue(screen))
+                .build();
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build())) {
+            Rect rect = Rect.of(0, 0, 4, 4);
+            Frame first = dmSoft.opsForColour().captureFrame(rect);
+            Assertions.assertEquals(Integer.valueOf(0x123456), dmSoft.opsForColour().withFrame(rect, frame -> frame.getRgb(0, 0)));
+            // 同一个大漠对象再次截图后之前的帧失效
+            Assertions.assertFalse(first.isValid());
+            Assertions.assertThrows(IllegalStateException.class, () -> first.getRgb(0, 0));
+        }
+    }
+}
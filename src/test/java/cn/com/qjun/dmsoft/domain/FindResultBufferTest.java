@@ -0,0 +1,42 @@
+package cn.com.qjun.dmsoft.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FindResultBufferTest {
+
+    @Test
+    public void testSortFilterNearest() {
+        FindResultBuffer buffer = new FindResultBuffer(1);
+        Assertions.assertEquals(4, buffer.parse("0,300,10|1,5,200|0,100,10|2,50,50", false));
+        Assertions.assertEquals(FindResultBuffer.NO_SIMILARITY, buffer.getSimilarity(0));
+
+        buffer.sortByPosition();
+        Assertions.assertEquals(100, buffer.getX(0));
+        Assertions.assertEquals(300, buffer.getX(1));
+        Assertions.assertEquals(50, buffer.getX(2));
+        Assertions.assertEquals(5, buffer.getX(3));
+
+        Assertions.assertEquals(2, buffer.nearest(60, 60));
+        buffer.sortByDistance(0, 0);
+        Assertions.assertEquals(Point.of(50, 50), buffer.getPoint(0));
+
+        Assertions.assertEquals(2, buffer.retainIndex(0));
+        Assertions.assertEquals(1, buffer.retainWithin(Rect.of(0, 0, 200, 100)));
+        Assertions.assertEquals(new FindResult(0, Point.of(100, 10), null), buffer.toList().get(0));
+
+        Assertions.assertEquals(3, buffer.parse("0,80,1,1|1,95,2,2|2,95,3,3", true));
+        buffer.sortBySimilarity();
+        Assertions.assertEquals(1, buffer.getIndex(0));
+        Assertions.assertEquals(2, buffer.getIndex(1));
+        Assertions.assertEquals(0, buffer.best());
+        Assertions.assertEquals(2, buffer.retainMinSimilarity(90));
+
+        Assertions.assertEquals(0, buffer.parse("", true));
+        Assertions.assertTrue(buffer.toList().isEmpty());
+    }
+}
@@ -0,0 +1,37 @@
+package cn.com.qjun.dmsoft.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class PointsTest {
+
+    @Test
+    public void testPackAndGeometry() {
+        long p = Points.pack(-5, 1080);
+        Assertions.assertEquals(-5, Points.x(p));
+        Assertions.assertEquals(1080, Points.y(p));
+        Assertions.assertEquals(Point.of(-2, 1076), Points.toPoint(Points.translate(p, 3, -4)));
+        Assertions.assertFalse(Points.isFound(Points.NOT_FOUND));
+
+        long min = Points.pack(0, 0);
+        long max = Points.pack(100, 50);
+        Assertions.assertTrue(Rects.contains(min, max, Points.pack(99, 49)));
+        Assertions.assertFalse(Rects.contains(min, max, Points.pack(100, 10)));
+        Assertions.assertEquals(Points.pack(99, 0), Rects.clamp(min, max, Points.pack(500, -20)));
+
+        long[] out = new long[2];
+        Assertions.assertTrue(Rects.intersect(min, max, Points.pack(50, 25), Points.pack(200, 200), out));
+        Assertions.assertEquals(Rect.of(50, 25, 100, 50), Rects.toRect(out[0], out[1]));
+        Assertions.assertFalse(Rects.intersect(min, max, Points.pack(100, 0), Points.pack(200, 50), out));
+        Rects.union(min, max, Points.pack(-10, 10), Points.pack(20, 60), out);
+        Assertions.assertEquals(Rect.of(-10, 0, 100, 60), Rects.toRect(out[0], out[1]));
+        Rects.expand(min, max, 5, out);
+        Assertions.assertEquals(110, Rects.width(out[0], out[1]));
+        Rects.translate(min, max, 10, 20, out);
+        Assertions.assertEquals(Points.pack(60, 45), Rects.center(out[0], out[1]));
+    }
+}
@@ -0,0 +1,54 @@
+package cn.com.qjun.dmsoft.metrics;
+
+import cn.com.qjun.dmsoft.backend.SimulatedDmBackend;
+import cn.com.qjun.dmsoft.domain.Point;
+import cn.com.qjun.dmsoft.operations.DmOptions;
+import cn.com.qjun.dmsoft.operations.DmSoft;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class DmCallTracingTest {
+
+    @Test
+    public void testCallsAreRecorded() throws Exception {
+        SimulatedDmBackend backend = SimulatedDmBackend.builder().build();
+        Path file = Files.createTempFile("dmsoft", ".jfr");
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build());
+             Recording recording = new Recording()) {
+            recording.enable("cn.com.qjun.dmsoft.Call");
+            recording.start();
+            dmSoft.opsForInput().moveTo(Point.of(3, 4));
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> "MoveTo".equals(event.getString("method")))
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            Assertions.assertEquals("[3, 4]", event.getString("arguments"));
+            Assertions.assertEquals(1L, event.getLong("returnCode"));
+            Assertions.assertTrue(event.getBoolean("success"));
+            Assertions.assertEquals(Thread.currentThread().getName(), event.getThread().getJavaName());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testDisabledWithoutRecording() {
+        Assertions.assertNull(DmCallTracing.begin());
+    }
+}
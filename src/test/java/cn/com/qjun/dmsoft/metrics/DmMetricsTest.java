@@ -0,0 +1,61 @@
+package cn.com.qjun.dmsoft.metrics;
+
+import cn.com.qjun.dmsoft.backend.SimulatedDmBackend;
+import cn.com.qjun.dmsoft.domain.Point;
+import cn.com.qjun.dmsoft.operations.DmOptions;
+import cn.com.qjun.dmsoft.operations.DmSoft;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class DmMetricsTest {
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        long[] counts = histogram.copyCounts();
+        long p50 = LatencyHistogram.valueAtPercentile(counts, 1000, 50D);
+        long p99 = LatencyHistogram.valueAtPercentile(counts, 1000, 99D);
+        Assertions.assertTrue(Math.abs(p50 - 500_000L) <= 500_000L / 64, "p50=" + p50);
+        Assertions.assertTrue(Math.abs(p99 - 990_000L) <= 990_000L / 64, "p99=" + p99);
+        Assertions.assertEquals(1_000_000L, histogram.getMax());
+        for (long value = 0; value < 1L << 20; value += 7) {
+            int index = LatencyHistogram.indexOf(value);
+            Assertions.assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+            Assertions.assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+        }
+    }
+
+    @Test
+    public void testDmSoftCallsAreCounted() throws Exception {
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("LeftClick", 0L)
+                .build();
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build())) {
+            dmSoft.getMetrics().registerMBean("test");
+            dmSoft.opsForInput().moveTo(Point.of(1, 2));
+            Assertions.assertThrows(RuntimeException.class, () -> dmSoft.opsForInput().leftClick());
+
+            MethodStats moveTo = dmSoft.getMetrics().snapshot("MoveTo");
+            Assertions.assertEquals(1L, moveTo.getCalls());
+            Assertions.assertEquals(0L, moveTo.getErrors());
+            Assertions.assertEquals(1L, dmSoft.getMetrics().snapshot("LeftClick").getErrors());
+
+            ObjectName objectName = ObjectName.getInstance("cn.com.qjun.dmsoft:type=DmMetrics,name=\"test\"");
+            Object totalErrors = ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "TotalErrors");
+            Assertions.assertEquals(1L, totalErrors);
+            Object methodStats = ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "MethodStats");
+            Assertions.assertTrue(methodStats instanceof CompositeData[]);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cn.com.qjun.dmsoft.operations;
+
+import cn.com.qjun.dmsoft.backend.SimulatedDmBackend;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class PictureLibraryTest {
+
+    @Test
+    public void testLoadAndEvict() throws Exception {
+        List<String> freed = Collections.synchronizedList(new ArrayList<>());
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                // 每张图片10x10, 解码后400字节
+                .respond("GetPicSize", "10,10")
+                .respond("FindPic", 0L, 5, 6)
+                .script("FreePic", (args, outputs) -> {
+                    freed.add((String) args[0]);
+                    return 1;
+                })
+                .build();
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build())) {
+            PictureLibrary library = new PictureLibrary(dmSoft, 1000);
+            Rect rect = Rect.of(0, 0, 100, 100);
+            library.findPic(rect, Arrays.asList("a.bmp", "b.bmp"), "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+            library.findPic(rect, Collections.singletonList("a.bmp"), "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+            Assertions.assertEquals(2L, backend.getCallCount("LoadPic"));
+            Assertions.assertEquals(800L, library.getLoadedBytes());
+
+            // 超出预算, 释放最久没有使用的b.bmp
+            Assertions.assertNotNull(library.findPic(rect, Collections.singletonList("c.bmp"), "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+            Assertions.assertEquals(Collections.singletonList("b.bmp"), freed);
+            Assertions.assertEquals(Arrays.asList("a.bmp", "c.bmp"), library.getLoadedPictures());
+            Assertions.assertEquals(1L, library.getEvictions());
+            Assertions.assertEquals(3L, backend.getCallCount("FindPic"));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> library.ensureLoaded(Collections.singletonList("*.bmp")));
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("GetPicSize", "10,10")
+                .build();
+        Path manifest = Files.createTempFile("pictures", ".txt");
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build())) {
+            Files.write(manifest, Arrays.asList("# 常用图片", "a.bmp", "", "b.bmp", "c.bmp", "d.bmp"), StandardCharsets.UTF_8);
+            PictureLibrary library = new PictureLibrary(dmSoft, 1000);
+            // 加载到预算用完为止
+            Assertions.assertEquals(3, library.prefetch(manifest));
+            Assertions.assertEquals(Arrays.asList("a.bmp", "b.bmp", "c.bmp"), library.getLoadedPictures());
+            Assertions.assertEquals(0L, library.getEvictions());
+        } finally {
+            Files.delete(manifest);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package cn.com.qjun.dmsoft.operations;
+
+import cn.com.qjun.dmsoft.backend.SimulatedDmBackend;
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class TrackingSearchTest {
+
+    @Test
+    public void testTracking() throws Exception {
+        // 图片10x10, 左上角在target处, 完整在查找区域内才能找到
+        int[] target = {100, 100};
+        List<Rect> searched = Collections.synchronizedList(new ArrayList<>());
+        SimulatedDmBackend backend = SimulatedDmBackend.builder()
+                .respond("GetPicSize", "10,10")
+                .script("FindPic", (args, outputs) -> {
+                    Rect rect = Rect.of((Integer) args[0], (Integer) args[1], (Integer) args[2], (Integer) args[3]);
+                    searched.add(rect);
+                    if (target[0] < rect.getX1() || target[1] < rect.getY1()
+                            || target[0] + 10 > rect.getX2() || target[1] + 10 > rect.getY2()) {
+                        return -1;
+                    }
+                    outputs[0] = target[0];
+                    outputs[1] = target[1];
+                    return 0;
+                })
+                .build();
+        try (DmSoft dmSoft = new DmSoft(DmOptions.builder("data", "", "").withBackend(backend).build())) {
+            TrackingSearch tracking = new TrackingSearch(dmSoft, 8, 32);
+            Rect screen = Rect.of(0, 0, 800, 600);
+            List<String> picNames = Collections.singletonList("a.bmp");
+
+            // 第一次查找完整区域
+            FindResult result = tracking.findPic(1L, screen, picNames, "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B);
+            Assertions.assertEquals(100, result.getPoint().getX());
+            Assertions.assertEquals(Collections.singletonList(screen), searched);
+
+            // 移动几个像素, 在第一级邻域内找到
+            searched.clear();
+            target[0] = 105;
+            Assertions.assertNotNull(tracking.findPic(1L, screen, picNames, "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+            Assertions.assertEquals(Collections.singletonList(Rect.of(92, 92, 118, 118)), searched);
+
+            // 移动较远, 第二级邻域内找到
+            searched.clear();
+            target[0] = 130;
+            Assertions.assertNotNull(tracking.findPic(1L, screen, picNames, "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+            Assertions.assertEquals(2, searched.size());
+            Assertions.assertEquals(Rect.of(73, 68, 147, 142), searched.get(1));
+
+            // 其他窗口没有记录, 查找完整区域
+            searched.clear();
+            Assertions.assertNotNull(tracking.findPic(2L, screen, picNames, "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+            Assertions.assertEquals(Collections.singletonList(screen), searched);
+
+            // 跳到别处, 邻域都没有找到后查找完整区域
+            searched.clear();
+            target[0] = 500;
+            target[1] = 400;
+            Assertions.assertNotNull(tracking.findPic(1L, screen, picNames, "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+            Assertions.assertEquals(3, searched.size());
+            Assertions.assertEquals(screen, searched.get(2));
+
+            // 完全没有找到时清除记录, 下一次直接查找完整区域
+            target[0] = 900;
+            Assertions.assertNull(tracking.findPic(1L, screen, picNames, "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+            searched.clear();
+            Assertions.assertNull(tracking.findPic(1L, screen, picNames, "000000", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+            Assertions.assertEquals(Collections.singletonList(screen), searched);
+
+            TrackingSearch.Stats stats = tracking.getStats();
+            Assertions.assertEquals(7L, stats.getSearches());
+            Assertions.assertArrayEquals(new long[]{1L, 1L}, stats.getNeighbourhoodHits());
+            Assertions.assertEquals(3L, stats.getFullHits());
+            Assertions.assertEquals(2L, stats.getMisses());
+            Assertions.assertEquals(2D / 7, stats.getHitRate(), 1e-9);
+            Assertions.assertEquals(1L, backend.getCallCount("GetPicSize"));
+        }
+    }
+
+    @Test
+    public void testInvalidMargins() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TrackingSearch(null, 32, 8));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TrackingSearch(null, -1));
+    }
+}
@@ -0,0 +1,60 @@
+package cn.com.qjun.dmsoft.utils;
+
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.domain.FindResultList;
+import cn.com.qjun.dmsoft.domain.OcrResult;
+import cn.com.qjun.dmsoft.domain.OcrResultList;
+import cn.com.qjun.dmsoft.domain.Point;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class ResultScannerTest {
+
+    @Test
+    public void testParseFindResults() {
+        String str = "0,100,200|3,-5,7|12,1919,1079";
+        int count = ResultScanner.countItems(str, '|');
+        int[] indexes = new int[count];
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        Assertions.assertEquals(3, ResultScanner.parseFindResults(str, false, indexes, xs, ys, null));
+        FindResultList list = new FindResultList(count, indexes, xs, ys, null);
+        Assertions.assertEquals(new FindResult(3, Point.of(-5, 7), null), list.get(1));
+        Assertions.assertEquals(1079, list.getY(2));
+
+        String withSim = "1,95,10,20|2,80,30,40";
+        int[] sims = new int[2];
+        Assertions.assertEquals(2, ResultScanner.parseFindResults(withSim, true, indexes, xs, ys, sims));
+        Assertions.assertEquals(new FindResult(2, Point.of(30, 40), 80), new FindResultList(2, indexes, xs, ys, sims).get(1));
+
+        Assertions.assertEquals(0, ResultScanner.countItems("", '|'));
+        Assertions.assertThrows(NumberFormatException.class, () -> ResultScanner.parseFindResults("1,2", false, indexes, xs, ys, null));
+        Assertions.assertThrows(NumberFormatException.class, () -> ResultScanner.parseFindResults("1,a,2", false, indexes, xs, ys, null));
+    }
+
+    @Test
+    public void testParseOcrResults() {
+        String str = "主页$10$20|确定$30$40";
+        int[] textStarts = new int[2];
+        int[] textEnds = new int[2];
+        int[] xs = new int[2];
+        int[] ys = new int[2];
+        Assertions.assertEquals(2, ResultScanner.parseOcrResults(str, textStarts, textEnds, xs, ys));
+        OcrResultList list = new OcrResultList(str, 2, textStarts, textEnds, xs, ys);
+        Assertions.assertEquals(new OcrResult("确定", Point.of(30, 40)), list.get(1));
+        Assertions.assertTrue(list.textEquals(0, "主页"));
+        Assertions.assertFalse(list.textEquals(0, "主"));
+    }
+
+    @Test
+    public void testParseLongs() {
+        long[] values = new long[3];
+        Assertions.assertEquals(3, ResultScanner.parseLongs("65552,4294967296,-1", ',', values));
+        Assertions.assertArrayEquals(new long[]{65552L, 4294967296L, -1L}, values);
+        Assertions.assertEquals(Long.MAX_VALUE, ResultScanner.parseLong("9223372036854775807", 0, 19));
+    }
+}
@@ -0,0 +1,80 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class ColorSearchTest {
+
+    @Test
+    public void testColorSpec() {
+        ColorSpec spec = ColorSpec.compile("123456-020202|ffffff", 1.0);
+        Assertions.assertTrue(spec.matches(0x123456));
+        Assertions.assertTrue(spec.matches(0x103658));
+        Assertions.assertFalse(spec.matches(0x0F3456));
+        Assertions.assertTrue(spec.matches(0xFFFFFF));
+        Assertions.assertFalse(spec.matches(0xFFFFFE));
+        Assertions.assertTrue(ColorSpec.compile("ffffff", 0.99).matches(0xFDFCFD));
+        Assertions.assertFalse(ColorSpec.compile("@123456-020202|ffffff", 1.0).matches(0x123456));
+        Assertions.assertTrue(ColorSpec.compile("@123456-020202|ffffff", 1.0).matches(0x000000));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ColorSpec.compile("12345", 1.0));
+    }
+
+    @Test
+    public void testSearchMatchesReference() {
+        Random random = new Random(7);
+        int width = 97;
+        int height = 61;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(0x1000000);
+        }
+        BgraImage frame = BgraImage.wrap(width, height, pixels);
+        Rect rect = Rect.of(5, 3, 90, 58);
+        for (String color : new String[]{"808080-303030", "ff0000-7f2020|00ff00-202020", "@000000-c0c0c0"}) {
+            ColorSpec spec = ColorSpec.compile(color, 1.0);
+            int expected = 0;
+            long first = Points.NOT_FOUND;
+            long last = Points.NOT_FOUND;
+            for (int y = rect.getY1(); y < rect.getY2(); y++) {
+                for (int x = rect.getX1(); x < rect.getX2(); x++) {
+                    if (spec.matches(frame.getRgb(x, y))) {
+                        expected++;
+                        first = first == Points.NOT_FOUND ? Points.pack(x, y) : first;
+                        last = Points.pack(x, y);
+                    }
+                }
+            }
+            Assertions.assertEquals(expected, ColorSearch.getColorNum(frame, rect, spec), color);
+            Assertions.assertEquals(first, ColorSearch.findColor(frame, rect, spec, FindDirection.L_TO_R_AND_T_TO_B), color);
+            Assertions.assertEquals(last, ColorSearch.findColor(frame, rect, spec, FindDirection.R_TO_L_AND_B_TO_T), color);
+            long[] points = new long[expected + 1];
+            Assertions.assertEquals(expected, ColorSearch.findColorEx(frame, rect, spec, FindDirection.L_TO_R_AND_T_TO_B, points));
+            Assertions.assertEquals(first, points[0]);
+        }
+    }
+
+    @Test
+    public void testFindColorDirections() {
+        int[] pixels = new int[20 * 10];
+        pixels[2 * 20 + 15] = 0xFFFFFF;
+        pixels[7 * 20 + 3] = 0xFFFFFF;
+        pixels[5 * 20 + 10] = 0xFFFFFF;
+        BgraImage frame = BgraImage.wrap(20, 10, pixels);
+        ColorSpec white = ColorSpec.compile("ffffff-000000", 1.0);
+        Assertions.assertEquals(Points.pack(15, 2), ColorSearch.findColor(frame, null, white, FindDirection.L_TO_R_AND_T_TO_B));
+        Assertions.assertEquals(Points.pack(3, 7), ColorSearch.findColor(frame, null, white, FindDirection.T_TO_B_AND_L_TO_R));
+        Assertions.assertEquals(Points.pack(15, 2), ColorSearch.findColor(frame, null, white, FindDirection.B_TO_T_AND_R_TO_L));
+        Assertions.assertEquals(Points.pack(10, 5), ColorSearch.findColor(frame, null, white, FindDirection.CENTER_TO_AROUND));
+        Assertions.assertTrue(ColorSearch.findMulColor(frame, null, ColorSpec.compile("ffffff|000000", 1.0)));
+        Assertions.assertFalse(ColorSearch.findMulColor(frame, Rect.of(0, 0, 10, 5), ColorSpec.compile("ffffff|000000", 1.0)));
+    }
+}
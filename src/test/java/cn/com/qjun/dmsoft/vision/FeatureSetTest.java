@@ -0,0 +1,64 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+import com.sun.jna.Memory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FeatureSetTest {
+
+    @Test
+    public void testEvaluate() {
+        // 截图区域左上角为(100,200)
+        Rect imageRect = Rect.of(100, 200, 160, 240);
+        int width = 60;
+        int[] pixels = new int[width * 40];
+        pixels[5 * width + 10] = 0xFF0000;
+        pixels[5 * width + 12] = 0x00FF00;
+        int[] icon = {0x123456, 0x654321, 0x111111, 0x222222};
+        for (int i = 0; i < icon.length; i++) {
+            pixels[(30 + i / 2) * width + 40 + i % 2] = icon[i];
+        }
+        BgraImage image = BgraImage.wrap(width, 40, pixels);
+        FeatureSet featureSet = FeatureSet.builder()
+                .color("red", Rect.of(100, 200, 130, 220), ColorSpec.compile("ff0000", 1.0))
+                .multiColor("pair", Rect.of(105, 203, 120, 210), MultiColorPattern.compile("ff0000", "2|0|00ff00", 1.0))
+                .picture("icon", Rect.of(130, 220, 160, 240), TemplateMatcher.of(Template.of("icon", BgraImage.wrap(2, 2, icon))), "000000", 1.0)
+                .color("blue", Rect.of(100, 200, 160, 240), ColorSpec.compile("0000ff", 1.0))
+                .build();
+        Assertions.assertEquals(Rect.of(100, 200, 160, 240), featureSet.getRegion());
+
+        for (boolean parallel : new boolean[]{false, true}) {
+            FeatureSet.Result result = featureSet.evaluate(image, imageRect, parallel);
+            Assertions.assertEquals(0b0111L, result.getMask());
+            Assertions.assertEquals(Points.pack(110, 205), result.getPoint("red"));
+            Assertions.assertEquals(Points.pack(110, 205), result.getPoint("pair"));
+            Assertions.assertEquals(Points.pack(140, 230), result.getPoint("icon"));
+            Assertions.assertFalse(result.isMatched("blue"));
+            Assertions.assertEquals(Points.NOT_FOUND, result.getPoint(3));
+        }
+
+        // 同一个数组依次用于两帧
+        int[] reused = new int[width * 40];
+        Memory memory = new Memory(pixels.length * Frame.BYTES_PER_PIXEL);
+        memory.write(0, pixels, 0, pixels.length);
+        CaptureGuard guard = new CaptureGuard();
+        Assertions.assertEquals(0b0111L, featureSet.evaluate(Frame.wrap(memory, imageRect, guard), reused).getMask());
+        memory.setInt((5 * width + 10) * 4L, 0);
+        memory.setInt(0, 0x0000FF);
+        guard.invalidate();
+        FeatureSet.Result next = featureSet.evaluateParallel(Frame.wrap(memory, imageRect, guard), reused);
+        Assertions.assertEquals(0b1100L, next.getMask());
+        Assertions.assertEquals(Points.pack(100, 200), next.getPoint("blue"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> featureSet.evaluate(Frame.wrap(memory, imageRect, guard), new int[width]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FeatureSet.builder()
+                .color("a", imageRect, ColorSpec.compile("ff0000", 1.0))
+                .color("a", imageRect, ColorSpec.compile("ff0000", 1.0)).build());
+    }
+}
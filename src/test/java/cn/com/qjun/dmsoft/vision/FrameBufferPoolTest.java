@@ -0,0 +1,76 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FrameBufferPoolTest {
+
+    @Test
+    public void testLeaseAndCeiling() throws InterruptedException {
+        Assertions.assertEquals(FrameBufferPool.MIN_CAPACITY, FrameBufferPool.capacityOf(1));
+        Assertions.assertEquals(8 * 1024 * 1024, FrameBufferPool.capacityOf(1920 * 1080 * 4));
+        Assertions.assertEquals(10 * 1024 * 1024, FrameBufferPool.capacityOf(9 * 1024 * 1024));
+
+        FrameBufferPool pool = new FrameBufferPool(3 * 1024 * 1024);
+        FrameBuffer first = pool.lease(1024 * 1024);
+        ByteBuffer buffer = first.getBuffer();
+        Assertions.assertEquals(1024 * 1024, buffer.limit());
+        first.release();
+        Assertions.assertThrows(IllegalStateException.class, first::getBuffer);
+        try (FrameBuffer second = pool.lease(1000 * 1000)) {
+            Assertions.assertSame(buffer, second.getBuffer());
+            Assertions.assertEquals(1000 * 1000, second.getSize());
+        }
+        Assertions.assertEquals(0L, pool.getLeasedBytes());
+
+        FrameBuffer a = pool.lease(2 * 1024 * 1024);
+        Assertions.assertNull(pool.tryLease(1536 * 1024));
+        Assertions.assertThrows(IllegalStateException.class, () -> pool.lease(1536 * 1024));
+        Assertions.assertNull(pool.lease(1536 * 1024, 10, TimeUnit.MILLISECONDS));
+        a.release();
+        // 空闲的缓冲区被释放, 为新规格腾出空间
+        FrameBuffer b = pool.lease(1536 * 1024);
+        FrameBuffer c = pool.lease(1536 * 1024);
+        Assertions.assertEquals(3L * 1024 * 1024, pool.getAllocatedBytes());
+        b.release();
+        c.release();
+    }
+
+    @Test
+    public void testFrameCopyAndLeak() throws InterruptedException {
+        FrameBufferPool pool = new FrameBufferPool(1024 * 1024);
+        ByteBuffer pixels = ByteBuffer.allocate(2 * 2 * Frame.BYTES_PER_PIXEL);
+        for (int i = 0; i < 4; i++) {
+            pixels.put(new byte[]{(byte) i, 0x10, 0x20, (byte) 0xFF});
+        }
+        pixels.flip();
+        CaptureGuard guard = new CaptureGuard();
+        Frame frame = Frame.wrap(pixels, Rect.of(0, 0, 2, 2), guard);
+        FrameBuffer copy = frame.copyTo(pool);
+        guard.invalidate();
+        Frame copied = copy.getFrame();
+        Assertions.assertEquals(0x201003, copied.getRgb(1, 1));
+        copy.release();
+        Assertions.assertThrows(IllegalStateException.class, () -> copied.getRgb(1, 1));
+
+        leak(pool);
+        for (int i = 0; i < 50 && pool.getLeakCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(1L, pool.getLeakCount());
+        Assertions.assertEquals(0L, pool.getLeasedBytes());
+    }
+
+    private static void leak(FrameBufferPool pool) {
+        pool.lease(1024);
+    }
+}
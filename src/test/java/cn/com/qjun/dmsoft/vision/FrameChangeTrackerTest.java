@@ -0,0 +1,51 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FrameChangeTrackerTest {
+
+    @Test
+    public void testXxHash64() {
+        Assertions.assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new int[0], 0, 0));
+        int[] values = new int[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) (i * 0x01234567L + 0x89ABCDEFL * i * i);
+        }
+        Assertions.assertEquals(-2635639070143069735L, XxHash64.hash(values, 0, 100));
+        Assertions.assertEquals(-5327419533548830274L, XxHash64.hash(values, 0, 9));
+        // 分多次输入结果一致
+        XxHash64 hasher = new XxHash64();
+        hasher.update(values, 0, 3).update(values, 3, 30).update(values, 33, 67);
+        Assertions.assertEquals(-2635639070143069735L, hasher.digest());
+    }
+
+    @Test
+    public void testTrackChanges() {
+        Rect region = Rect.of(100, 50, 170, 90);
+        int[] pixels = new int[70 * 40];
+        FrameChangeTracker tracker = new FrameChangeTracker(32);
+        // 3x2个图块, 第一次全部视为变化
+        Assertions.assertEquals(6, tracker.update(BgraImage.wrap(70, 40, pixels.clone()), region));
+        long version = tracker.getVersion();
+        Assertions.assertEquals(0, tracker.update(BgraImage.wrap(70, 40, pixels.clone()), region));
+        Assertions.assertTrue(tracker.isUnchangedSince(region, version));
+
+        // 修改右下角图块中的一个像素
+        pixels[35 * 70 + 66] = 0x123456;
+        Assertions.assertEquals(1, tracker.update(BgraImage.wrap(70, 40, pixels.clone()), region));
+        Assertions.assertEquals(Collections.singletonList(Rect.of(164, 82, 170, 90)), tracker.getChangedTiles());
+        Assertions.assertTrue(tracker.isUnchangedSince(Rect.of(100, 50, 164, 90), version));
+        Assertions.assertFalse(tracker.isUnchangedSince(Rect.of(150, 80, 165, 83), version));
+        Assertions.assertTrue(tracker.isUnchangedSince(Rect.of(150, 80, 165, 83), tracker.getVersion()));
+        // 超出跟踪区域
+        Assertions.assertFalse(tracker.isUnchangedSince(Rect.of(90, 50, 120, 60), tracker.getVersion()));
+    }
+}
@@ -0,0 +1,54 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Rect;
+import com.sun.jna.Memory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class FrameTest {
+
+    @Test
+    public void testReadAndInvalidate() {
+        Rect rect = Rect.of(100, 200, 103, 202);
+        Memory memory = new Memory(3 * 2 * Frame.BYTES_PER_PIXEL);
+        for (int i = 0; i < 6; i++) {
+            // B G R A
+            memory.setByte(i * 4L, (byte) i);
+            memory.setByte(i * 4L + 1, (byte) 0x20);
+            memory.setByte(i * 4L + 2, (byte) 0x30);
+            memory.setByte(i * 4L + 3, (byte) 0xFF);
+        }
+        CaptureGuard guard = new CaptureGuard();
+        Frame frame = Frame.wrap(memory, rect, guard);
+        Assertions.assertEquals(3, frame.getWidth());
+        Assertions.assertEquals(12, frame.getStride());
+        Assertions.assertEquals(0x302004, frame.getRgb(1, 1));
+        int[] row = new int[4];
+        frame.readRow(1, row, 1);
+        Assertions.assertArrayEquals(new int[]{0, 0x302003, 0x302004, 0x302005}, row);
+        BgraImage image = frame.toImage();
+        Assertions.assertEquals(0x302002, image.getRgb(2, 0));
+
+        guard.invalidate();
+        Assertions.assertFalse(frame.isValid());
+        Assertions.assertThrows(IllegalStateException.class, () -> frame.getRgb(0, 0));
+        Assertions.assertThrows(IllegalStateException.class, frame::toImage);
+        // 复制出来的图像不受影响
+        Assertions.assertEquals(0x302002, image.getRgb(2, 0));
+    }
+
+    @Test
+    public void testCaptureGeneration() {
+        CaptureGuard guard = new CaptureGuard();
+        long generation = guard.invalidate();
+        // 截图返回前另一个线程又截了图, 本帧使用截图前取得的代次, 因此已经失效
+        guard.invalidate();
+        Frame frame = Frame.wrap(new Memory(Frame.BYTES_PER_PIXEL), Rect.of(0, 0, 1, 1), guard, generation);
+        Assertions.assertFalse(frame.isValid());
+        Assertions.assertThrows(IllegalStateException.class, () -> frame.getRgb(0, 0));
+    }
+}
@@ -0,0 +1,96 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class IntegralImageTest {
+
+    @Test
+    public void testRegionQueries() {
+        Random random = new Random(11);
+        int width = 83;
+        int height = 57;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(0x1000000);
+        }
+        BgraImage frame = BgraImage.wrap(width, height, pixels);
+        IntegralImage integral = IntegralImage.of(frame);
+        ColorSpec spec = ColorSpec.compile("ff0000-7f2020|00ff00-202020", 1.0);
+        for (int n = 0; n < 50; n++) {
+            int x1 = random.nextInt(width);
+            int y1 = random.nextInt(height);
+            Rect rect = Rect.of(x1, y1, x1 + 1 + random.nextInt(width), y1 + 1 + random.nextInt(height));
+            Assertions.assertEquals(ColorSearch.getColorNum(frame, rect, spec), integral.getColorNum(rect, spec), rect.toString());
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            int area = 0;
+            for (int y = y1; y < Math.min(height, rect.getY2()); y++) {
+                for (int x = x1; x < Math.min(width, rect.getX2()); x++) {
+                    int rgb = frame.getRgb(x, y);
+                    r += rgb >> 16;
+                    g += (rgb >> 8) & 0xFF;
+                    b += rgb & 0xFF;
+                    area++;
+                }
+            }
+            Assertions.assertEquals((int) (r / area) << 16 | (int) (g / area) << 8 | (int) (b / area), integral.getAveRgb(rect));
+        }
+        Assertions.assertEquals(ColorSearch.getColorNum(frame, null, spec), integral.getColorNum(null, spec));
+    }
+
+    @Test
+    public void testAveHsv() {
+        int[] pixels = {0xFF0000, 0xFF0000, 0x00FF00, 0x0000FF, 0x808080, 0x000000};
+        IntegralImage integral = IntegralImage.of(BgraImage.wrap(3, 2, pixels));
+        Assertions.assertEquals("0.255.255", integral.getAveHsv(Rect.of(0, 0, 2, 1)));
+        Assertions.assertEquals("120.255.255", integral.getAveHsv(Rect.of(2, 0, 3, 1)));
+        Assertions.assertEquals("240.255.255", integral.getAveHsv(Rect.of(0, 1, 1, 2)));
+        Assertions.assertEquals("0.0.128", integral.getAveHsv(Rect.of(1, 1, 2, 2)));
+        Assertions.assertEquals(0x404040, integral.getAveRgb(Rect.of(1, 1, 3, 2)));
+    }
+
+    @Test
+    public void testFindColorBlock() {
+        int width = 40;
+        int height = 30;
+        int[] pixels = new int[width * height];
+        // 两个10x8的红色块, 第二个块中间缺一列
+        fill(pixels, width, 5, 4, 10, 8, 0xFF0000);
+        fill(pixels, width, 22, 15, 10, 8, 0xFF0000);
+        fill(pixels, width, 26, 15, 1, 8, 0x000000);
+        IntegralImage integral = IntegralImage.of(BgraImage.wrap(width, height, pixels));
+        ColorSpec red = ColorSpec.compile("ff0000-101010", 1.0);
+        Assertions.assertEquals(Points.pack(5, 4), integral.findColorBlock(null, red, 80, 10, 8));
+        Assertions.assertEquals(Points.pack(22, 15), integral.findColorBlock(Rect.of(8, 0, 40, 30), red, 72, 10, 8));
+        Assertions.assertEquals(Points.NOT_FOUND, integral.findColorBlock(Rect.of(8, 0, 40, 30), red, 73, 10, 8));
+        Assertions.assertEquals(Points.NOT_FOUND, integral.findColorBlock(Rect.of(0, 0, 14, 30), red, 80, 10, 8));
+
+        long[] points = new long[10];
+        // 第一个红色块左移一列时仍有72个红色像素
+        Assertions.assertEquals(2, integral.findColorBlockEx(null, red, 72, 10, 8, points));
+        Assertions.assertEquals(Points.pack(4, 4), points[0]);
+        Assertions.assertEquals(Points.pack(22, 15), points[1]);
+        // 4x4的块在第一个红色块中不重叠地排列
+        Assertions.assertEquals(4, integral.findColorBlockEx(Rect.of(0, 0, 20, 20), red, 16, 4, 4, points));
+        Assertions.assertEquals(Points.pack(9, 4), points[1]);
+        Assertions.assertEquals(Points.pack(5, 8), points[2]);
+    }
+
+    private static void fill(int[] pixels, int width, int left, int top, int w, int h, int color) {
+        for (int y = top; y < top + h; y++) {
+            for (int x = left; x < left + w; x++) {
+                pixels[y * width + x] = color;
+            }
+        }
+    }
+}
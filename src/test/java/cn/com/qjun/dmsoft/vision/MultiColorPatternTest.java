@@ -0,0 +1,83 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.Points;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class MultiColorPatternTest {
+
+    @Test
+    public void testFind() {
+        int width = 40;
+        int height = 30;
+        int[] pixels = new int[width * height];
+        Random random = new Random(3L);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(4) * 0x404040;
+        }
+        // 两处完整的图案, 第一个颜色在(10,5)和(30,20)
+        for (int[] at : new int[][]{{10, 5}, {30, 20}}) {
+            pixels[at[1] * width + at[0]] = 0xE8B8BB;
+            pixels[(at[1] + 7) * width + at[0] - 4] = 0xDB5860;
+            pixels[(at[1] + 2) * width + at[0] + 3] = 0x102030;
+        }
+        BgraImage frame = BgraImage.wrap(width, height, pixels);
+        MultiColorPattern pattern = MultiColorPattern.compile("e8b8bb-050505", "-4|7|db5860,3|2|102030|203040", 1.0);
+        Assertions.assertEquals(2, pattern.size());
+        Assertions.assertTrue(pattern.matchesAt(frame, 10, 5));
+        Assertions.assertFalse(pattern.matchesAt(frame, 11, 5));
+
+        Assertions.assertEquals(Points.pack(10, 5), pattern.find(frame, null, FindDirection.L_TO_R_AND_T_TO_B));
+        Assertions.assertEquals(Points.pack(30, 20), pattern.find(frame, null, FindDirection.R_TO_L_AND_B_TO_T));
+        // 偏移点超出查找区域时不算找到, (30,20)的偏移点在第27行
+        Assertions.assertEquals(Points.pack(10, 5), pattern.find(frame, Rect.of(0, 0, 40, 27), FindDirection.R_TO_L_AND_B_TO_T));
+
+        long[] points = new long[4];
+        Assertions.assertEquals(2, pattern.findAll(frame, null, FindDirection.L_TO_R_AND_T_TO_B, points));
+        Assertions.assertEquals(Points.pack(30, 20), points[1]);
+
+        // 反色偏移点
+        MultiColorPattern inverted = MultiColorPattern.compile("e8b8bb", "-4|7|-db5860", 1.0);
+        Assertions.assertEquals(0, inverted.findAll(frame, null, FindDirection.L_TO_R_AND_T_TO_B, points));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MultiColorPattern.compile("e8b8bb", "1|db5860", 1.0));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        int width = 50;
+        int height = 40;
+        int[] pixels = new int[width * height];
+        Random random = new Random(11L);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(3) * 0x7F7F7F;
+        }
+        BgraImage frame = BgraImage.wrap(width, height, pixels);
+        MultiColorPattern pattern = MultiColorPattern.compile("7f7f7f", "1|0|fefefe,-2|3|-000000,0|-1|000000-010101", 1.0);
+        Rect rect = Rect.of(3, 2, 45, 38);
+        for (FindDirection dir : FindDirection.values()) {
+            long[] points = new long[width * height];
+            int count = pattern.findAll(frame, rect, dir, points);
+            int expected = 0;
+            for (int y = rect.getY1() + 1; y < rect.getY2() - 3; y++) {
+                for (int x = rect.getX1() + 2; x < rect.getX2() - 1; x++) {
+                    if (pixels[y * width + x] == 0x7F7F7F && pixels[y * width + x + 1] == 0xFEFEFE
+                            && pixels[(y + 3) * width + x - 2] != 0 && pixels[(y - 1) * width + x] == 0) {
+                        expected++;
+                    }
+                }
+            }
+            Assertions.assertEquals(expected, count, dir.toString());
+            for (int i = 0; i < count; i++) {
+                Assertions.assertTrue(pattern.matchesAt(frame, Points.x(points[i]), Points.y(points[i])));
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.FindResult;
+import cn.com.qjun.dmsoft.domain.FindResultBuffer;
+import cn.com.qjun.dmsoft.domain.Point;
+import cn.com.qjun.dmsoft.domain.Rect;
+import cn.com.qjun.dmsoft.enums.FindDirection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class TemplateMatcherTest {
+
+    @Test
+    public void testFindPic() throws IOException {
+        BgraImage frame = noise(200, 120, 1);
+        // 模板四角为洋红色, 作为透明色; 画到图像上时透明像素保留原背景
+        int[] icon = new int[12 * 10];
+        Arrays.fill(icon, 0xFF00FF);
+        for (int y = 2; y < 8; y++) {
+            for (int x = 2; x < 10; x++) {
+                icon[y * 12 + x] = (x * 20) << 16 | (y * 30) << 8 | 0x40;
+            }
+        }
+        Template template = Template.of("icon", pngRoundTrip(BgraImage.wrap(12, 10, icon)));
+        Assertions.assertEquals(0xFF00FF, template.getTransparentColor());
+        Assertions.assertEquals(48, template.getOpaquePixelCount());
+        draw(frame, template, icon, 30, 20, 0);
+        draw(frame, template, icon, 150, 90, 0);
+        draw(frame, template, icon, 100, 50, 0x030303);
+
+        TemplateMatcher matcher = TemplateMatcher.of(Template.of("absent", noise(12, 10, 2)), template);
+        Assertions.assertEquals(new FindResult(1, Point.of(30, 20), 100),
+                matcher.findPic(frame, null, "000000", 1.0, FindDirection.L_TO_R_AND_T_TO_B));
+        Assertions.assertEquals(Point.of(150, 90),
+                matcher.findPic(frame, null, "", 1.0, FindDirection.L_TO_R_AND_B_TO_T).getPoint());
+        Assertions.assertEquals(Point.of(100, 50),
+                matcher.findPic(frame, null, "030303", 1.0, FindDirection.CENTER_TO_AROUND).getPoint());
+        Assertions.assertNull(matcher.findPic(frame, Rect.of(60, 0, 140, 120), "020202", 1.0, FindDirection.CENTER_TO_AROUND));
+        Assertions.assertEquals(Point.of(100, 50),
+                matcher.findPic(frame, Rect.of(31, 0, 200, 120), "03", 1.0, FindDirection.L_TO_R_AND_T_TO_B).getPoint());
+
+        FindResultBuffer buffer = new FindResultBuffer();
+        for (FindDirection dir : FindDirection.values()) {
+            Assertions.assertEquals(3, matcher.findPicEx(frame, null, "030303", 1.0, dir, buffer), dir.name());
+            FindResultBuffer parallel = new FindResultBuffer();
+            Assertions.assertEquals(3, matcher.findPicExParallel(frame, null, "030303", 1.0, dir, parallel), dir.name());
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertEquals(buffer.get(i), parallel.get(i), dir.name());
+            }
+            Assertions.assertEquals(matcher.findPic(frame, null, "030303", 1.0, dir),
+                    matcher.findPicParallel(frame, null, "030303", 1.0, dir), dir.name());
+        }
+        matcher.findPicEx(frame, null, "030303", 1.0, FindDirection.T_TO_B_AND_R_TO_L, buffer);
+        Assertions.assertEquals(150, buffer.getX(0));
+        Assertions.assertEquals(30, buffer.getX(2));
+    }
+
+    @Test
+    public void testSimilarity() {
+        BgraImage frame = noise(64, 64, 3);
+        int[] patch = new int[10 * 10];
+        for (int i = 0; i < patch.length; i++) {
+            patch[i] = frame.getRgb(20 + i % 10, 30 + i / 10);
+        }
+        // 改掉5个像素, 相似度为95%
+        for (int i = 11; i < 16; i++) {
+            patch[i] ^= 0x808080;
+        }
+        TemplateMatcher matcher = TemplateMatcher.of(Template.of("patch", BgraImage.wrap(10, 10, patch)));
+        Assertions.assertNull(matcher.findPic(frame, null, "000000", 0.96, FindDirection.L_TO_R_AND_T_TO_B));
+        FindResult result = matcher.findPic(frame, null, "000000", 0.95, FindDirection.L_TO_R_AND_T_TO_B);
+        Assertions.assertEquals(Point.of(20, 30), result.getPoint());
+        Assertions.assertEquals(95, result.getSimilarity());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> matcher.findPic(frame, null, "2030", 0.9, FindDirection.L_TO_R_AND_T_TO_B));
+    }
+
+    @Test
+    public void testPyramid() {
+        BgraImage frame = blocks(400, 300, 4);
+        int[] pixels = frame.pixels();
+        // 把(37,41)处的区域复制到(290,213)并整体偏移2, 再改掉其中一部分像素
+        BgraImage patch = frame.crop(Rect.of(37, 41, 37 + 40, 41 + 30));
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                pixels[(213 + y) * 400 + 290 + x] = patch.getRgb(x, y) + (y < 3 ? 0x404040 : 0x020202);
+            }
+        }
+        TemplateMatcher matcher = TemplateMatcher.of(Template.of("absent", noise(24, 24, 5)),
+                Template.of("patch", patch), Template.of("small", frame.crop(Rect.of(150, 100, 156, 104))));
+        ImagePyramid pyramid = ImagePyramid.of(frame);
+        Assertions.assertEquals(100, pyramid.getWidth(2));
+        BgraImage level1 = pyramid.getLevel(1);
+        int expected = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int sum = 0;
+            for (int i = 0; i < 4; i++) {
+                sum += (frame.getRgb(6 + i % 2, 8 + i / 2) >> shift) & 0xFF;
+            }
+            expected |= (sum / 4) << shift;
+        }
+        Assertions.assertEquals(expected, level1.getRgb(3, 4));
+
+        FindResultBuffer buffer = new FindResultBuffer();
+        FindResultBuffer pyramidBuffer = new FindResultBuffer();
+        // 每种色偏写法、精确和模糊相似度、按行/按列/从中心查找各取一种组合, 完整组合的逐像素比较太慢
+        Object[][] cases = {
+                {"", 1.0, FindDirection.L_TO_R_AND_T_TO_B},
+                {"030303", 0.9, FindDirection.CENTER_TO_AROUND},
+                {"04", 0.9, FindDirection.B_TO_T_AND_R_TO_L},
+                {"030303", 1.0, FindDirection.R_TO_L_AND_B_TO_T},
+        };
+        for (Object[] c : cases) {
+            String delta = (String) c[0];
+            double sim = (Double) c[1];
+            FindDirection dir = (FindDirection) c[2];
+            String message = delta + "/" + sim + "/" + dir;
+            Assertions.assertEquals(matcher.findPic(frame, null, delta, sim, dir),
+                    matcher.findPicPyramid(pyramid, null, delta, sim, dir), message);
+            Assertions.assertEquals(matcher.findPic(frame, Rect.of(41, 3, 397, 290), delta, sim, dir),
+                    matcher.findPicPyramid(frame, Rect.of(41, 3, 397, 290), delta, sim, dir), message);
+            int count = matcher.findPicEx(frame, null, delta, sim, dir, buffer);
+            Assertions.assertEquals(count, matcher.findPicExPyramid(pyramid, null, delta, sim, dir, pyramidBuffer), message);
+            for (int i = 0; i < count; i++) {
+                Assertions.assertEquals(buffer.get(i), pyramidBuffer.get(i), message);
+            }
+        }
+        Assertions.assertEquals(Point.of(290, 213), matcher.findPicPyramid(pyramid, Rect.of(100, 0, 400, 300), "030303", 0.9,
+                FindDirection.L_TO_R_AND_T_TO_B).getPoint());
+    }
+
+    @Test
+    public void testFromBgra() {
+        byte[] data = {0x10, 0x20, 0x30, (byte) 0xFF, 0x01, 0x02, 0x03, 0x00};
+        BgraImage image = BgraImage.fromBgra(data, 2, 1);
+        Assertions.assertEquals(0x302010, image.getRgb(0, 0));
+        Assertions.assertEquals(0x030201, image.getRgb(1, 0));
+    }
+
+    private static BgraImage noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(0x1000000);
+        }
+        return BgraImage.wrap(width, height, pixels);
+    }
+
+    /**
+     * 由纯色矩形拼成的图像, 每个像素加上少量噪点, 接近游戏界面的截图
+     */
+    private static BgraImage blocks(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int n = 0; n < 60; n++) {
+            int left = random.nextInt(width);
+            int top = random.nextInt(height);
+            int right = Math.min(width, left + 10 + random.nextInt(120));
+            int bottom = Math.min(height, top + 10 + random.nextInt(80));
+            int color = random.nextInt(0x1000000) & 0xF8F8F8;
+            for (int y = top; y < bottom; y++) {
+                Arrays.fill(pixels, y * width + left, y * width + right, color);
+            }
+        }
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] += random.nextInt(4) * 0x010101;
+        }
+        return BgraImage.wrap(width, height, pixels);
+    }
+
+    private static void draw(BgraImage frame, Template template, int[] icon, int left, int top, int offset) {
+        int[] pixels = frame.pixels();
+        for (int y = 0; y < template.getHeight(); y++) {
+            for (int x = 0; x < template.getWidth(); x++) {
+                int color = icon[y * template.getWidth() + x];
+                if (color != template.getTransparentColor()) {
+                    pixels[(top + y) * frame.getWidth() + left + x] = color + offset;
+                }
+            }
+        }
+    }
+
+    private static BgraImage pngRoundTrip(BgraImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image.toBufferedImage(), "png", out);
+        return BgraImage.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,71 @@
+package cn.com.qjun.dmsoft.vision;
+
+import cn.com.qjun.dmsoft.domain.MemoryInfo;
+import com.sun.jna.Pointer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * @author RenQiang
+ * @date 2024/2/18
+ */
+public class TemplatePackTest {
+
+    @Test
+    public void testBuildAndOpen() throws Exception {
+        Path dir = Files.createTempDirectory("templates");
+        Path packFile = dir.resolve("templates.pack");
+        try {
+            byte[] first = bmp(5, 3, 0x112233);
+            byte[] second = bmp(2, 7, 0xA0B0C0);
+            Files.createDirectories(dir.resolve("ui"));
+            Files.write(dir.resolve("a.bmp"), first);
+            Files.write(dir.resolve("ui").resolve("b.bmp"), second);
+            Files.write(dir.resolve("readme.txt"), new byte[]{1});
+            TemplatePackBuilder builder = new TemplatePackBuilder().addDirectory(dir);
+            Assertions.assertEquals(2, builder.size());
+            builder.write(packFile);
+
+            TemplatePack pack = TemplatePack.open(packFile);
+            Assertions.assertEquals(Arrays.asList("a.bmp", "ui\\b.bmp"), Arrays.asList(pack.getNames().toArray()));
+            ByteBuffer data = pack.get("ui\\b.bmp");
+            byte[] copy = new byte[data.remaining()];
+            data.get(copy);
+            Assertions.assertArrayEquals(second, copy);
+
+            MemoryInfo memory = pack.memoryInfo("a.bmp");
+            Assertions.assertEquals(first.length, memory.getSize());
+            Assertions.assertEquals(0, memory.getAddress() % 8);
+            Assertions.assertArrayEquals(first, new Pointer(memory.getAddress()).getByteArray(0, first.length));
+
+            Template template = pack.template("a.bmp");
+            Assertions.assertEquals(5, template.getWidth());
+            Assertions.assertEquals(3, template.getHeight());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> pack.get("c.bmp"));
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static byte[] bmp(int width, int height, int rgb) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb + x);
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "bmp", output);
+        return output.toByteArray();
+    }
+}